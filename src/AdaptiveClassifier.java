@@ -0,0 +1,472 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * <h1>AdaptiveClassifier</h1>
+ * AdaptiveClassifier objects decide whether a colour is green using a hue window and a saturation floor which follow
+ * the lighting from frame to frame, instead of the fixed window of a GreenClassifier, which misses the target when a
+ * colour cast pushes its hue outside the window.
+ * <p>
+ * Each colour is reduced to 6 bits per channel and looked up in a shared table of 2^18 entries, which gives the bin of
+ * its hue (in 2 degree steps) and saturation (in eighths). Classifying a pixel is then one load from this 512KB table
+ * and one from the small table of accepted bins, and the same loop counts the pixel in a per-frame histogram of the
+ * bins, so building the histogram needs no extra pass over the frame.
+ * <p>
+ * When endFrame() is called the histogram of the frame is blended into a running background model, and the
+ * thresholds for the next frame are picked from the model: the hue window spreads out from the strongest peak of
+ * saturated colour within the green search range until it reaches a valley, and the saturation floor is placed by
+ * Otsu's method, which splits the saturations of the colours inside the window into the two groups with the largest
+ * variance between them. If the model holds too little colour in the search range to find a peak, the thresholds
+ * are left alone. Each frame is classified with the thresholds of the frames before it.
+ * <p>
+ * Results are coarser than those of a GreenClassifier, as colours are classified by bin, and an AdaptiveClassifier
+ * is not thread safe, so each stream of frames needs its own.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class AdaptiveClassifier {
+
+    /** The width of a hue bin in degrees. */
+    public static final int HUE_STEP = 2;
+    /** The number of hue bins. */
+    public static final int HUE_BINS = 360 / HUE_STEP;
+    /** The number of saturation bins. */
+    public static final int SATURATION_BINS = 8;
+
+    private static final int BINS = HUE_BINS * SATURATION_BINS;
+    private static final double PEAK_FRACTION = 0.002;
+    private static final double VALLEY_FRACTION = 0.05;
+    private static final int MIN_WIDTH = 10;
+    private static final int MAX_WIDTH = 50;
+    private static final int MAX_SATURATION_FLOOR = 4;
+
+    private final int SEARCH_LOW;
+    private final int SEARCH_HIGH;
+    private final double RATE;
+    private final int INITIAL_LOW;
+    private final int INITIAL_HIGH;
+
+    private final byte[] accepted;
+    private final int[] counts;
+    private final double[] model;
+    private final double[] hues;
+    private final double[] saturations;
+    private int hueLow;
+    private int hueHigh;
+    private int saturationFloor;
+    private long framesSeen;
+
+    /**
+     * Constructor for the AdaptiveClassifier class. Starts from the 110-160 degree window of the default
+     * GreenClassifier, searches for the target between 60 and 180 degrees, and blends each frame into the model with
+     * a weight of 0.2.
+     */
+    public AdaptiveClassifier() {
+        this(110, 160, 60, 180, 0.2);
+    }
+
+    /**
+     * Constructor for the AdaptiveClassifier class. The hues are rounded to whole bins of HUE_STEP degrees.
+     *
+     * @param minHue        the lowest accepted hue in degrees before any frame has been seen (inclusive).
+     * @param maxHue        the highest accepted hue in degrees before any frame has been seen (exclusive).
+     * @param searchMin     the lowest hue in degrees the window may move to.
+     * @param searchMax     the highest hue in degrees the window may move to.
+     * @param rate          the weight given to each new frame in the background model, from just above 0 for
+     *                      thresholds which change slowly up to 1 to use only the latest frame.
+     */
+    public AdaptiveClassifier(float minHue, float maxHue, float searchMin, float searchMax, double rate) {
+        if (rate <= 0 || rate > 1) {
+            throw new IllegalArgumentException("rate must be in (0, 1]: " + rate);
+        }
+        this.INITIAL_LOW = Math.round(minHue / HUE_STEP);
+        this.INITIAL_HIGH = Math.round(maxHue / HUE_STEP);
+        this.SEARCH_LOW = Math.max(0, Math.round(searchMin / HUE_STEP));
+        this.SEARCH_HIGH = Math.min(HUE_BINS, Math.round(searchMax / HUE_STEP));
+        this.RATE = rate;
+        this.accepted = new byte[BINS];
+        this.counts = new int[BINS];
+        this.model = new double[BINS];
+        this.hues = new double[HUE_BINS];
+        this.saturations = new double[SATURATION_BINS];
+        reset();
+    }
+
+    /**
+     * Forgets the background model and returns to the initial thresholds.
+     */
+    public void reset() {
+        Arrays.fill(this.counts, 0);
+        Arrays.fill(this.model, 0);
+        this.framesSeen = 0;
+        setThresholds(this.INITIAL_LOW, this.INITIAL_HIGH, 0);
+    }
+
+    /**
+     * Returns the bin of a packed ARGB colour, from the hue and saturation of its 6 bit per channel approximation.
+     *
+     * @param rgb   the colour as a packed ARGB integer.
+     * @return      the bin, which is the hue bin times SATURATION_BINS plus the saturation bin.
+     */
+    private static int bin(int rgb) {
+        return BinHolder.TABLE[((rgb >>> 6) & 0x3f000) | ((rgb >>> 4) & 0xfc0) | ((rgb >>> 2) & 0x3f)];
+    }
+
+    /**
+     * Returns whether the given packed RGB colour is green under the current thresholds. The colour is not counted
+     * in the histogram.
+     *
+     * @param rgb   the colour as a packed ARGB integer.
+     * @return      a boolean value indicating whether the colour is green or not.
+     */
+    public boolean isGreen(int rgb) {
+        return this.accepted[bin(rgb)] != 0;
+    }
+
+    /**
+     * Classifies a run of packed ARGB pixels under the current thresholds, setting the bits of the green ones in a
+     * bit-packed row in the same way as GreenClassifier.classifyRow(), and counts every pixel in the histogram of the
+     * current frame.
+     *
+     * @param rgb       the pixels to classify.
+     * @param length    the number of pixels to classify.
+     * @param bits      the array holding the bit-packed row.
+     * @param offset    the index of the first word of the row within bits.
+     * @param startX    the column of the first pixel, used to find its bit within the row.
+     */
+    public void classifyRow(int[] rgb, int length, long[] bits, int offset, int startX) {
+
+        if (length <= 0) {
+            return;
+        }
+
+        short[] table = BinHolder.TABLE;
+        byte[] accepted = this.accepted;
+        int[] counts = this.counts;
+        int current = startX >>> 6;
+        long word = 0;
+
+        for (int i = 0; i < length; i++) {
+            int x = startX + i;
+            if ((x >>> 6) != current) {
+                bits[offset + current] |= word;
+                current = x >>> 6;
+                word = 0;
+            }
+            int pixel = rgb[i];
+            int bin = table[((pixel >>> 6) & 0x3f000) | ((pixel >>> 4) & 0xfc0) | ((pixel >>> 2) & 0x3f)];
+            counts[bin]++;
+            word |= (long) accepted[bin] << x;
+        }
+        bits[offset + current] |= word;
+    }
+
+    /**
+     * Finishes a frame: blends the histogram of the frame into the background model, clears the histogram, and picks
+     * the thresholds used for the next frame.
+     */
+    public void endFrame() {
+
+        double keep = this.framesSeen == 0 ? 0 : 1 - this.RATE;
+        double add = this.framesSeen == 0 ? 1 : this.RATE;
+        for (int i = 0; i < BINS; i++) {
+            this.model[i] = this.model[i] * keep + this.counts[i] * add;
+            this.counts[i] = 0;
+        }
+        this.framesSeen++;
+        adapt();
+    }
+
+    /**
+     * Picks the hue window and saturation floor from the background model.
+     */
+    private void adapt() {
+
+        // the hues of coloured pixels only, as the hue of a grey pixel means nothing
+        double total = 0;
+        for (int hue = 0; hue < HUE_BINS; hue++) {
+            double sum = 0;
+            for (int saturation = 1; saturation < SATURATION_BINS; saturation++) {
+                sum += this.model[hue * SATURATION_BINS + saturation];
+            }
+            this.hues[hue] = sum;
+            total += sum + this.model[hue * SATURATION_BINS];
+        }
+
+        // the strongest peak in the search range, smoothed over three bins
+        int peak = -1;
+        double peakValue = 0;
+        for (int hue = this.SEARCH_LOW; hue < this.SEARCH_HIGH; hue++) {
+            double value = smoothed(hue);
+            if (value > peakValue) {
+                peak = hue;
+                peakValue = value;
+            }
+        }
+        if (peak < 0 || peakValue < PEAK_FRACTION * total) {
+            return;
+        }
+
+        // spread out from the peak until the histogram falls away or starts rising into another peak
+        int low = peak;
+        while (low > this.SEARCH_LOW && !valley(low - 1, low, peakValue)) {
+            low--;
+        }
+        int high = peak;
+        while (high < this.SEARCH_HIGH - 1 && !valley(high + 1, high, peakValue)) {
+            high++;
+        }
+        low--;
+        high += 2;
+        while (high - low < MIN_WIDTH) {
+            low--;
+            high++;
+        }
+        if (high - low > MAX_WIDTH) {
+            int excess = high - low - MAX_WIDTH;
+            low += Math.min(excess / 2 + excess % 2, peak - low);
+            high = low + MAX_WIDTH;
+        }
+        low = Math.max(low, this.SEARCH_LOW);
+        high = Math.min(high, this.SEARCH_HIGH);
+
+        // Otsu's method on the saturations inside the window
+        for (int saturation = 0; saturation < SATURATION_BINS; saturation++) {
+            double sum = 0;
+            for (int hue = low; hue < high; hue++) {
+                sum += this.model[hue * SATURATION_BINS + saturation];
+            }
+            this.saturations[saturation] = sum;
+        }
+        setThresholds(low, high, otsu(this.saturations, MAX_SATURATION_FLOOR));
+    }
+
+    /**
+     * Returns the coloured pixel count of a hue bin averaged with its neighbours.
+     *
+     * @param hue   the hue bin.
+     * @return      the smoothed count.
+     */
+    private double smoothed(int hue) {
+        double sum = this.hues[hue];
+        sum += hue > 0 ? this.hues[hue - 1] : 0;
+        sum += hue < HUE_BINS - 1 ? this.hues[hue + 1] : 0;
+        return sum / 3;
+    }
+
+    /**
+     * Returns whether the window should stop growing before it takes in the next hue bin, which is when that bin has
+     * fallen to a small fraction of the peak, or when the histogram has fallen below half the peak and starts to
+     * rise again.
+     *
+     * @param next      the hue bin the window would take in.
+     * @param edge      the hue bin at the edge of the window.
+     * @param peak      the smoothed count of the peak.
+     * @return          true if the window should stop at edge.
+     */
+    private boolean valley(int next, int edge, double peak) {
+        double value = smoothed(next);
+        return value <= VALLEY_FRACTION * peak || (smoothed(edge) < 0.5 * peak && value > smoothed(edge));
+    }
+
+    /**
+     * Finds the threshold which splits a histogram into the two groups with the largest variance between them, as
+     * in Otsu's method.
+     *
+     * @param histogram     the counts of each bin.
+     * @param maximum       the largest threshold to return.
+     * @return              the first bin of the upper group, from 0 to maximum.
+     */
+    static int otsu(double[] histogram, int maximum) {
+
+        double total = 0;
+        double sum = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            total += histogram[i];
+            sum += i * histogram[i];
+        }
+
+        int best = 0;
+        double bestVariance = 0;
+        double lowerCount = 0;
+        double lowerSum = 0;
+        for (int threshold = 1; threshold <= maximum && threshold < histogram.length; threshold++) {
+            lowerCount += histogram[threshold - 1];
+            lowerSum += (threshold - 1) * histogram[threshold - 1];
+            double upperCount = total - lowerCount;
+            if (lowerCount == 0 || upperCount == 0) {
+                continue;
+            }
+            double difference = lowerSum / lowerCount - (sum - lowerSum) / upperCount;
+            double variance = lowerCount * upperCount * difference * difference;
+            if (variance > bestVariance) {
+                best = threshold;
+                bestVariance = variance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Replaces the table of accepted bins.
+     *
+     * @param low           the first accepted hue bin (inclusive).
+     * @param high          the last accepted hue bin (exclusive).
+     * @param saturation    the first accepted saturation bin.
+     */
+    private void setThresholds(int low, int high, int saturation) {
+        this.hueLow = low;
+        this.hueHigh = high;
+        this.saturationFloor = saturation;
+        for (int hue = 0; hue < HUE_BINS; hue++) {
+            // if low is above high the window wraps around 0 degrees, as it does for a GreenClassifier
+            boolean inside = low <= high ? hue >= low && hue < high : hue >= low || hue < high;
+            for (int s = 0; s < SATURATION_BINS; s++) {
+                this.accepted[hue * SATURATION_BINS + s] = (byte) (inside && s >= saturation ? 1 : 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the lowest hue currently accepted.
+     *
+     * @return  the lowest accepted hue in degrees (inclusive).
+     */
+    public float getMinHue() {
+        return this.hueLow * HUE_STEP;
+    }
+
+    /**
+     * Returns the highest hue currently accepted.
+     *
+     * @return  the highest accepted hue in degrees (exclusive).
+     */
+    public float getMaxHue() {
+        return this.hueHigh * HUE_STEP;
+    }
+
+    /**
+     * Returns the lowest saturation currently accepted.
+     *
+     * @return  the lowest accepted saturation from 0 to 1.
+     */
+    public float getMinSaturation() {
+        return (float) this.saturationFloor / SATURATION_BINS;
+    }
+
+    /**
+     * Returns the number of frames blended into the background model since it was created or reset.
+     *
+     * @return  the number of frames seen.
+     */
+    public long getFramesSeen() {
+        return this.framesSeen;
+    }
+
+    /**
+     * Lazily builds the shared table of bins the first time a colour is classified. The centre of each 6 bit colour
+     * is converted with Color.RGBtoHSB(), as GreenClassifier does.
+     */
+    private static class BinHolder {
+        private static final short[] TABLE = new short[1 << 18];
+
+        static {
+            float[] hsb = new float[3];
+            for (int index = 0; index < TABLE.length; index++) {
+                int red = ((index >>> 12) << 2) | 2;
+                int green = (((index >>> 6) & 0x3f) << 2) | 2;
+                int blue = ((index & 0x3f) << 2) | 2;
+                Color.RGBtoHSB(red, green, blue, hsb);
+                int hue = Math.min(HUE_BINS - 1, (int) (hsb[0] * 360 / HUE_STEP));
+                int saturation = Math.min(SATURATION_BINS - 1, (int) (hsb[1] * SATURATION_BINS));
+                TABLE[index] = (short) (hue * SATURATION_BINS + saturation);
+            }
+        }
+    }
+
+    /**
+     * Classifies synthetic frames lit normally, through a strong warm cast, and through a strong cool cast, with the
+     * default GreenClassifier and with an AdaptiveClassifier, and prints how well each mask matches the mask of the
+     * normally lit frame, along with the thresholds the AdaptiveClassifier settled on and the time taken per pixel.
+     * <p>
+     * Usage: java AdaptiveClassifier [frames]
+     */
+    public static void main(String[] args) {
+
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        int w = 640;
+        int h = 480;
+        GreenClassifier fixed = GreenClassifier.getDefault();
+        String[] names = {"normal", "warm", "cool"};
+        double[][] casts = {{1, 1, 1}, {2.2, 1, 0.6}, {1, 1, 2.6}};
+
+        System.out.println(String.format("%-8s %10s %10s %16s %10s %10s", "light", "fixed IoU", "adapt IoU",
+                "hue window", "min sat", "ns/px"));
+
+        int[] row = new int[w];
+        int words = (w + 63) >>> 6;
+        for (int c = 0; c < casts.length; c++) {
+            AdaptiveClassifier adaptive = new AdaptiveClassifier();
+            double fixedScore = 0;
+            double adaptiveScore = 0;
+            long nanos = 0;
+            int scored = 0;
+
+            for (int i = 0; i < frames; i++) {
+                BufferedImage image = SyntheticFrameSource.createFrame(w, h, i * 7);
+                long[] truth = new long[words * h];
+                long[] fixedBits = new long[words * h];
+                long[] adaptiveBits = new long[words * h];
+
+                for (int y = 0; y < h; y++) {
+                    image.getRGB(0, y, w, 1, row, 0, w);
+                    fixed.classifyRow(row, w, truth, y * words, 0);
+                    for (int x = 0; x < w; x++) {
+                        row[x] = tint(row[x], casts[c]);
+                    }
+                    fixed.classifyRow(row, w, fixedBits, y * words, 0);
+                    long start = System.nanoTime();
+                    adaptive.classifyRow(row, w, adaptiveBits, y * words, 0);
+                    nanos += System.nanoTime() - start;
+                }
+                adaptive.endFrame();
+
+                // the first frames are still adapting
+                if (i >= frames / 2) {
+                    fixedScore += overlap(truth, fixedBits);
+                    adaptiveScore += overlap(truth, adaptiveBits);
+                    scored++;
+                }
+            }
+
+            System.out.println(String.format("%-8s %10.3f %10.3f %16s %10.3f %10.2f", names[c], fixedScore / scored,
+                    adaptiveScore / scored, adaptive.getMinHue() + "-" + adaptive.getMaxHue(),
+                    adaptive.getMinSaturation(), (double) nanos / ((long) frames * w * h)));
+        }
+    }
+
+    /**
+     * Scales the channels of a colour, as a coloured light would.
+     */
+    private static int tint(int rgb, double[] cast) {
+        int red = (int) Math.min(255, ((rgb >>> 16) & 0xff) * cast[0]);
+        int green = (int) Math.min(255, ((rgb >>> 8) & 0xff) * cast[1]);
+        int blue = (int) Math.min(255, (rgb & 0xff) * cast[2]);
+        return (red << 16) | (green << 8) | blue;
+    }
+
+    /**
+     * Returns the intersection over union of two bit-packed masks.
+     */
+    private static double overlap(long[] a, long[] b) {
+        long both = 0;
+        long either = 0;
+        for (int i = 0; i < a.length; i++) {
+            both += Long.bitCount(a[i] & b[i]);
+            either += Long.bitCount(a[i] | b[i]);
+        }
+        return either == 0 ? 1 : (double) both / either;
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * <h1>AxisHistogram</h1>
+ * AxisHistogram objects count how many green pixels fall on each coordinate along one axis of a frame, along with
+ * the running count, sum, minimum and maximum of the coordinates.
+ * <p>
+ * Order statistics such as the median, or the "10th smallest" value used by PixelBlob.getSize(), can then be read
+ * off by walking the counts instead of boxing and sorting every coordinate.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class AxisHistogram {
+
+    private int[] counts;
+    private int total;
+    private long sum;
+    private int min;
+    private int max;
+
+    /**
+     * Constructor for the AxisHistogram class. Creates an empty histogram covering coordinates 0 to length-1. The
+     * histogram grows if a larger coordinate is added.
+     *
+     * @param length    the number of coordinates along the axis (the width or height of the frame).
+     */
+    public AxisHistogram(int length) {
+        this.counts = new int[length];
+        this.total = 0;
+        this.sum = 0;
+        this.min = Integer.MAX_VALUE;
+        this.max = -1;
+    }
+
+    /**
+     * Records a single pixel at the given coordinate.
+     *
+     * @param coordinate    the coordinate of the pixel along this axis.
+     */
+    public void add(int coordinate) {
+        add(coordinate, 1);
+    }
+
+    /**
+     * Records a number of pixels at the given coordinate.
+     *
+     * @param coordinate    the coordinate of the pixels along this axis.
+     * @param count         the number of pixels to record.
+     */
+    public void add(int coordinate, int count) {
+        if (coordinate >= this.counts.length) {
+            grow(coordinate);
+        }
+        this.counts[coordinate] += count;
+        this.total += count;
+        this.sum += (long) coordinate * count;
+        if (coordinate < this.min) {
+            this.min = coordinate;
+        }
+        if (coordinate > this.max) {
+            this.max = coordinate;
+        }
+    }
+
+    /**
+     * Records one pixel at every coordinate from start to end, as covered by a horizontal run of pixels.
+     *
+     * @param start     the first coordinate of the run (inclusive).
+     * @param end       the last coordinate of the run (inclusive).
+     */
+    public void addRange(int start, int end) {
+        if (end >= this.counts.length) {
+            grow(end);
+        }
+        for (int i = start; i <= end; i++) {
+            this.counts[i]++;
+        }
+        int length = end - start + 1;
+        this.total += length;
+        this.sum += ((long) start + end) * length / 2;
+        if (start < this.min) {
+            this.min = start;
+        }
+        if (end > this.max) {
+            this.max = end;
+        }
+    }
+
+    /**
+     * Adds every pixel recorded in another AxisHistogram to this one.
+     *
+     * @param other     the AxisHistogram to merge into this one.
+     */
+    public void addAll(AxisHistogram other) {
+        if (other.total == 0) {
+            return;
+        }
+        if (other.max >= this.counts.length) {
+            grow(other.max);
+        }
+        for (int i = other.min; i <= other.max; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.total += other.total;
+        this.sum += other.sum;
+        this.min = Math.min(this.min, other.min);
+        this.max = Math.max(this.max, other.max);
+    }
+
+    /**
+     * Removes every recorded pixel, keeping the counts array so the histogram can be reused for another frame.
+     * Only the counts between the minimum and maximum recorded coordinates need to be zeroed.
+     */
+    public void clear() {
+        if (this.total > 0) {
+            for (int i = this.min; i <= this.max; i++) {
+                this.counts[i] = 0;
+            }
+        }
+        this.total = 0;
+        this.sum = 0;
+        this.min = Integer.MAX_VALUE;
+        this.max = -1;
+    }
+
+    /**
+     * Enlarges the counts array so that it covers the given coordinate.
+     *
+     * @param coordinate    the coordinate which needs to fit.
+     */
+    private void grow(int coordinate) {
+        int[] larger = new int[Math.max(coordinate + 1, this.counts.length * 2)];
+        System.arraycopy(this.counts, 0, larger, 0, this.counts.length);
+        this.counts = larger;
+    }
+
+    /**
+     * Returns the total number of pixels recorded.
+     *
+     * @return  the total number of pixels recorded.
+     */
+    public int getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Returns the sum of every recorded coordinate.
+     *
+     * @return  the sum of every recorded coordinate.
+     */
+    public long getSum() {
+        return this.sum;
+    }
+
+    /**
+     * Returns the number of pixels recorded at the given coordinate.
+     *
+     * @param coordinate    the coordinate along this axis.
+     * @return              the number of pixels recorded at the coordinate.
+     */
+    public int getCount(int coordinate) {
+        return coordinate < this.counts.length ? this.counts[coordinate] : 0;
+    }
+
+    /**
+     * Returns the coordinate which would be at the given index if every recorded coordinate was sorted into a list.
+     *
+     * @param index     the zero-based index into the sorted coordinates.
+     * @return          the coordinate at that index, or -1 if fewer than index+1 pixels have been recorded.
+     */
+    public int getSorted(int index) {
+        if (index >= this.total) {
+            return -1;
+        }
+        int seen = 0;
+        for (int i = this.min; i <= this.max; i++) {
+            seen += this.counts[i];
+            if (seen > index) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the smallest recorded coordinate.
+     *
+     * @return  the smallest recorded coordinate, or -1 if nothing has been recorded.
+     */
+    public int getMin() {
+        return this.total == 0 ? -1 : this.min;
+    }
+
+    /**
+     * Returns the largest recorded coordinate.
+     *
+     * @return  the largest recorded coordinate, or -1 if nothing has been recorded.
+     */
+    public int getMax() {
+        return this.max;
+    }
+
+    /**
+     * Returns the median coordinate, taken as the element at index size/2 of the sorted coordinates as in the
+     * original calculateMedianX() and calculateMedianY() methods of PixelBlob.
+     *
+     * @return  the median coordinate, or -1 if nothing has been recorded.
+     */
+    public int getMedian() {
+        return getSorted(this.total / 2);
+    }
+
+    /**
+     * Returns the mean of the recorded coordinates.
+     *
+     * @return  the mean coordinate, or -1 if nothing has been recorded.
+     */
+    public double getMean() {
+        return this.total == 0 ? -1 : (double) this.sum / this.total;
+    }
+}
@@ -0,0 +1,664 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h1>BatchAnalyser</h1>
+ * BatchAnalyser re-analyses archives of captured images offline, writing the position, size, and blobs of the target
+ * in every image to a CSV or JSON Lines file.
+ * <p>
+ * Images are decoded in parallel on a pool of I/O threads and analysed in the SINGLE_PASS mode of ImageTools on a
+ * pool of CPU threads, and each result is written as soon as it is complete, so results are in completion order
+ * rather than input order. The number of images in flight at once is capped, which bounds the memory used no matter
+ * how large the archive is, and inputs are enumerated lazily rather than listed up front.
+ * <p>
+ * Every input is numbered in the order it is enumerated, which is deterministic (directories are walked in name
+ * order). The checkpoint file records the number below which every input is complete, the few completed inputs
+ * above it, and the length of the output at that point. Running again with the same inputs and checkpoint truncates
+ * the output to that length and skips the completed inputs, so every image appears in the output exactly once.
+ * <p>
+ * Usage: java BatchAnalyser [options] input...
+ * <p>
+ * Each input is a directory (searched recursively for images), a glob such as captures/**&#47;*.png, an image file,
+ * or @list.txt to read one path per line from a file (@- reads from standard input). Options are format=csv|jsonl,
+ * output=file, checkpoint=file, io-threads=n, cpu-threads=n, in-flight=n and min-area=n.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class BatchAnalyser {
+
+    private final boolean JSON_LINES;
+    private final int IO_THREADS;
+    private final int CPU_THREADS;
+    private final int IN_FLIGHT;
+    private final int MIN_AREA;
+    private final GreenClassifier classifier;
+    private final ThreadLocal<ImageTools> imageTools;
+
+    private OutputStream output;
+    private long outputLength;
+    private File checkpointFile;
+    private long checkpointNext;
+    private TreeSet<Long> checkpointDone;
+    private long resultsSinceCheckpoint;
+    private long lastCheckpointTime;
+
+    private final AtomicLong imagesAnalysed;
+    private final AtomicLong imagesFailed;
+    private final AtomicLong bytesRead;
+    private long imagesSkipped;
+
+    /**
+     * Constructor for the BatchAnalyser class. Initialises instance variables only.
+     *
+     * @param jsonLines     true to write JSON Lines, false to write CSV.
+     * @param ioThreads     the number of threads reading and decoding images.
+     * @param cpuThreads    the number of threads analysing decoded images.
+     * @param inFlight      the largest number of images which may be read, decoded, or analysed at once.
+     * @param minArea       the smallest number of pixels a region needs to be reported as a blob.
+     */
+    public BatchAnalyser(boolean jsonLines, int ioThreads, int cpuThreads, int inFlight, int minArea) {
+        this.JSON_LINES = jsonLines;
+        this.IO_THREADS = Math.max(1, ioThreads);
+        this.CPU_THREADS = Math.max(1, cpuThreads);
+        this.IN_FLIGHT = Math.max(1, inFlight);
+        this.MIN_AREA = minArea;
+        this.classifier = GreenClassifier.getDefault();
+        this.imageTools = ThreadLocal.withInitial(() -> new ImageTools(ImageTools.Mode.SINGLE_PASS,
+                this.classifier));
+        this.checkpointDone = new TreeSet<>();
+        this.imagesAnalysed = new AtomicLong();
+        this.imagesFailed = new AtomicLong();
+        this.bytesRead = new AtomicLong();
+    }
+
+    /**
+     * Analyses every image, writing the results to the output file (or standard output if it is null) and keeping
+     * the checkpoint file up to date, then prints a summary to standard error.
+     *
+     * @param inputs            the images to analyse, in a deterministic order.
+     * @param outputFile        the file to write results to, or null for standard output.
+     * @param checkpointFile    the file to resume from and record progress in, or null for no checkpoints.
+     * @throws IOException      if the output or checkpoint file cannot be written.
+     * @throws InterruptedException if interrupted while waiting for images to finish.
+     */
+    public void run(Iterator<File> inputs, File outputFile, File checkpointFile)
+            throws IOException, InterruptedException {
+
+        this.checkpointFile = checkpointFile;
+        openOutput(outputFile);
+
+        ImageIO.setUseCache(false);
+
+        ExecutorService ioPool = Executors.newFixedThreadPool(this.IO_THREADS);
+        ExecutorService cpuPool = Executors.newFixedThreadPool(this.CPU_THREADS);
+        Semaphore permits = new Semaphore(this.IN_FLIGHT);
+        long start = System.nanoTime();
+
+        try {
+            long index = 0;
+            while (inputs.hasNext()) {
+                File file = inputs.next();
+                long number = index++;
+                if (isComplete(number)) {
+                    this.imagesSkipped++;
+                    continue;
+                }
+
+                permits.acquire();
+                ioPool.execute(() -> {
+                    BufferedImage image;
+                    try {
+                        image = ImageIO.read(file);
+                        this.bytesRead.addAndGet(file.length());
+                    } catch (IOException | RuntimeException | Error e) {
+                        // an oversized image may run out of memory, which must still hand back its permit
+                        image = null;
+                    }
+
+                    if (image == null) {
+                        this.imagesFailed.incrementAndGet();
+                        finish(number, failureRecord(file), permits);
+                        return;
+                    }
+
+                    BufferedImage decoded = image;
+                    try {
+                        cpuPool.execute(() -> {
+                            String record;
+                            try {
+                                record = analyse(file, decoded);
+                                this.imagesAnalysed.incrementAndGet();
+                            } catch (RuntimeException | Error e) {
+                                this.imagesFailed.incrementAndGet();
+                                record = failureRecord(file);
+                            }
+                            finish(number, record, permits);
+                        });
+                    } catch (RuntimeException e) {
+                        this.imagesFailed.incrementAndGet();
+                        finish(number, failureRecord(file), permits);
+                    }
+                });
+            }
+
+            // every permit is back once the last image is written
+            permits.acquire(this.IN_FLIGHT);
+            permits.release(this.IN_FLIGHT);
+        } finally {
+            ioPool.shutdown();
+            cpuPool.shutdown();
+            ioPool.awaitTermination(1, TimeUnit.MINUTES);
+            cpuPool.awaitTermination(1, TimeUnit.MINUTES);
+            synchronized (this) {
+                writeCheckpoint();
+                if (outputFile != null) {
+                    this.output.close();
+                } else {
+                    this.output.flush();
+                }
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long images = this.imagesAnalysed.get() + this.imagesFailed.get();
+        System.err.println(String.format(Locale.ROOT, "%d images analysed, %d failed, %d skipped from the "
+                + "checkpoint in %.1f s", this.imagesAnalysed.get(), this.imagesFailed.get(), this.imagesSkipped,
+                seconds));
+        System.err.println(String.format(Locale.ROOT, "%.1f images/sec, %.1f MB/sec", images / seconds,
+                this.bytesRead.get() / 1048576.0 / seconds));
+    }
+
+    /**
+     * Analyses a decoded image and formats the result. Each CPU thread reuses its own ImageTools.
+     *
+     * @param file      the file the image came from.
+     * @param image     the decoded image.
+     * @return          the result as a line of CSV or JSON, without a line terminator.
+     */
+    private String analyse(File file, BufferedImage image) {
+
+        ImageTools imageTools = this.imageTools.get();
+        imageTools.setFrame(new BufferedImageFrame(image));
+        String position = imageTools.getPositionOfTarget();
+        int size = imageTools.getSizeOfTarget();
+        int pixels = imageTools.getTarget().getCount();
+        List<PixelBlob> blobs = imageTools.getTargetBlobs(this.MIN_AREA);
+
+        StringBuilder record = new StringBuilder();
+        if (this.JSON_LINES) {
+            record.append("{\"file\":").append(jsonString(file.getPath()))
+                    .append(",\"width\":").append(image.getWidth())
+                    .append(",\"height\":").append(image.getHeight())
+                    .append(",\"position\":").append(jsonString(position))
+                    .append(",\"size\":").append(size)
+                    .append(",\"pixels\":").append(pixels)
+                    .append(",\"blobs\":[");
+            for (int i = 0; i < blobs.size(); i++) {
+                PixelBlob blob = blobs.get(i);
+                record.append(i > 0 ? "," : "")
+                        .append("{\"pixels\":").append(blob.getCount())
+                        .append(",\"minX\":").append(blob.getMinX())
+                        .append(",\"minY\":").append(blob.getMinY())
+                        .append(",\"maxX\":").append(blob.getMaxX())
+                        .append(",\"maxY\":").append(blob.getMaxY())
+                        .append(",\"centroidX\":").append(String.format(Locale.ROOT, "%.2f", blob.getCentroidX()))
+                        .append(",\"centroidY\":").append(String.format(Locale.ROOT, "%.2f", blob.getCentroidY()))
+                        .append('}');
+            }
+            record.append("]}");
+        } else {
+            // only the largest blob fits in a CSV row
+            PixelBlob largest = blobs.isEmpty() ? null : blobs.get(0);
+            record.append(csvField(file.getPath())).append(',')
+                    .append(image.getWidth()).append(',')
+                    .append(image.getHeight()).append(',')
+                    .append(position).append(',')
+                    .append(size).append(',')
+                    .append(pixels).append(',')
+                    .append(blobs.size()).append(',');
+            if (largest != null) {
+                record.append(largest.getMinX()).append(',')
+                        .append(largest.getMinY()).append(',')
+                        .append(largest.getMaxX()).append(',')
+                        .append(largest.getMaxY());
+            } else {
+                record.append(",,,");
+            }
+        }
+        return record.toString();
+    }
+
+    /**
+     * Formats the result for an image which could not be read or analysed.
+     *
+     * @param file  the file of the image.
+     * @return      the result as a line of CSV or JSON, without a line terminator.
+     */
+    private String failureRecord(File file) {
+        if (this.JSON_LINES) {
+            return "{\"file\":" + jsonString(file.getPath()) + ",\"position\":\"error\"}";
+        }
+        return csvField(file.getPath()) + ",,,error,,,,,,,";
+    }
+
+    /**
+     * Writes the result of an image, marks it complete, and saves the checkpoint every 1000 results or 5 seconds.
+     *
+     * @param number    the number of the input.
+     * @param record    the result as a line of CSV or JSON.
+     * @param permits   the Semaphore limiting the images in flight, which gets back the permit of this image.
+     */
+    private void finish(long number, String record, Semaphore permits) {
+        try {
+            synchronized (this) {
+                writeLine(record);
+                this.checkpointDone.add(number);
+                while (this.checkpointDone.remove(this.checkpointNext)) {
+                    this.checkpointNext++;
+                }
+
+                this.resultsSinceCheckpoint++;
+                long now = System.nanoTime();
+                if (this.resultsSinceCheckpoint >= 1000 || now - this.lastCheckpointTime > 5000000000L) {
+                    writeCheckpoint();
+                    this.resultsSinceCheckpoint = 0;
+                    this.lastCheckpointTime = now;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("could not write result: " + e.getMessage());
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Returns whether an input was completed by an earlier run, according to the checkpoint.
+     *
+     * @param number    the number of the input.
+     * @return          true if the input is already in the output.
+     */
+    private synchronized boolean isComplete(long number) {
+        return number < this.checkpointNext || this.checkpointDone.contains(number);
+    }
+
+    /**
+     * Loads the checkpoint if there is one, truncates the output to the length it records, and opens the output
+     * for appending. A header is written to a new CSV file.
+     *
+     * @param outputFile    the file to write results to, or null for standard output.
+     * @throws IOException  if the checkpoint cannot be read or the output cannot be opened.
+     */
+    private void openOutput(File outputFile) throws IOException {
+
+        long resumeLength = 0;
+        if (this.checkpointFile != null && this.checkpointFile.exists()) {
+            Properties properties = new Properties();
+            try (FileInputStream in = new FileInputStream(this.checkpointFile)) {
+                properties.load(in);
+            }
+            this.checkpointNext = Long.parseLong(properties.getProperty("next", "0"));
+            for (String done : properties.getProperty("done", "").split(",")) {
+                if (!done.isEmpty()) {
+                    this.checkpointDone.add(Long.parseLong(done));
+                }
+            }
+            resumeLength = Long.parseLong(properties.getProperty("outputLength", "0"));
+        }
+
+        if (outputFile == null) {
+            this.output = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16);
+        } else {
+            if (outputFile.exists()) {
+                // anything past the checkpoint was written by images which will be analysed again
+                try (RandomAccessFile file = new RandomAccessFile(outputFile, "rw")) {
+                    file.setLength(Math.min(file.length(), resumeLength));
+                }
+            }
+            this.outputLength = outputFile.exists() ? outputFile.length() : 0;
+            this.output = new BufferedOutputStream(new FileOutputStream(outputFile, true), 1 << 16);
+        }
+
+        if (this.outputLength == 0 && resumeLength == 0 && !this.JSON_LINES) {
+            writeLine("file,width,height,position,size,pixels,blobs,minX,minY,maxX,maxY");
+        }
+        this.lastCheckpointTime = System.nanoTime();
+    }
+
+    private void writeLine(String line) throws IOException {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        this.output.write(bytes);
+        this.outputLength += bytes.length;
+    }
+
+    /**
+     * Flushes the output and then replaces the checkpoint file, so the checkpoint never refers to results which are
+     * not yet in the output.
+     *
+     * @throws IOException  if the output cannot be flushed or the checkpoint cannot be written.
+     */
+    private void writeCheckpoint() throws IOException {
+
+        this.output.flush();
+        if (this.checkpointFile == null) {
+            return;
+        }
+
+        StringBuilder done = new StringBuilder();
+        for (long number : this.checkpointDone) {
+            done.append(done.length() > 0 ? "," : "").append(number);
+        }
+        Properties properties = new Properties();
+        properties.setProperty("next", String.valueOf(this.checkpointNext));
+        properties.setProperty("done", done.toString());
+        properties.setProperty("outputLength", String.valueOf(this.outputLength));
+
+        File temporary = new File(this.checkpointFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary)) {
+            properties.store(out, "BatchAnalyser checkpoint");
+        }
+        Files.move(temporary.toPath(), this.checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder json = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Turns the command line inputs into a single lazy sequence of files.
+     *
+     * @param arguments     the directories, globs, image files and @lists given on the command line.
+     * @return              an Iterator over every image, in a deterministic order.
+     */
+    private static Iterator<File> inputs(List<String> arguments) {
+
+        Set<String> suffixes = new HashSet<>();
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            suffixes.add(suffix.toLowerCase(Locale.ROOT));
+        }
+
+        List<Iterator<File>> sources = new ArrayList<>();
+        for (String argument : arguments) {
+            if (argument.startsWith("@")) {
+                sources.add(new ListIterator(argument.substring(1)));
+            } else if (argument.matches(".*[*?\\[{].*")) {
+                sources.add(FileWalker.forGlob(argument));
+            } else if (new File(argument).isDirectory()) {
+                sources.add(new FileWalker(argument, true, name -> {
+                    int dot = name.lastIndexOf('.');
+                    return dot >= 0 && suffixes.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+                }));
+            } else {
+                sources.add(Arrays.asList(new File(argument)).iterator());
+            }
+        }
+
+        return new Iterator<File>() {
+            private int current = 0;
+
+            public boolean hasNext() {
+                while (this.current < sources.size() && !sources.get(this.current).hasNext()) {
+                    this.current++;
+                }
+                return this.current < sources.size();
+            }
+
+            public File next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return sources.get(this.current).next();
+            }
+        };
+    }
+
+    /**
+     * Decides whether a path found while walking a directory is wanted.
+     */
+    private interface PathFilter {
+
+        /**
+         * Returns whether a file is wanted.
+         *
+         * @param path  the path of the file, starting with the directory being walked.
+         * @return      true if the file should be analysed.
+         */
+        boolean accept(String path);
+    }
+
+    /**
+     * Walks a directory tree lazily, visiting the entries of every directory in name order.
+     */
+    private static class FileWalker implements Iterator<File> {
+
+        private final Deque<Iterator<String>> stack;
+        private final boolean RECURSIVE;
+        private final PathFilter filter;
+        private File next;
+
+        FileWalker(String directory, boolean recursive, PathFilter filter) {
+            this.stack = new ArrayDeque<>();
+            this.RECURSIVE = recursive;
+            this.filter = filter;
+            push(directory);
+        }
+
+        /**
+         * Creates a FileWalker for a glob, walking from the longest leading part of the glob without wildcards.
+         *
+         * @param glob  the glob, such as captures/2015/*.png or captures/**&#47;*.jpg.
+         * @return      a FileWalker over the matching files.
+         */
+        static FileWalker forGlob(String glob) {
+            String normalised = glob.replace(File.separatorChar, '/');
+            int wildcard = normalised.length();
+            for (char c : new char[] {'*', '?', '[', '{'}) {
+                int at = normalised.indexOf(c);
+                if (at >= 0) {
+                    wildcard = Math.min(wildcard, at);
+                }
+            }
+            int slash = normalised.lastIndexOf('/', wildcard);
+            String base = slash < 0 ? "" : normalised.substring(0, slash);
+            String rest = normalised.substring(slash + 1);
+            boolean recursive = rest.contains("/") || rest.contains("**");
+
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalised);
+            return new FileWalker(base, recursive, path -> matcher.matches(Paths.get(path)));
+        }
+
+        private void push(String directory) {
+            String[] names = new File(directory.isEmpty() ? "." : directory).list();
+            if (names == null) {
+                return;
+            }
+            Arrays.sort(names);
+            String prefix = directory.isEmpty() ? "" : directory + File.separator;
+            List<String> paths = new ArrayList<>(names.length);
+            for (String name : names) {
+                paths.add(prefix + name);
+            }
+            this.stack.push(paths.iterator());
+        }
+
+        public boolean hasNext() {
+            while (this.next == null && !this.stack.isEmpty()) {
+                Iterator<String> top = this.stack.peek();
+                if (!top.hasNext()) {
+                    this.stack.pop();
+                    continue;
+                }
+                String path = top.next();
+                File file = new File(path);
+                if (file.isDirectory()) {
+                    if (this.RECURSIVE) {
+                        push(path);
+                    }
+                } else if (this.filter.accept(path)) {
+                    this.next = file;
+                }
+            }
+            return this.next != null;
+        }
+
+        public File next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            File file = this.next;
+            this.next = null;
+            return file;
+        }
+    }
+
+    /**
+     * Reads paths lazily from a list file, one per line, skipping blank lines.
+     */
+    private static class ListIterator implements Iterator<File> {
+
+        private final BufferedReader reader;
+        private String next;
+
+        ListIterator(String listFile) {
+            try {
+                this.reader = new BufferedReader(new InputStreamReader(
+                        listFile.equals("-") ? System.in : new FileInputStream(listFile), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new IllegalArgumentException("could not read " + listFile + ": " + e.getMessage(), e);
+            }
+        }
+
+        public boolean hasNext() {
+            try {
+                while (this.next == null) {
+                    String line = this.reader.readLine();
+                    if (line == null) {
+                        this.reader.close();
+                        return false;
+                    }
+                    if (!line.trim().isEmpty()) {
+                        this.next = line.trim();
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                throw new IllegalStateException("could not read list: " + e.getMessage(), e);
+            }
+        }
+
+        public File next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String path = this.next;
+            this.next = null;
+            return new File(path);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        boolean jsonLines = false;
+        File outputFile = null;
+        File checkpointFile = null;
+        int ioThreads = 4;
+        int cpuThreads = Runtime.getRuntime().availableProcessors();
+        int inFlight = -1;
+        int minArea = 20;
+        List<String> arguments = new ArrayList<>();
+
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            String value = parts.length > 1 ? parts[1] : "";
+            switch (parts.length > 1 ? parts[0] : "") {
+                case "format":
+                    jsonLines = value.equalsIgnoreCase("jsonl");
+                    break;
+                case "output":
+                    outputFile = new File(value);
+                    break;
+                case "checkpoint":
+                    checkpointFile = new File(value);
+                    break;
+                case "io-threads":
+                    ioThreads = Integer.parseInt(value);
+                    break;
+                case "cpu-threads":
+                    cpuThreads = Integer.parseInt(value);
+                    break;
+                case "in-flight":
+                    inFlight = Integer.parseInt(value);
+                    break;
+                case "min-area":
+                    minArea = Integer.parseInt(value);
+                    break;
+                default:
+                    arguments.add(arg);
+            }
+        }
+
+        if (arguments.isEmpty()) {
+            System.err.println("usage: java BatchAnalyser [format=csv|jsonl] [output=file] [checkpoint=file] "
+                    + "[io-threads=n] [cpu-threads=n] [in-flight=n] [min-area=n] directory|glob|image|@list...");
+            return;
+        }
+        if (inFlight < 0) {
+            inFlight = 2 * (ioThreads + cpuThreads);
+        }
+
+        new BatchAnalyser(jsonLines, ioThreads, cpuThreads, inFlight, minArea)
+                .run(inputs(arguments), outputFile, checkpointFile);
+    }
+}
@@ -0,0 +1,343 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h1>BlobLabeller</h1>
+ * BlobLabeller objects split the green pixels of a GreenMask or a RunMask into separate connected regions, so that two green
+ * objects in the same frame produce two PixelBlobs instead of one meaningless blob with a median between them.
+ * <p>
+ * The mask is scanned once to find the horizontal runs of green pixels in each row. Each run is joined with the runs
+ * it touches in the row above using a union-find structure, so the work done scales with the number of runs rather
+ * than the number of pixels. Finally the runs of every region which is large enough are added to a PixelBlob.
+ * <p>
+ * The run and union-find arrays are kept between calls, so a BlobLabeller should be reused from frame to frame. It
+ * is not thread safe.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class BlobLabeller {
+
+    private final boolean EIGHT_CONNECTED;
+
+    private int[] runRow;
+    private int[] runStart;
+    private int[] runEnd;
+    private int[] parent;
+    private int[] area;
+    private int[] blobIndex;
+    private int runCount;
+
+    /**
+     * Constructor for the BlobLabeller class. Pixels which touch diagonally are treated as connected.
+     */
+    public BlobLabeller() {
+        this(true);
+    }
+
+    /**
+     * Constructor for the BlobLabeller class.
+     *
+     * @param eightConnected    true if pixels which touch diagonally are connected, false if only pixels which
+     *                          share an edge are.
+     */
+    public BlobLabeller(boolean eightConnected) {
+        this.EIGHT_CONNECTED = eightConnected;
+        allocate(256);
+    }
+
+    /**
+     * Returns a PixelBlob for every connected region of green pixels in the mask containing at least minArea pixels,
+     * ordered from the largest region to the smallest.
+     *
+     * @param mask      the GreenMask to label.
+     * @param minArea   the smallest number of pixels a region needs to be returned.
+     * @return          a List of PixelBlobs, one per region, largest first.
+     */
+    public List<PixelBlob> label(GreenMask mask, int minArea) {
+        return label(mask, minArea, 0, 0);
+    }
+
+    /**
+     * Returns a PixelBlob for every connected region of green pixels in a mask covering part of a frame, with the
+     * coordinates of the PixelBlobs translated back into the frame.
+     *
+     * @param mask      the GreenMask to label.
+     * @param minArea   the smallest number of pixels a region needs to be returned.
+     * @param offsetX   the column of the frame corresponding to column 0 of the mask.
+     * @param offsetY   the row of the frame corresponding to row 0 of the mask.
+     * @return          a List of PixelBlobs, one per region, largest first.
+     */
+    public List<PixelBlob> label(GreenMask mask, int minArea, int offsetX, int offsetY) {
+
+        findRegions(mask);
+        return collectRegions(minArea, offsetX, offsetY, mask.getWidth(), mask.getHeight());
+    }
+
+    /**
+     * Returns a PixelBlob for every connected region of green pixels in a RunMask containing at least minArea
+     * pixels, ordered from the largest region to the smallest. The runs are taken directly from the mask, so nothing
+     * has to be scanned.
+     *
+     * @param mask      the RunMask to label.
+     * @param minArea   the smallest number of pixels a region needs to be returned.
+     * @return          a List of PixelBlobs, one per region, largest first.
+     */
+    public List<PixelBlob> label(RunMask mask, int minArea) {
+        findRegions(mask);
+        return collectRegions(minArea, 0, 0, mask.getWidth(), mask.getHeight());
+    }
+
+    /**
+     * Builds a PixelBlob for every region found by the last call to findRegions() which is large enough.
+     *
+     * @param minArea   the smallest number of pixels a region needs to be returned.
+     * @param offsetX   the column of the frame corresponding to column 0 of the mask.
+     * @param offsetY   the row of the frame corresponding to row 0 of the mask.
+     * @param width     the width of the mask.
+     * @param height    the height of the mask.
+     * @return          a List of PixelBlobs, one per region, largest first.
+     */
+    private List<PixelBlob> collectRegions(int minArea, int offsetX, int offsetY, int width, int height) {
+
+        List<PixelBlob> blobs = new ArrayList<>();
+        for (int r = 0; r < this.runCount; r++) {
+            int root = find(r);
+            if (this.area[root] < minArea) {
+                continue;
+            }
+            if (this.blobIndex[root] < 0) {
+                this.blobIndex[root] = blobs.size();
+                blobs.add(new PixelBlob(offsetX + width, offsetY + height));
+            }
+            blobs.get(this.blobIndex[root]).addRun(offsetY + this.runRow[r], offsetX + this.runStart[r],
+                    offsetX + this.runEnd[r]);
+        }
+
+        blobs.sort((a, b) -> Integer.compare(b.getCount(), a.getCount()));
+        return blobs;
+    }
+
+    /**
+     * Returns the largest connected region of green pixels in the mask.
+     *
+     * @param mask      the GreenMask to label.
+     * @param minArea   the smallest number of pixels the region needs.
+     * @return          the largest region as a PixelBlob, or an empty PixelBlob if no region is large enough.
+     */
+    public PixelBlob largest(GreenMask mask, int minArea) {
+        return largest(mask, minArea, new PixelBlob(mask.getWidth(), mask.getHeight()));
+    }
+
+    /**
+     * Adds the pixels of the largest connected region of green pixels in the mask to an existing PixelBlob, which
+     * lets a caller reuse the same PixelBlob for every frame. Nothing is allocated once the run arrays are large
+     * enough for the mask.
+     *
+     * @param mask      the GreenMask to label.
+     * @param minArea   the smallest number of pixels the region needs.
+     * @param target    an empty PixelBlob which receives the region.
+     * @return          the target, which is left empty if no region is large enough.
+     */
+    public PixelBlob largest(GreenMask mask, int minArea, PixelBlob target) {
+        findRegions(mask);
+        return addLargest(minArea, target);
+    }
+
+    /**
+     * Adds the pixels of the largest connected region of green pixels in a RunMask to an existing PixelBlob. Nothing
+     * is allocated once the run arrays are large enough for the mask.
+     *
+     * @param mask      the RunMask to label.
+     * @param minArea   the smallest number of pixels the region needs.
+     * @param target    an empty PixelBlob which receives the region.
+     * @return          the target, which is left empty if no region is large enough.
+     */
+    public PixelBlob largest(RunMask mask, int minArea, PixelBlob target) {
+        findRegions(mask);
+        return addLargest(minArea, target);
+    }
+
+    /**
+     * Adds the runs of the largest region found by the last call to findRegions() to a PixelBlob.
+     *
+     * @param minArea   the smallest number of pixels the region needs.
+     * @param target    the PixelBlob which receives the region.
+     * @return          the target, which is left empty if no region is large enough.
+     */
+    private PixelBlob addLargest(int minArea, PixelBlob target) {
+
+        // on a tie the region found first wins, as it would be first after the stable sort in label()
+        int best = -1;
+        for (int r = 0; r < this.runCount; r++) {
+            if (find(r) == r && this.area[r] >= minArea && (best < 0 || this.area[r] > this.area[best])) {
+                best = r;
+            }
+        }
+        if (best >= 0) {
+            for (int r = best; r < this.runCount; r++) {
+                if (find(r) == best) {
+                    target.addRun(this.runRow[r], this.runStart[r], this.runEnd[r]);
+                }
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Finds the runs of the mask, joins touching runs into regions, and totals the area of each region against its
+     * root run.
+     *
+     * @param mask      the GreenMask to label.
+     */
+    private void findRegions(GreenMask mask) {
+
+        int w = mask.getWidth();
+        int h = mask.getHeight();
+
+        this.runCount = 0;
+        for (int y = 0; y < h; y++) {
+            int x = mask.nextSetBit(y, 0);
+            while (x < w) {
+                int end = mask.nextClearBit(y, x);
+                addRun(y, x, end - 1);
+                x = mask.nextSetBit(y, end);
+            }
+        }
+        joinRuns();
+    }
+
+    /**
+     * Copies the runs of a RunMask, joins touching runs into regions, and totals the area of each region against its
+     * root run.
+     *
+     * @param mask      the RunMask to label.
+     */
+    private void findRegions(RunMask mask) {
+
+        this.runCount = 0;
+        for (int r = 0; r < mask.getRunCount(); r++) {
+            addRun(mask.getRunRow(r), mask.getRunStart(r), mask.getRunEnd(r));
+        }
+        joinRuns();
+    }
+
+    /**
+     * Joins each run with the runs it touches in the row above, and totals the area of each region against its root
+     * run. The runs must be ordered by row and then by column.
+     */
+    private void joinRuns() {
+
+        int slack = this.EIGHT_CONNECTED ? 1 : 0;
+        int previousFirst = 0;
+        int previousLast = 0;
+        int first = 0;
+
+        while (first < this.runCount) {
+            int y = this.runRow[first];
+            int last = first;
+            while (last < this.runCount && this.runRow[last] == y) {
+                last++;
+            }
+            if (previousFirst == previousLast || this.runRow[previousFirst] != y - 1) {
+                previousFirst = previousLast = first;
+            }
+
+            // join them with the overlapping runs of the row above, both lists being ordered by column
+            int p = previousFirst;
+            for (int r = first; r < last; r++) {
+                int start = this.runStart[r] - slack;
+                int end = this.runEnd[r] + slack;
+                while (p < previousLast && this.runEnd[p] < start) {
+                    p++;
+                }
+                for (int q = p; q < previousLast && this.runStart[q] <= end; q++) {
+                    union(r, q);
+                }
+            }
+
+            previousFirst = first;
+            previousLast = last;
+            first = last;
+        }
+
+        // total up the area of each region against its root run
+        for (int r = 0; r < this.runCount; r++) {
+            this.area[r] = 0;
+            this.blobIndex[r] = -1;
+        }
+        for (int r = 0; r < this.runCount; r++) {
+            this.area[find(r)] += this.runEnd[r] - this.runStart[r] + 1;
+        }
+    }
+
+    /**
+     * Records a run as its own region, growing the arrays if needed.
+     *
+     * @param y         the row of the run.
+     * @param start     the column of the first pixel in the run.
+     * @param end       the column of the last pixel in the run.
+     */
+    private void addRun(int y, int start, int end) {
+        if (this.runCount == this.parent.length) {
+            allocate(this.parent.length * 2);
+        }
+        this.runRow[this.runCount] = y;
+        this.runStart[this.runCount] = start;
+        this.runEnd[this.runCount] = end;
+        this.parent[this.runCount] = this.runCount;
+        this.runCount++;
+    }
+
+    /**
+     * Returns the root run of the region containing the given run, halving the path to it along the way.
+     *
+     * @param run   the index of the run.
+     * @return      the index of the root run of its region.
+     */
+    private int find(int run) {
+        while (this.parent[run] != run) {
+            this.parent[run] = this.parent[this.parent[run]];
+            run = this.parent[run];
+        }
+        return run;
+    }
+
+    /**
+     * Merges the regions containing two runs. The root with the lower index is kept.
+     *
+     * @param a     the index of the first run.
+     * @param b     the index of the second run.
+     */
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA < rootB) {
+            this.parent[rootB] = rootA;
+        } else if (rootB < rootA) {
+            this.parent[rootA] = rootB;
+        }
+    }
+
+    /**
+     * Enlarges the run arrays, keeping the runs recorded so far.
+     *
+     * @param capacity  the new number of runs the arrays can hold.
+     */
+    private void allocate(int capacity) {
+        this.runRow = copyOf(this.runRow, capacity);
+        this.runStart = copyOf(this.runStart, capacity);
+        this.runEnd = copyOf(this.runEnd, capacity);
+        this.parent = copyOf(this.parent, capacity);
+        this.area = new int[capacity];
+        this.blobIndex = new int[capacity];
+    }
+
+    private static int[] copyOf(int[] array, int capacity) {
+        int[] larger = new int[capacity];
+        if (array != null) {
+            System.arraycopy(array, 0, larger, 0, array.length);
+        }
+        return larger;
+    }
+}
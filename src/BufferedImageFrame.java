@@ -0,0 +1,148 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * <h1>BufferedImageFrame</h1>
+ * BufferedImageFrame objects expose a BufferedImage as an RgbFrame.
+ * <p>
+ * For the image types produced by the webcam and by ImageIO (TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_3BYTE_BGR and
+ * TYPE_4BYTE_ABGR) the pixels are read straight out of the raster's data buffer. Every other image type falls back
+ * to BufferedImage.getRGB(), which gives identical values at a higher cost.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class BufferedImageFrame implements RgbFrame {
+
+    private final BufferedImage image;
+    private final int[] intData;
+    private final byte[] byteData;
+    private final int offset;
+    private final int scanlineStride;
+    private final int pixelStride;
+    private final int[] bandOffsets;
+    private final boolean opaque;
+
+    /**
+     * Constructor for the BufferedImageFrame class. Inspects the layout of the image's raster once so that rows can
+     * be read without any per-pixel colour model lookups.
+     *
+     * @param image     the target image in a BufferedImage object.
+     */
+    public BufferedImageFrame(BufferedImage image) {
+        this.image = image;
+
+        WritableRaster raster = image.getRaster();
+        SampleModel sampleModel = raster.getSampleModel();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        int translateX = raster.getSampleModelTranslateX();
+        int translateY = raster.getSampleModelTranslateY();
+
+        int[] ints = null;
+        byte[] bytes = null;
+        int start = 0;
+        int stride = 0;
+        int step = 1;
+        int[] bands = null;
+
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && sampleModel instanceof SinglePixelPackedSampleModel
+                && dataBuffer instanceof DataBufferInt && dataBuffer.getNumBanks() == 1) {
+            SinglePixelPackedSampleModel packed = (SinglePixelPackedSampleModel) sampleModel;
+            ints = ((DataBufferInt) dataBuffer).getData();
+            stride = packed.getScanlineStride();
+            start = dataBuffer.getOffset() - translateY * stride - translateX;
+        } else if ((type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR)
+                && sampleModel instanceof ComponentSampleModel
+                && dataBuffer instanceof DataBufferByte && dataBuffer.getNumBanks() == 1) {
+            ComponentSampleModel component = (ComponentSampleModel) sampleModel;
+            bytes = ((DataBufferByte) dataBuffer).getData();
+            stride = component.getScanlineStride();
+            step = component.getPixelStride();
+            bands = component.getBandOffsets();
+            start = dataBuffer.getOffset() - translateY * stride - translateX * step;
+        }
+
+        this.intData = ints;
+        this.byteData = bytes;
+        this.offset = start;
+        this.scanlineStride = stride;
+        this.pixelStride = step;
+        this.bandOffsets = bands;
+        this.opaque = type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_3BYTE_BGR;
+    }
+
+    /**
+     * Returns the BufferedImage backing this frame.
+     *
+     * @return  the BufferedImage backing this frame.
+     */
+    public BufferedImage getImage() {
+        return this.image;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return this.image.getHeight();
+    }
+
+    /**
+     * Copies a horizontal run of pixels into the supplied array as packed ARGB integers. The values are identical to
+     * those BufferedImage.getRGB() would return for the same coordinates.
+     *
+     * @param y         the row to read from.
+     * @param x         the column of the first pixel to read.
+     * @param length    the number of pixels to read.
+     * @param rgb       the array the pixels are written to, starting at index 0.
+     */
+    @Override
+    public void readRow(int y, int x, int length, int[] rgb) {
+
+        if (this.intData != null) {
+            int index = this.offset + y * this.scanlineStride + x;
+            if (this.opaque) {
+                for (int i = 0; i < length; i++) {
+                    rgb[i] = 0xff000000 | this.intData[index + i];
+                }
+            } else {
+                System.arraycopy(this.intData, index, rgb, 0, length);
+            }
+        } else if (this.byteData != null) {
+            byte[] data = this.byteData;
+            int index = this.offset + y * this.scanlineStride + x * this.pixelStride;
+            int red = this.bandOffsets[0];
+            int green = this.bandOffsets[1];
+            int blue = this.bandOffsets[2];
+            if (this.opaque) {
+                for (int i = 0; i < length; i++, index += this.pixelStride) {
+                    rgb[i] = 0xff000000
+                            | (data[index + red] & 0xff) << 16
+                            | (data[index + green] & 0xff) << 8
+                            | (data[index + blue] & 0xff);
+                }
+            } else {
+                int alpha = this.bandOffsets[3];
+                for (int i = 0; i < length; i++, index += this.pixelStride) {
+                    rgb[i] = (data[index + alpha] & 0xff) << 24
+                            | (data[index + red] & 0xff) << 16
+                            | (data[index + green] & 0xff) << 8
+                            | (data[index + blue] & 0xff);
+                }
+            }
+        } else {
+            this.image.getRGB(x, y, length, 1, rgb, 0, length);
+        }
+    }
+}
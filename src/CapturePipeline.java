@@ -0,0 +1,398 @@
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <h1>CapturePipeline</h1>
+ * CapturePipeline objects continuously capture frames from a FrameSource, analyse them, and publish the results to
+ * any number of ResultListeners, all off the Swing event dispatch thread.
+ * <p>
+ * A dedicated capture thread reads frames into a small bounded queue, and a pool of analysis threads takes frames
+ * from the queue and runs them through ImageTools. When the analysis threads fall behind and the queue is full, the
+ * oldest queued frame is dropped to make room, so the results always describe the most recent frames rather than a
+ * growing backlog. Results which finish after a newer frame's result has already been published are not published.
+ * <p>
+ * The target of each frame is passed to a single DistanceTracker in frame order, so that results say whether the
+ * target is moving closer or farther. A frame which finishes after a newer frame has been tracked is left out.
+ * <p>
+ * If a ResultLog is set, the result and target of every frame are appended to it in frame order, and a frame which
+ * finishes after a newer frame has been logged is left out.
+ * <p>
+ * The wait for each frame and every dropped frame are recorded in PipelineMetrics.getDefault() while it is enabled.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class CapturePipeline {
+
+    private final FrameSource source;
+    private final GreenClassifier classifier;
+    private final int WORKERS;
+    private final BlockingQueue<CapturedFrame> queue;
+    private final List<ResultListener> listeners;
+
+    private final AtomicLong framesCaptured;
+    private final AtomicLong framesDropped;
+    private final AtomicLong framesProcessed;
+    private final AtomicLong lastPublished;
+    private final DistanceTracker distanceTracker;
+    private long lastTracked;
+    private volatile ResultLog resultLog;
+    private long lastLogged;
+
+    private volatile boolean running;
+    private volatile boolean sourceFinished;
+    private Thread captureThread;
+    private Thread[] workerThreads;
+    private CountDownLatch finished;
+
+    /**
+     * Constructor for the CapturePipeline class. Uses the default GreenClassifier.
+     *
+     * @param source            the FrameSource to capture frames from.
+     * @param workers           the number of analysis threads.
+     * @param queueCapacity     the number of captured frames which may wait for analysis before frames are dropped.
+     */
+    public CapturePipeline(FrameSource source, int workers, int queueCapacity) {
+        this(source, workers, queueCapacity, GreenClassifier.getDefault());
+    }
+
+    /**
+     * Constructor for the CapturePipeline class. Initialises instance variables only; nothing runs until start()
+     * is called.
+     *
+     * @param source            the FrameSource to capture frames from.
+     * @param workers           the number of analysis threads.
+     * @param queueCapacity     the number of captured frames which may wait for analysis before frames are dropped.
+     * @param classifier        the GreenClassifier which decides which pixels are green.
+     */
+    public CapturePipeline(FrameSource source, int workers, int queueCapacity, GreenClassifier classifier) {
+        this.source = source;
+        this.classifier = classifier;
+        this.WORKERS = Math.max(1, workers);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.framesCaptured = new AtomicLong();
+        this.framesDropped = new AtomicLong();
+        this.framesProcessed = new AtomicLong();
+        this.lastPublished = new AtomicLong(-1);
+        this.distanceTracker = new DistanceTracker();
+        this.lastTracked = -1;
+        this.lastLogged = -1;
+    }
+
+    /**
+     * Registers a ResultListener to receive published results.
+     *
+     * @param listener  the ResultListener to add.
+     */
+    public void addListener(ResultListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Stops a ResultListener from receiving published results.
+     *
+     * @param listener  the ResultListener to remove.
+     */
+    public void removeListener(ResultListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Sets a ResultLog to append the result and target of every frame to. The log is not closed by the pipeline, so
+     * it should be closed after stop().
+     *
+     * @param resultLog     the ResultLog to append to, or null to stop logging.
+     */
+    public void setResultLog(ResultLog resultLog) {
+        this.resultLog = resultLog;
+    }
+
+    /**
+     * Starts the capture thread and the analysis threads. The pipeline runs until stop() is called or the source
+     * runs out of frames.
+     */
+    public synchronized void start() {
+
+        if (this.running) {
+            return;
+        }
+        this.running = true;
+        this.sourceFinished = false;
+        this.finished = new CountDownLatch(this.WORKERS);
+
+        this.workerThreads = new Thread[this.WORKERS];
+        for (int i = 0; i < this.WORKERS; i++) {
+            this.workerThreads[i] = new Thread(this::analyse, "analysis-" + i);
+            this.workerThreads[i].setDaemon(true);
+            this.workerThreads[i].start();
+        }
+
+        this.captureThread = new Thread(this::capture, "capture");
+        this.captureThread.setDaemon(true);
+        this.captureThread.start();
+    }
+
+    /**
+     * Stops capturing and analysing frames, closes the source, and waits for the threads to finish. Frames still
+     * waiting in the queue are discarded.
+     *
+     * @throws InterruptedException     if the calling thread is interrupted while waiting.
+     */
+    public void stop() throws InterruptedException {
+
+        Thread[] threads;
+        synchronized (this) {
+            if (!this.running) {
+                return;
+            }
+            this.running = false;
+            this.source.close();
+            this.captureThread.interrupt();
+            threads = this.workerThreads;
+        }
+
+        this.captureThread.join();
+        for (Thread thread : threads) {
+            thread.interrupt();
+            thread.join();
+        }
+        this.queue.clear();
+    }
+
+    /**
+     * Waits until the source has run out of frames and every captured frame has been analysed, or until stop() is
+     * called.
+     *
+     * @param timeout   the maximum time to wait.
+     * @param unit      the unit of the timeout argument.
+     * @return          true if the pipeline finished, false if the timeout elapsed first.
+     * @throws InterruptedException     if the calling thread is interrupted while waiting.
+     */
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        CountDownLatch latch;
+        synchronized (this) {
+            latch = this.finished;
+        }
+        return latch == null || latch.await(timeout, unit);
+    }
+
+    /**
+     * Returns the number of frames read from the source.
+     *
+     * @return  the number of frames read from the source.
+     */
+    public long getFramesCaptured() {
+        return this.framesCaptured.get();
+    }
+
+    /**
+     * Returns the number of frames dropped because the analysis threads could not keep up.
+     *
+     * @return  the number of frames dropped.
+     */
+    public long getFramesDropped() {
+        return this.framesDropped.get();
+    }
+
+    /**
+     * Returns the number of frames which have been analysed.
+     *
+     * @return  the number of frames analysed.
+     */
+    public long getFramesProcessed() {
+        return this.framesProcessed.get();
+    }
+
+    /**
+     * Body of the capture thread. Reads frames from the source and offers them to the queue, dropping the oldest
+     * queued frame whenever the queue is full.
+     */
+    private void capture() {
+        PipelineMetrics metrics = PipelineMetrics.getDefault();
+        long frameNumber = 0;
+        try {
+            while (this.running) {
+                long start = System.nanoTime();
+                RgbFrame frame = this.source.nextFrame();
+                if (frame == null) {
+                    break;
+                }
+                metrics.recordLatency(PipelineMetrics.Stage.CAPTURE, System.nanoTime() - start);
+                this.framesCaptured.incrementAndGet();
+
+                CapturedFrame captured = new CapturedFrame(frame, frameNumber++, System.currentTimeMillis(),
+                        System.nanoTime());
+                while (!this.queue.offer(captured)) {
+                    if (this.queue.poll() != null) {
+                        this.framesDropped.incrementAndGet();
+                        metrics.recordDroppedFrame();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop() was called
+        } finally {
+            this.sourceFinished = true;
+        }
+    }
+
+    /**
+     * Body of each analysis thread. Takes frames from the queue, analyses them, and publishes the results until the
+     * pipeline is stopped or the source has finished and the queue is empty. Each thread keeps one ImageTools for
+     * every frame it analyses, so its buffers are reused. A frame which cannot be analysed is reported and skipped.
+     */
+    private void analyse() {
+        ImageTools imageTools = new ImageTools(ImageTools.Mode.SINGLE_PASS, this.classifier);
+        try {
+            while (this.running) {
+                CapturedFrame captured = this.queue.poll(50, TimeUnit.MILLISECONDS);
+                if (captured == null) {
+                    if (this.sourceFinished && this.queue.isEmpty()) {
+                        break;
+                    }
+                    continue;
+                }
+
+                TargetResult result;
+                try {
+                    imageTools.setFrame(captured.frame);
+                    String position = imageTools.getPositionOfTarget();
+                    int size = imageTools.getSizeOfTarget();
+                    String distance = trackDistance(captured.number, imageTools.getTarget());
+                    this.framesProcessed.incrementAndGet();
+
+                    result = new TargetResult(captured.number, captured.timestamp, position, size, distance,
+                            System.nanoTime() - captured.nanoTime);
+                } catch (RuntimeException e) {
+                    // one bad frame must not take the thread down with it
+                    System.err.println("could not analyse frame " + captured.number + ": " + e);
+                    continue;
+                }
+                publish(result);
+                try {
+                    log(result, imageTools.getTarget());
+                } catch (RuntimeException e) {
+                    System.err.println("could not log frame " + captured.number + ": " + e);
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop() was called
+        } finally {
+            this.finished.countDown();
+        }
+    }
+
+    /**
+     * Passes the target of a frame to the DistanceTracker, unless a later frame has already been tracked.
+     *
+     * @param frameNumber   the sequence number of the frame.
+     * @param target        the target of the frame as a PixelBlob.
+     * @return              the distance of the target, or null if it is not known or the frame is out of order.
+     */
+    private String trackDistance(long frameNumber, PixelBlob target) {
+        synchronized (this.distanceTracker) {
+            if (frameNumber <= this.lastTracked) {
+                return null;
+            }
+            this.lastTracked = frameNumber;
+            return this.distanceTracker.update(target);
+        }
+    }
+
+    /**
+     * Appends a result and its target to the ResultLog, if there is one, unless a later frame has already been
+     * logged.
+     *
+     * @param result    the TargetResult of the frame.
+     * @param target    the target of the frame as a PixelBlob.
+     */
+    private void log(TargetResult result, PixelBlob target) {
+        ResultLog log = this.resultLog;
+        if (log == null) {
+            return;
+        }
+        synchronized (log) {
+            if (result.getFrameNumber() <= this.lastLogged) {
+                return;
+            }
+            this.lastLogged = result.getFrameNumber();
+            try {
+                log.append(result, target);
+            } catch (IOException e) {
+                System.err.println("could not log frame " + result.getFrameNumber() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hands a result to every listener, unless a result for a later frame has already been published.
+     *
+     * @param result    the TargetResult to publish.
+     */
+    private void publish(TargetResult result) {
+        long last;
+        do {
+            last = this.lastPublished.get();
+            if (result.getFrameNumber() <= last) {
+                return;
+            }
+        } while (!this.lastPublished.compareAndSet(last, result.getFrameNumber()));
+
+        for (ResultListener listener : this.listeners) {
+            try {
+                listener.onResult(result);
+            } catch (RuntimeException e) {
+                // a failing listener must not keep the result from the other listeners or the log
+                System.err.println("could not publish frame " + result.getFrameNumber() + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Runs the pipeline headless against a SyntheticFrameSource delivering 300 640x480 frames at 30 frames per
+     * second, and prints the results and frame counts, followed by the metrics if -Dpipeline.metrics=true is given.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        CapturePipeline pipeline = new CapturePipeline(new SyntheticFrameSource(640, 480, 300, 30), 2, 2);
+        pipeline.addListener(result -> {
+            if (result.getFrameNumber() % 30 == 0) {
+                System.out.println(result + " (" + result.getLatency() / 1000 + " us)");
+            }
+        });
+
+        pipeline.start();
+        pipeline.awaitCompletion(1, TimeUnit.MINUTES);
+        pipeline.stop();
+
+        System.out.println("captured: " + pipeline.getFramesCaptured() + " processed: "
+                + pipeline.getFramesProcessed() + " dropped: " + pipeline.getFramesDropped());
+        if (PipelineMetrics.getDefault().isEnabled()) {
+            System.out.println(PipelineMetrics.getDefault().report());
+        }
+    }
+
+    /**
+     * A frame waiting in the queue, with the details needed to build its TargetResult.
+     */
+    private static class CapturedFrame {
+
+        private final RgbFrame frame;
+        private final long number;
+        private final long timestamp;
+        private final long nanoTime;
+
+        CapturedFrame(RgbFrame frame, long number, long timestamp, long nanoTime) {
+            this.frame = frame;
+            this.number = number;
+            this.timestamp = timestamp;
+            this.nanoTime = nanoTime;
+        }
+    }
+}
@@ -63,4 +63,48 @@ public class CentreBoundary {
     public int getRight() {
         return this.RIGHT;
     }
+
+    /**
+     * Returns a String value of the position of the given coordinates relative to this boundary.
+     *
+     * @param x     x position within the image.
+     * @param y     y position within the image.
+     * @return      a String value of the position of either:
+     *                  above-left
+     *                  above
+     *                  above-right
+     *                  centre
+     *                  left
+     *                  right
+     *                  below-left
+     *                  below
+     *                  below-right
+     */
+    public String getPosition(int x, int y) {
+
+        String position;
+
+        if (y <= this.TOP && x <= this.LEFT) {
+            position = "above-left";
+        } else if (y <= this.TOP && x <= this.RIGHT && x >= this.LEFT) {
+            position = "above";
+        } else if (y <= this.TOP && x >= this.RIGHT) {
+            position = "above-right";
+        } else if (y <= this.BOTTOM && y >= this.TOP && x <= this.RIGHT && x >= this.LEFT) {
+            position = "centre";
+        } else if (y <= this.BOTTOM && y >= this.TOP && x <= this.LEFT) {
+            position = "left";
+        } else if (y <= this.BOTTOM && y >= this.TOP && x >= this.LEFT) {
+            position = "right";
+        } else if (y >= this.BOTTOM && x <= this.LEFT) {
+            position = "below-left";
+        } else if (y >= this.BOTTOM && x <= this.RIGHT && x >= this.LEFT) {
+            position = "below";
+        } else if (y >= this.BOTTOM && x >= this.RIGHT) {
+            position = "below-right";
+        } else {
+            position = "error";
+        }
+        return position;
+    }
 }
\ No newline at end of file
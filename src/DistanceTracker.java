@@ -0,0 +1,284 @@
+/**
+ * <h1>DistanceTracker</h1>
+ * DistanceTracker objects follow the target of a single stream of frames over time, deciding whether it is moving
+ * closer to the camera, farther away, or staying the same distance, and estimating how fast it is moving.
+ * <p>
+ * The apparent size of the target is taken as the square root of its pixel count, which is proportional to its
+ * width and so inversely proportional to its distance. The size and the centroid are each smoothed with a level and
+ * trend exponential filter (Holt's method), so a single noisy frame does not flip the result and the trend gives a
+ * velocity in pixels per frame. The smoothed values of the last few frames are kept in fixed-size ring buffers, and
+ * the target is closer or farther when its smoothed size has changed by more than a threshold across the buffer.
+ * <p>
+ * Every update is O(1) and nothing is allocated after construction, so a DistanceTracker can be run on every
+ * captured frame. It is not thread safe.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class DistanceTracker {
+
+    private final double[] sizeHistory;
+    private final double[] xHistory;
+    private final double[] yHistory;
+    private final double ALPHA;
+    private final double BETA;
+    private final double THRESHOLD;
+
+    private int head;
+    private int historyCount;
+    private int missedFrames;
+    private long framesTracked;
+
+    private double size;
+    private double sizeTrend;
+    private double x;
+    private double xTrend;
+    private double y;
+    private double yTrend;
+    private String distance;
+
+    /**
+     * Constructor for the DistanceTracker class. Compares sizes across 8 frames, smooths with factors of 0.5 for
+     * the level and 0.3 for the trend, and treats a change in size of under 5% as the same distance.
+     */
+    public DistanceTracker() {
+        this(8, 0.5, 0.3, 0.05);
+    }
+
+    /**
+     * Constructor for the DistanceTracker class. Allocates the ring buffers.
+     *
+     * @param history       the number of frames the smoothed size is compared across, at least 2.
+     * @param alpha         the smoothing factor for the size and position, from 0 (ignore new frames) to 1 (no
+     *                      smoothing).
+     * @param beta          the smoothing factor for the velocities, from 0 to 1.
+     * @param threshold     the fraction the smoothed size has to grow or shrink by across the history before the
+     *                      target is closer or farther.
+     */
+    public DistanceTracker(int history, double alpha, double beta, double threshold) {
+        int capacity = Math.max(2, history);
+        this.sizeHistory = new double[capacity];
+        this.xHistory = new double[capacity];
+        this.yHistory = new double[capacity];
+        this.ALPHA = alpha;
+        this.BETA = beta;
+        this.THRESHOLD = threshold;
+    }
+
+    /**
+     * Adds the target of the next frame and sets its distance, which is then returned by PixelBlob.getDistance().
+     * An empty PixelBlob counts as a frame without a target; once the target has been missing for a whole history
+     * the tracker starts again from scratch.
+     *
+     * @param target    the target of the next frame as a PixelBlob.
+     * @return          the distance of the target; one of same, closer, or farther, or null if there is no target
+     *                  or it has not been tracked for long enough to tell.
+     */
+    public String update(PixelBlob target) {
+
+        if (target.getCount() == 0) {
+            this.missedFrames++;
+            if (this.missedFrames >= this.sizeHistory.length) {
+                reset();
+            }
+            this.distance = null;
+            target.setDistance(null);
+            return null;
+        }
+
+        double newSize = Math.sqrt(target.getCount());
+        double newX = target.getCentroidX();
+        double newY = target.getCentroidY();
+        this.missedFrames = 0;
+        this.framesTracked++;
+
+        if (this.historyCount == 0) {
+            this.size = newSize;
+            this.x = newX;
+            this.y = newY;
+            this.sizeTrend = 0;
+            this.xTrend = 0;
+            this.yTrend = 0;
+        } else {
+            double previous = this.size;
+            this.size = this.ALPHA * newSize + (1 - this.ALPHA) * (previous + this.sizeTrend);
+            this.sizeTrend = this.BETA * (this.size - previous) + (1 - this.BETA) * this.sizeTrend;
+
+            previous = this.x;
+            this.x = this.ALPHA * newX + (1 - this.ALPHA) * (previous + this.xTrend);
+            this.xTrend = this.BETA * (this.x - previous) + (1 - this.BETA) * this.xTrend;
+
+            previous = this.y;
+            this.y = this.ALPHA * newY + (1 - this.ALPHA) * (previous + this.yTrend);
+            this.yTrend = this.BETA * (this.y - previous) + (1 - this.BETA) * this.yTrend;
+        }
+
+        // the slot at head holds the oldest entry once the buffer is full
+        this.sizeHistory[this.head] = this.size;
+        this.xHistory[this.head] = this.x;
+        this.yHistory[this.head] = this.y;
+        this.head = (this.head + 1) % this.sizeHistory.length;
+        if (this.historyCount < this.sizeHistory.length) {
+            this.historyCount++;
+        }
+
+        if (this.historyCount < this.sizeHistory.length) {
+            this.distance = null;
+        } else {
+            double oldest = this.sizeHistory[this.head];
+            double change = (this.size - oldest) / oldest;
+            if (change > this.THRESHOLD) {
+                this.distance = "closer";
+            } else if (change < -this.THRESHOLD) {
+                this.distance = "farther";
+            } else {
+                this.distance = "same";
+            }
+        }
+
+        target.setDistance(this.distance);
+        return this.distance;
+    }
+
+    /**
+     * Forgets every frame seen so far, such as when the stream switches to a different scene.
+     */
+    public void reset() {
+        this.head = 0;
+        this.historyCount = 0;
+        this.missedFrames = 0;
+        this.sizeTrend = 0;
+        this.xTrend = 0;
+        this.yTrend = 0;
+        this.distance = null;
+    }
+
+    /**
+     * Returns the distance of the target in the latest frame.
+     *
+     * @return  one of same, closer, or farther, or null if it is not yet known.
+     */
+    public String getDistance() {
+        return this.distance;
+    }
+
+    /**
+     * Returns the smoothed apparent size of the target, which is the square root of its pixel count.
+     *
+     * @return  the smoothed size in pixels, or 0 if nothing has been tracked.
+     */
+    public double getSmoothedSize() {
+        return this.historyCount == 0 ? 0 : this.size;
+    }
+
+    /**
+     * Returns the rate at which the target appears to be growing, as a fraction of its size per frame. Positive
+     * values mean the target is approaching.
+     *
+     * @return  the relative change in size per frame, or 0 if nothing has been tracked.
+     */
+    public double getApproachRate() {
+        return this.historyCount == 0 || this.size == 0 ? 0 : this.sizeTrend / this.size;
+    }
+
+    /**
+     * Returns the smoothed horizontal velocity of the centroid of the target.
+     *
+     * @return  the velocity in pixels per frame, positive to the right.
+     */
+    public double getVelocityX() {
+        return this.xTrend;
+    }
+
+    /**
+     * Returns the smoothed vertical velocity of the centroid of the target.
+     *
+     * @return  the velocity in pixels per frame, positive downwards.
+     */
+    public double getVelocityY() {
+        return this.yTrend;
+    }
+
+    /**
+     * Returns the smoothed size of the target a number of frames ago, from the ring buffer.
+     *
+     * @param framesAgo     the number of frames back, where 0 is the latest frame.
+     * @return              the smoothed size, or -1 if that frame is no longer held.
+     */
+    public double getSizeHistory(int framesAgo) {
+        int index = historyIndex(framesAgo);
+        return index < 0 ? -1 : this.sizeHistory[index];
+    }
+
+    /**
+     * Returns the smoothed centroid x value of the target a number of frames ago, from the ring buffer.
+     *
+     * @param framesAgo     the number of frames back, where 0 is the latest frame.
+     * @return              the smoothed x value, or -1 if that frame is no longer held.
+     */
+    public double getXHistory(int framesAgo) {
+        int index = historyIndex(framesAgo);
+        return index < 0 ? -1 : this.xHistory[index];
+    }
+
+    /**
+     * Returns the smoothed centroid y value of the target a number of frames ago, from the ring buffer.
+     *
+     * @param framesAgo     the number of frames back, where 0 is the latest frame.
+     * @return              the smoothed y value, or -1 if that frame is no longer held.
+     */
+    public double getYHistory(int framesAgo) {
+        int index = historyIndex(framesAgo);
+        return index < 0 ? -1 : this.yHistory[index];
+    }
+
+    /**
+     * Returns the number of frames with a target which have been tracked.
+     *
+     * @return  the number of frames tracked.
+     */
+    public long getFramesTracked() {
+        return this.framesTracked;
+    }
+
+    private int historyIndex(int framesAgo) {
+        if (framesAgo < 0 || framesAgo >= this.historyCount) {
+            return -1;
+        }
+        int length = this.sizeHistory.length;
+        return (this.head - 1 - framesAgo + 2 * length) % length;
+    }
+
+    /**
+     * Feeds the tracker a square target which holds still, then approaches, then backs away while drifting to the
+     * right, and prints what it reports every 10 frames.
+     */
+    public static void main(String[] args) {
+        DistanceTracker tracker = new DistanceTracker();
+
+        for (int frame = 0; frame < 90; frame++) {
+            int side;
+            if (frame < 30) {
+                side = 60;
+            } else if (frame < 60) {
+                side = 60 + (frame - 30) * 3;
+            } else {
+                side = 150 - (frame - 60) * 3;
+            }
+            int left = 100 + frame * 2;
+            int top = 100;
+
+            PixelBlob target = new PixelBlob(640, 480);
+            for (int y = top; y < top + side; y++) {
+                target.addRun(y, left, left + side - 1);
+            }
+            tracker.update(target);
+
+            if (frame % 10 == 9) {
+                System.out.println(String.format("frame %2d: side %3d, %-7s approach %+.3f/frame, velocity (%+.1f, "
+                        + "%+.1f) px/frame", frame, side, target.getDistance(), tracker.getApproachRate(),
+                        tracker.getVelocityX(), tracker.getVelocityY()));
+            }
+        }
+    }
+}
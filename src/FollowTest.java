@@ -4,16 +4,37 @@ import com.github.sarxos.webcam.Webcam;
 import com.github.sarxos.webcam.WebcamPanel;
 
 import java.awt.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
-import java.awt.image.BufferedImage;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implements a test GUI for the position and distance tracking.
+ * <p>
+ * Frames are captured and analysed by a CapturePipeline on its own threads, and the results are handed back to the
+ * event dispatch thread to update the labels, so the UI never waits for a frame to be processed.
+ * <p>
+ * Run with the argument metrics to record PipelineMetrics, which are then registered over JMX and logged every 10
+ * seconds, and with log=file to append the result of every frame to a ResultLog.
  */
 public class FollowTest {
 
-    public static void main(String[] args) throws InterruptedException {
+    public static void main(String[] args) throws Exception {
+
+        PipelineMetrics metrics = PipelineMetrics.getDefault();
+        ResultLog log = null;
+        for (String arg : args) {
+            if (arg.equals("metrics")) {
+                metrics.setEnabled(true);
+                metrics.registerMBean();
+                metrics.startReporter(10, TimeUnit.SECONDS);
+            } else if (arg.startsWith("log=")) {
+                log = new ResultLog(new File(arg.substring(4)));
+            }
+        }
+        ResultLog resultLog = log;
 
         Webcam webcam = Webcam.getDefault();
         webcam.setViewSize(new Dimension(320, 240));
@@ -41,6 +62,13 @@ public class FollowTest {
         JLabel sizeActual = new JLabel("", JLabel.RIGHT);
         sizeActual.setFont(new Font("Sans Serif", Font.PLAIN, 20));
 
+        JPanel distancePanel = new JPanel();
+
+        JLabel distanceText = new JLabel("Distance: ", JLabel.LEFT);
+        distanceText.setFont(new Font("Sans Serif", Font.BOLD, 20));
+        JLabel distanceActual = new JLabel("", JLabel.RIGHT);
+        distanceActual.setFont(new Font("Sans Serif", Font.PLAIN, 20));
+
         positionPanel.setLayout(new FlowLayout());
         positionPanel.add(positionText);
         positionPanel.add(positionActual);
@@ -49,24 +77,47 @@ public class FollowTest {
         sizePanel.add(sizeText);
         sizePanel.add(sizeActual);
 
+        distancePanel.setLayout(new FlowLayout());
+        distancePanel.add(distanceText);
+        distancePanel.add(distanceActual);
+
         container.add(webcamPanel);
         container.add(positionPanel);
         container.add(sizePanel);
-
-        Timer timer = new Timer(500, new ActionListener() {
-            public void actionPerformed(ActionEvent evt) {
-                BufferedImage image = webcam.getImage();
-                ImageTools imageTools = new ImageTools(image);
-                positionActual.setText(imageTools.getPositionOfTarget());
-                sizeActual.setText(String.valueOf(imageTools.getSizeOfTarget()));
+        container.add(distancePanel);
+
+        CapturePipeline pipeline = new CapturePipeline(new WebcamFrameSource(webcam), 2, 2);
+        pipeline.setResultLog(resultLog);
+        pipeline.addListener(new ResultListener() {
+            public void onResult(TargetResult result) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        long start = System.nanoTime();
+                        positionActual.setText(result.getPosition());
+                        sizeActual.setText(String.valueOf(result.getSize()));
+                        distanceActual.setText(result.getDistance() != null ? result.getDistance() : "");
+                        metrics.recordLatency(PipelineMetrics.Stage.UI_UPDATE, System.nanoTime() - start);
+                    }
+                });
             }
         });
-
-        timer.setRepeats(true);
-        timer.setCoalesce(true);
-        timer.start();
+        pipeline.start();
 
         JFrame window = new JFrame("FollowTest");
+        window.addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent evt) {
+                try {
+                    pipeline.stop();
+                    if (resultLog != null) {
+                        resultLog.close();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException e) {
+                    System.err.println("could not close the result log: " + e.getMessage());
+                }
+            }
+        });
         window.add(container);
         window.setResizable(true);
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -0,0 +1,24 @@
+/**
+ * <h1>FrameSource</h1>
+ * FrameSource is implemented by anything which can deliver a sequence of frames for analysis, such as a webcam, a
+ * directory of images, or a synthetic generator.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public interface FrameSource {
+
+    /**
+     * Returns the next frame, blocking until one is available. Each call returns a new frame which the caller may
+     * hold on to.
+     *
+     * @return  the next frame, or null if the source has no more frames.
+     * @throws InterruptedException     if the calling thread is interrupted while waiting for a frame.
+     */
+    RgbFrame nextFrame() throws InterruptedException;
+
+    /**
+     * Releases any resources held by the source. nextFrame() returns null afterwards.
+     */
+    void close();
+}
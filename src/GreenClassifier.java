@@ -0,0 +1,496 @@
+import java.awt.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * <h1>GreenClassifier</h1>
+ * GreenClassifier objects decide whether a colour lies within a hue, saturation, and brightness range using a
+ * precomputed lookup table.
+ * <p>
+ * Every one of the 2^24 RGB colours is converted to HSB once, when the classifier is created, and the answer is stored
+ * as a single bit in a 2MB table. Classifying a pixel is then a single memory load instead of a call to
+ * Color.RGBtoHSB(). Because the table is built with the same float arithmetic as ImageTools.isGreen(), the answers
+ * are identical.
+ * <p>
+ * A table lookup is a scattered load from 2MB of memory, which misses the cache on frames with many colours. For
+ * the usual case of a hue window in whole degrees between 60 and 180 with any saturation and brightness, the same
+ * answer can be computed from the RGB values alone: such a hue needs green to be the largest component, and the hue
+ * is then 120 + 60 * (blue - red) / (green - min(red, blue)) degrees, so the window becomes two integer inequalities.
+ * classifyRowArithmetic() evaluates these without branches or table loads, in a simple loop the JIT can unroll and
+ * keep in registers. Float rounding in Color.RGBtoHSB() can disagree with the exact inequalities for some windows, so
+ * the inequalities are checked against every colour while the table is built, and isArithmetic() is false if any
+ * colour differs. While the table stays in cache the lookup is as fast or faster, so classifyRow() uses it unless the
+ * classifier is created with preferArithmetic set, and main() times both so the choice can be made on the target
+ * machine. Since everything else classifies through classifyRow(), passing such a classifier to ImageTools,
+ * ParallelFrameProcessor, RunMask or CapturePipeline is all it takes to use the arithmetic path.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class GreenClassifier {
+
+    private final float MIN_HUE;
+    private final float MAX_HUE;
+    private final float MIN_SATURATION;
+    private final float MAX_SATURATION;
+    private final float MIN_BRIGHTNESS;
+    private final float MAX_BRIGHTNESS;
+    private final long[] table;
+    private final boolean ARITHMETIC;
+    private final boolean USE_ARITHMETIC;
+    private final int LOW_FACTOR;
+    private final int HIGH_FACTOR;
+
+    /**
+     * Constructor for the GreenClassifier class. Accepts any saturation and brightness.
+     *
+     * @param minHue    the lowest accepted hue in degrees (inclusive).
+     * @param maxHue    the highest accepted hue in degrees (exclusive).
+     */
+    public GreenClassifier(float minHue, float maxHue) {
+        this(minHue, maxHue, 0f, 1f, 0f, 1f, false);
+    }
+
+    /**
+     * Constructor for the GreenClassifier class. Accepts any saturation and brightness.
+     *
+     * @param minHue            the lowest accepted hue in degrees (inclusive).
+     * @param maxHue            the highest accepted hue in degrees (exclusive).
+     * @param preferArithmetic  true to have classifyRow() use the integer inequalities whenever isArithmetic() is
+     *                          true, rather than the lookup table.
+     */
+    public GreenClassifier(float minHue, float maxHue, boolean preferArithmetic) {
+        this(minHue, maxHue, 0f, 1f, 0f, 1f, preferArithmetic);
+    }
+
+    /**
+     * Constructor for the GreenClassifier class. classifyRow() uses the lookup table.
+     * <p>
+     * If minHue is greater than maxHue the hue range wraps around 0 degrees.
+     *
+     * @param minHue            the lowest accepted hue in degrees (inclusive).
+     * @param maxHue            the highest accepted hue in degrees (exclusive).
+     * @param minSaturation     the lowest accepted saturation from 0 to 1 (inclusive).
+     * @param maxSaturation     the highest accepted saturation from 0 to 1 (inclusive).
+     * @param minBrightness     the lowest accepted brightness from 0 to 1 (inclusive).
+     * @param maxBrightness     the highest accepted brightness from 0 to 1 (inclusive).
+     */
+    public GreenClassifier(float minHue, float maxHue, float minSaturation, float maxSaturation,
+                           float minBrightness, float maxBrightness) {
+        this(minHue, maxHue, minSaturation, maxSaturation, minBrightness, maxBrightness, false);
+    }
+
+    /**
+     * Constructor for the GreenClassifier class. Builds the lookup table for the given ranges, which takes a few
+     * hundred milliseconds, so classifiers should be created once and reused.
+     * <p>
+     * If minHue is greater than maxHue the hue range wraps around 0 degrees.
+     *
+     * @param minHue            the lowest accepted hue in degrees (inclusive).
+     * @param maxHue            the highest accepted hue in degrees (exclusive).
+     * @param minSaturation     the lowest accepted saturation from 0 to 1 (inclusive).
+     * @param maxSaturation     the highest accepted saturation from 0 to 1 (inclusive).
+     * @param minBrightness     the lowest accepted brightness from 0 to 1 (inclusive).
+     * @param maxBrightness     the highest accepted brightness from 0 to 1 (inclusive).
+     * @param preferArithmetic  true to have classifyRow() use the integer inequalities whenever isArithmetic() is
+     *                          true, rather than the lookup table.
+     */
+    public GreenClassifier(float minHue, float maxHue, float minSaturation, float maxSaturation,
+                           float minBrightness, float maxBrightness, boolean preferArithmetic) {
+        this.MIN_HUE = minHue;
+        this.MAX_HUE = maxHue;
+        this.MIN_SATURATION = minSaturation;
+        this.MAX_SATURATION = maxSaturation;
+        this.MIN_BRIGHTNESS = minBrightness;
+        this.MAX_BRIGHTNESS = maxBrightness;
+        this.table = new long[1 << 18];
+
+        // the inequalities can only stand in for a whole degree window of green hues with no other limits
+        boolean candidate = minHue == (int) minHue && maxHue == (int) maxHue && minHue >= 60 && minHue < maxHue
+                && maxHue <= 180 && minSaturation <= 0 && maxSaturation >= 1 && minBrightness <= 0
+                && maxBrightness >= 1;
+        this.LOW_FACTOR = (int) minHue - 120;
+        this.HIGH_FACTOR = (int) maxHue - 120;
+        boolean[] differs = new boolean[256];
+
+        // each red value fills its own 1024 words of the table, so the rows can be built in parallel
+        IntStream.range(0, 256).parallel().forEach(red -> {
+            float[] hsb = new float[3];
+            for (int green = 0; green < 256; green++) {
+                for (int blue = 0; blue < 256; blue++) {
+                    boolean match = matches(red, green, blue, hsb);
+                    if (match) {
+                        int rgb = (red << 16) | (green << 8) | blue;
+                        this.table[rgb >>> 6] |= 1L << rgb;
+                    }
+                    if (candidate && match != (inequalities(red, green, blue) < 0)) {
+                        differs[red] = true;
+                    }
+                }
+            }
+        });
+
+        boolean arithmetic = candidate;
+        for (boolean differ : differs) {
+            arithmetic &= !differ;
+        }
+        this.ARITHMETIC = arithmetic;
+        this.USE_ARITHMETIC = arithmetic && preferArithmetic;
+    }
+
+    /**
+     * Returns the shared classifier for the original 110-160 degree hue window used by ImageTools.
+     *
+     * @return  the shared default GreenClassifier.
+     */
+    public static GreenClassifier getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Calculates whether the given colour lies within this classifier's ranges by converting it to HSB. This is the
+     * slow path the lookup table is built from.
+     *
+     * @param red       red value of the colour in ARGB colourspace.
+     * @param green     green value of the colour in ARGB colourspace.
+     * @param blue      blue value of the colour in ARGB colourspace.
+     * @param hsb       an array of at least 3 floats to hold the converted HSB values.
+     * @return          a boolean value indicating whether the colour lies within the ranges.
+     */
+    private boolean matches(int red, int green, int blue, float[] hsb) {
+
+        Color.RGBtoHSB(red, green, blue, hsb);
+        float deg = hsb[0]*360;
+
+        boolean hue;
+        if (this.MIN_HUE <= this.MAX_HUE) {
+            hue = deg >= this.MIN_HUE && deg < this.MAX_HUE;
+        } else {
+            hue = deg >= this.MIN_HUE || deg < this.MAX_HUE;
+        }
+
+        return hue
+                && hsb[1] >= this.MIN_SATURATION && hsb[1] <= this.MAX_SATURATION
+                && hsb[2] >= this.MIN_BRIGHTNESS && hsb[2] <= this.MAX_BRIGHTNESS;
+    }
+
+    /**
+     * Evaluates the integer form of the hue window without branches. The result is negative exactly when green is
+     * larger than red, at least as large as blue, and 60 * (blue - red) lies in [low, high) * (green - min(red, blue)),
+     * where low and high are the hue limits less 120 degrees.
+     *
+     * @param red       red value of the colour in ARGB colourspace.
+     * @param green     green value of the colour in ARGB colourspace.
+     * @param blue      blue value of the colour in ARGB colourspace.
+     * @return          a negative value if the colour is inside the window, otherwise zero or positive.
+     */
+    private int inequalities(int red, int green, int blue) {
+        int range = green - Math.min(red, blue);
+        int difference = 60 * (blue - red);
+        return (red - green) & (blue - green - 1) & ~(difference - this.LOW_FACTOR * range)
+                & (difference - this.HIGH_FACTOR * range);
+    }
+
+    /**
+     * Returns whether the given packed RGB colour is green. The alpha byte is ignored.
+     *
+     * @param rgb   the colour as a packed ARGB integer.
+     * @return      a boolean value indicating whether the colour is green or not.
+     */
+    public boolean isGreen(int rgb) {
+        int index = rgb & 0xffffff;
+        return (this.table[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns whether the given colour is green.
+     *
+     * @param red       red value of the colour in ARGB colourspace.
+     * @param green     green value of the colour in ARGB colourspace.
+     * @param blue      blue value of the colour in ARGB colourspace.
+     * @return          a boolean value indicating whether the colour is green or not.
+     */
+    public boolean isGreen(int red, int green, int blue) {
+        return isGreen((red << 16) | (green << 8) | blue);
+    }
+
+    /**
+     * Classifies a run of packed ARGB pixels and sets the bits of the green ones in a bit-packed row, such as a row
+     * of a GreenMask. Bits are OR-ed in a whole word at a time. The lookup table is used unless the classifier
+     * prefers the integer inequalities and they can be used, in which case classifyRowArithmetic() is called instead.
+     *
+     * @param rgb       the pixels to classify.
+     * @param length    the number of pixels to classify.
+     * @param bits      the array holding the bit-packed row.
+     * @param offset    the index of the first word of the row within bits.
+     * @param startX    the column of the first pixel, used to find its bit within the row.
+     */
+    public void classifyRow(int[] rgb, int length, long[] bits, int offset, int startX) {
+
+        if (length <= 0) {
+            return;
+        }
+        if (this.USE_ARITHMETIC) {
+            classifyRowArithmetic(rgb, length, bits, offset, startX);
+            return;
+        }
+
+        long[] table = this.table;
+        int current = startX >>> 6;
+        long word = 0;
+
+        for (int i = 0; i < length; i++) {
+            int x = startX + i;
+            if ((x >>> 6) != current) {
+                bits[offset + current] |= word;
+                current = x >>> 6;
+                word = 0;
+            }
+            int index = rgb[i] & 0xffffff;
+            word |= ((table[index >>> 6] >>> index) & 1L) << x;
+        }
+        bits[offset + current] |= word;
+    }
+
+    /**
+     * Classifies a run of pixels in the same way as classifyRow(), always using the integer inequalities. The
+     * pixels are handled a word at a time, so the inner loop has a fixed shift and no branches.
+     *
+     * @param rgb       the pixels to classify.
+     * @param length    the number of pixels to classify.
+     * @param bits      the array holding the bit-packed row.
+     * @param offset    the index of the first word of the row within bits.
+     * @param startX    the column of the first pixel, used to find its bit within the row.
+     * @throws IllegalStateException    if the inequalities do not match this classifier's ranges.
+     */
+    public void classifyRowArithmetic(int[] rgb, int length, long[] bits, int offset, int startX) {
+
+        if (!this.ARITHMETIC) {
+            throw new IllegalStateException("the hue window cannot be classified arithmetically");
+        }
+
+        int low = this.LOW_FACTOR;
+        int high = this.HIGH_FACTOR;
+        int i = 0;
+        while (i < length) {
+            int x = startX + i;
+            int bit = x & 63;
+            int count = Math.min(64 - bit, length - i);
+            long word = 0;
+            for (int j = 0; j < count; j++) {
+                int pixel = rgb[i + j];
+                int red = (pixel >>> 16) & 0xff;
+                int green = (pixel >>> 8) & 0xff;
+                int blue = pixel & 0xff;
+                int range = green - Math.min(red, blue);
+                int difference = 60 * (blue - red);
+                int inside = (red - green) & (blue - green - 1) & ~(difference - low * range)
+                        & (difference - high * range);
+                word |= (long) (inside >>> 31) << j;
+            }
+            bits[offset + (x >>> 6)] |= word << bit;
+            i += count;
+        }
+    }
+
+    /**
+     * Returns whether classifyRowArithmetic() can be used, which is when the integer inequalities give the same
+     * answer as the lookup table for every colour.
+     *
+     * @return  true if this classifier's ranges can be classified arithmetically.
+     */
+    public boolean isArithmetic() {
+        return this.ARITHMETIC;
+    }
+
+    /**
+     * Returns whether classifyRow() uses the integer inequalities rather than the lookup table, which is when the
+     * classifier was created with preferArithmetic set and isArithmetic() is true.
+     *
+     * @return  true if classifyRow() classifies arithmetically.
+     */
+    public boolean usesArithmetic() {
+        return this.USE_ARITHMETIC;
+    }
+
+    /**
+     * Returns the lowest accepted hue in degrees.
+     *
+     * @return  the lowest accepted hue in degrees (inclusive).
+     */
+    public float getMinHue() {
+        return this.MIN_HUE;
+    }
+
+    /**
+     * Returns the highest accepted hue in degrees.
+     *
+     * @return  the highest accepted hue in degrees (exclusive).
+     */
+    public float getMaxHue() {
+        return this.MAX_HUE;
+    }
+
+    /**
+     * Returns the lowest accepted saturation.
+     *
+     * @return  the lowest accepted saturation from 0 to 1.
+     */
+    public float getMinSaturation() {
+        return this.MIN_SATURATION;
+    }
+
+    /**
+     * Returns the highest accepted saturation.
+     *
+     * @return  the highest accepted saturation from 0 to 1.
+     */
+    public float getMaxSaturation() {
+        return this.MAX_SATURATION;
+    }
+
+    /**
+     * Returns the lowest accepted brightness.
+     *
+     * @return  the lowest accepted brightness from 0 to 1.
+     */
+    public float getMinBrightness() {
+        return this.MIN_BRIGHTNESS;
+    }
+
+    /**
+     * Returns the highest accepted brightness.
+     *
+     * @return  the highest accepted brightness from 0 to 1.
+     */
+    public float getMaxBrightness() {
+        return this.MAX_BRIGHTNESS;
+    }
+
+    /**
+     * Lazily builds the default classifier the first time it is requested.
+     */
+    private static class DefaultHolder {
+        private static final GreenClassifier INSTANCE = new GreenClassifier(110, 160);
+    }
+
+    /**
+     * Checks the lookup table against Color.RGBtoHSB() for every one of the 2^24 RGB values, using the default
+     * 110-160 degree window, a window which float rounding keeps on the lookup table, and a window with saturation
+     * and brightness limits. Where the integer inequalities can be used, classifyRowArithmetic() is checked against
+     * classifyRow() for every colour at every bit alignment, and both are timed on rows of random colours. Lastly
+     * classifyRow() of a classifier preferring the inequalities is checked against the lookup table. Exits with
+     * status 1 if any colour or row differs.
+     */
+    public static void main(String[] args) {
+        GreenClassifier[] classifiers = {
+                getDefault(),
+                new GreenClassifier(100, 140),
+                new GreenClassifier(90, 150, 0.2f, 1f, 0.1f, 0.9f)
+        };
+        float[] hsb = new float[3];
+        boolean passed = true;
+
+        for (GreenClassifier classifier : classifiers) {
+            long mismatches = 0;
+            long green = 0;
+            for (int rgb = 0; rgb < (1 << 24); rgb++) {
+                int red = (rgb >> 16) & 0xff;
+                int g = (rgb >> 8) & 0xff;
+                int blue = rgb & 0xff;
+
+                Color.RGBtoHSB(red, g, blue, hsb);
+                float deg = hsb[0]*360;
+                boolean expected = deg >= classifier.MIN_HUE && deg < classifier.MAX_HUE
+                        && hsb[1] >= classifier.MIN_SATURATION && hsb[1] <= classifier.MAX_SATURATION
+                        && hsb[2] >= classifier.MIN_BRIGHTNESS && hsb[2] <= classifier.MAX_BRIGHTNESS;
+
+                if (classifier.isGreen(rgb) != expected) {
+                    mismatches++;
+                }
+                if (expected) {
+                    green++;
+                }
+            }
+            System.out.println("hue " + classifier.MIN_HUE + "-" + classifier.MAX_HUE + ": " + green
+                    + " green colours, " + mismatches + " mismatches, "
+                    + (classifier.isArithmetic() ? "arithmetic available" : "lookup table only"));
+            passed &= mismatches == 0;
+
+            if (!classifier.isArithmetic()) {
+                continue;
+            }
+
+            // every colour, as 4096 rows of 4096 pixels starting at each bit alignment in turn
+            int[] row = new int[4096];
+            long[] lookup = new long[66];
+            long[] arithmetic = new long[66];
+            long rowMismatches = 0;
+            for (int start = 0; start < (1 << 24); start += row.length) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = 0xff000000 | (start + i);
+                }
+                int startX = (start >>> 12) & 63;
+                Arrays.fill(lookup, 0L);
+                Arrays.fill(arithmetic, 0L);
+                classifier.classifyRow(row, row.length, lookup, 1, startX);
+                classifier.classifyRowArithmetic(row, row.length, arithmetic, 1, startX);
+                if (!Arrays.equals(lookup, arithmetic)) {
+                    rowMismatches++;
+                }
+            }
+            System.out.println("  classifyRowArithmetic: " + rowMismatches + " rows differ from classifyRow");
+            passed &= rowMismatches == 0;
+
+            Random random = new Random(42);
+            for (int i = 0; i < row.length; i++) {
+                row[i] = random.nextInt();
+            }
+            for (int pass = 0; pass < 3; pass++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 4000; i++) {
+                    classifier.classifyRow(row, row.length, lookup, 1, 0);
+                }
+                long lookupTime = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < 4000; i++) {
+                    classifier.classifyRowArithmetic(row, row.length, arithmetic, 1, 0);
+                }
+                long arithmeticTime = System.nanoTime() - start;
+                if (pass == 2) {
+                    System.out.println(String.format("  random colours: lookup %.2f ns/pixel, arithmetic %.2f "
+                            + "ns/pixel", lookupTime / 4000.0 / row.length, arithmeticTime / 4000.0 / row.length));
+                }
+            }
+        }
+
+        // a classifier preferring the inequalities has to give the same rows through classifyRow()
+        GreenClassifier preferring = new GreenClassifier(110, 160, true);
+        int[] row = new int[4096];
+        long[] lookup = new long[66];
+        long[] preferred = new long[66];
+        long rowMismatches = 0;
+        for (int start = 0; start < (1 << 24); start += row.length) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = 0xff000000 | (start + i);
+            }
+            int startX = (start >>> 12) & 63;
+            Arrays.fill(lookup, 0L);
+            Arrays.fill(preferred, 0L);
+            getDefault().classifyRow(row, row.length, lookup, 1, startX);
+            preferring.classifyRow(row, row.length, preferred, 1, startX);
+            if (!Arrays.equals(lookup, preferred)) {
+                rowMismatches++;
+            }
+        }
+        System.out.println("hue 110.0-160.0 preferring arithmetic: "
+                + (preferring.usesArithmetic() ? "classifyRow() is arithmetic" : "classifyRow() uses the table")
+                + ", " + rowMismatches + " rows differ from the lookup table");
+        passed &= rowMismatches == 0;
+
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+}
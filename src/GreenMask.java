@@ -0,0 +1,265 @@
+import java.util.Arrays;
+
+/**
+ * <h1>GreenMask</h1>
+ * GreenMask objects hold a bit-packed, row-major mask of the pixels in a frame which were determined to be green.
+ * <p>
+ * Each row occupies a whole number of long words, with bit (x % 64) of word (x / 64) corresponding to column x. This
+ * uses 1 bit per pixel instead of the 32 bits per pixel of the int[][] arrays in ImageTools, and lets whole rows be
+ * combined 64 pixels at a time.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class GreenMask {
+
+    private final int WIDTH;
+    private final int HEIGHT;
+    private final int WORDS_PER_ROW;
+    private final long[] bits;
+
+    /**
+     * Constructor for the GreenMask class. Creates an empty mask of the given dimensions.
+     *
+     * @param width     the width of the frame in pixels.
+     * @param height    the height of the frame in pixels.
+     */
+    public GreenMask(int width, int height) {
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.WORDS_PER_ROW = (width + 63) >>> 6;
+        this.bits = new long[this.WORDS_PER_ROW * height];
+    }
+
+    /**
+     * Returns the width of the mask in pixels.
+     *
+     * @return  the width of the mask in pixels.
+     */
+    public int getWidth() {
+        return this.WIDTH;
+    }
+
+    /**
+     * Returns the height of the mask in pixels.
+     *
+     * @return  the height of the mask in pixels.
+     */
+    public int getHeight() {
+        return this.HEIGHT;
+    }
+
+    /**
+     * Returns the number of long words used to store each row.
+     *
+     * @return  the number of long words used to store each row.
+     */
+    public int getWordsPerRow() {
+        return this.WORDS_PER_ROW;
+    }
+
+    /**
+     * Returns the backing array of the mask. Row y starts at index y * getWordsPerRow().
+     *
+     * @return  the backing array of the mask.
+     */
+    public long[] getBits() {
+        return this.bits;
+    }
+
+    /**
+     * Returns whether the pixel at the given coordinates is marked as green.
+     *
+     * @param x     x position of the pixel within the frame.
+     * @param y     y position of the pixel within the frame.
+     * @return      a boolean value indicating whether the pixel is marked as green.
+     */
+    public boolean get(int x, int y) {
+        return (this.bits[y * this.WORDS_PER_ROW + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Marks the pixel at the given coordinates as green.
+     *
+     * @param x     x position of the pixel within the frame.
+     * @param y     y position of the pixel within the frame.
+     */
+    public void set(int x, int y) {
+        this.bits[y * this.WORDS_PER_ROW + (x >>> 6)] |= 1L << x;
+    }
+
+    /**
+     * Marks every pixel as not green, so the mask can be reused for another frame of the same dimensions.
+     */
+    public void clear() {
+        Arrays.fill(this.bits, 0L);
+    }
+
+    /**
+     * Returns the column of the first green pixel in a row at or after the given column.
+     *
+     * @param y         the row to search.
+     * @param fromX     the column to start searching from.
+     * @return          the column of the next green pixel, or the width of the mask if there is none.
+     */
+    public int nextSetBit(int y, int fromX) {
+
+        if (fromX >= this.WIDTH) {
+            return this.WIDTH;
+        }
+
+        int row = y * this.WORDS_PER_ROW;
+        int w = fromX >>> 6;
+        long word = this.bits[row + w] & (-1L << fromX);
+
+        while (word == 0) {
+            if (++w == this.WORDS_PER_ROW) {
+                return this.WIDTH;
+            }
+            word = this.bits[row + w];
+        }
+        return Math.min(this.WIDTH, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Returns the column of the first non-green pixel in a row at or after the given column.
+     *
+     * @param y         the row to search.
+     * @param fromX     the column to start searching from.
+     * @return          the column of the next non-green pixel, or the width of the mask if there is none.
+     */
+    public int nextClearBit(int y, int fromX) {
+
+        if (fromX >= this.WIDTH) {
+            return this.WIDTH;
+        }
+
+        int row = y * this.WORDS_PER_ROW;
+        int w = fromX >>> 6;
+        long word = ~this.bits[row + w] & (-1L << fromX);
+
+        while (word == 0) {
+            if (++w == this.WORDS_PER_ROW) {
+                return this.WIDTH;
+            }
+            word = ~this.bits[row + w];
+        }
+        return Math.min(this.WIDTH, (w << 6) + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * Returns the number of pixels marked as green.
+     *
+     * @return  the number of pixels marked as green.
+     */
+    public int count() {
+        int count = 0;
+        for (long word : this.bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Zeroes out stray green pixels in exactly the same way as the cleanUpIntArray() method of ImageTools.
+     * <p>
+     * cleanUpIntArray() makes four in-place passes which clear a pixel if the pixel below it is clear. Because each
+     * pass walks down the column, the pixel below has not yet been modified when it is read, so the net effect is
+     * that a pixel survives only if it and the (up to) four pixels below it are all green. The outermost rows and
+     * columns are never touched. Here that is done a whole row of 64-pixel words at a time by AND-ing each row with
+     * the rows beneath it, working from the top so the rows below are still unmodified.
+     */
+    public void clean() {
+
+        if (this.WIDTH < 3 || this.HEIGHT < 3) {
+            return;
+        }
+
+        for (int y = 1; y < this.HEIGHT - 1; y++) {
+            int row = y * this.WORDS_PER_ROW;
+            for (int w = 0; w < this.WORDS_PER_ROW; w++) {
+                this.bits[row + w] = getCleanedWord(y, w);
+            }
+        }
+    }
+
+    /**
+     * Writes the cleaned version of a range of rows into another mask of the same dimensions, leaving this mask
+     * unmodified. The result is identical to the same rows after clean(), and because this mask is only read,
+     * different row ranges can be cleaned concurrently.
+     *
+     * @param target    the GreenMask the cleaned rows are written to.
+     * @param fromRow   the first row to clean (inclusive).
+     * @param toRow     the last row to clean (exclusive).
+     */
+    public void cleanInto(GreenMask target, int fromRow, int toRow) {
+
+        boolean small = this.WIDTH < 3 || this.HEIGHT < 3;
+
+        for (int y = fromRow; y < toRow; y++) {
+            int row = y * this.WORDS_PER_ROW;
+            if (small || y == 0 || y == this.HEIGHT - 1) {
+                System.arraycopy(this.bits, row, target.bits, row, this.WORDS_PER_ROW);
+            } else {
+                for (int w = 0; w < this.WORDS_PER_ROW; w++) {
+                    target.bits[row + w] = getCleanedWord(y, w);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a word of an interior row with every pixel cleared unless it and the (up to) four pixels below it are
+     * green. Pixels in the first and last columns are left alone, as they are in cleanUpIntArray().
+     *
+     * @param y     the row of the word, between 1 and height-2.
+     * @param w     the index of the word within the row.
+     * @return      the cleaned word.
+     */
+    private long getCleanedWord(int y, int w) {
+
+        int last = Math.min(y + 4, this.HEIGHT - 1);
+        long current = this.bits[y * this.WORDS_PER_ROW + w];
+        long kept = current;
+        for (int below = y + 1; below <= last; below++) {
+            kept &= this.bits[below * this.WORDS_PER_ROW + w];
+        }
+
+        long interior = -1L;
+        if (w == 0) {
+            interior &= ~1L;
+        }
+        if (w == this.WORDS_PER_ROW - 1) {
+            interior &= ~(1L << (this.WIDTH - 1));
+        }
+        return current & (kept | ~interior);
+    }
+
+    /**
+     * Adds the coordinates of every green pixel in a range of rows to a pair of AxisHistograms.
+     *
+     * @param xHistogram    the AxisHistogram receiving x coordinates, at least as long as the mask is wide.
+     * @param yHistogram    the AxisHistogram receiving y coordinates, at least as long as the mask is high.
+     * @param fromRow       the first row to add (inclusive).
+     * @param toRow         the last row to add (exclusive).
+     */
+    public void addTo(AxisHistogram xHistogram, AxisHistogram yHistogram, int fromRow, int toRow) {
+
+        for (int y = fromRow; y < toRow; y++) {
+            int row = y * this.WORDS_PER_ROW;
+            int rowCount = 0;
+            for (int w = 0; w < this.WORDS_PER_ROW; w++) {
+                long word = this.bits[row + w];
+                rowCount += Long.bitCount(word);
+                // visit each set bit, lowest first
+                while (word != 0) {
+                    xHistogram.add((w << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            if (rowCount > 0) {
+                yHistogram.add(y, rowCount);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * <h1>ImageFileFrameSource</h1>
+ * ImageFileFrameSource objects deliver frames decoded from a list of image files, such as the images in
+ * test-images/. Files which cannot be decoded are skipped.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class ImageFileFrameSource implements FrameSource {
+
+    private final File[] files;
+    private final boolean LOOP;
+    private int next;
+    private volatile boolean closed;
+
+    /**
+     * Constructor for the ImageFileFrameSource class.
+     *
+     * @param files     the image files to deliver, in order.
+     * @param loop      true to start again from the first file after the last one, false to stop.
+     */
+    public ImageFileFrameSource(File[] files, boolean loop) {
+        this.files = files.clone();
+        this.LOOP = loop;
+        this.next = 0;
+        this.closed = false;
+    }
+
+    /**
+     * Returns the next decodable image.
+     *
+     * @return  the next frame, or null once every file has been delivered (when not looping) or the source has
+     *          been closed.
+     */
+    @Override
+    public synchronized RgbFrame nextFrame() {
+
+        int failures = 0;
+        while (!this.closed && failures < this.files.length) {
+            if (this.next >= this.files.length) {
+                if (!this.LOOP) {
+                    return null;
+                }
+                this.next = 0;
+            }
+
+            File file = this.files[this.next++];
+            try {
+                BufferedImage image = ImageIO.read(file);
+                if (image != null) {
+                    return new BufferedImageFrame(image);
+                }
+            } catch (IOException e) {
+                System.err.println("could not read " + file + ": " + e.getMessage());
+            }
+            failures++;
+        }
+        return null;
+    }
+
+    /**
+     * Stops delivering frames.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+}
@@ -1,28 +1,192 @@
 import javax.imageio.ImageIO;
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * <h1>ImageTools</h1>
  * ImageTools objects are responsible for handling the processing of a single image frame.
+ * <p>
+ * An ImageTools object can also be kept for a whole stream of frames, by handing it each new frame with setFrame().
+ * Its mask, histogram, label and row buffers are then reset rather than reallocated, and are only replaced when the
+ * frame dimensions change, so the SINGLE_PASS, PYRAMID and RUN_LENGTH modes allocate nothing per frame once warmed
+ * up. The PixelBlob returned by findTarget() belongs to the ImageTools and is overwritten by the next frame.
+ * <p>
+ * Each result is worked out the first time it is asked for and remembered until the next frame, and only the
+ * stages it depends on are run. Asking for the size before the position, asking for the position twice, or asking
+ * for the blobs without the position all run the pipeline once, and a caller which only needs the target pays
+ * nothing for the position, the blobs, or the SummedAreaTable.
  *
  * @author disposedtrolley
  * @since 27/06/2015
  */
 public class ImageTools {
 
-    private BufferedImage image;
+    /**
+     * The ways in which a frame can be processed. All modes apart from PYRAMID produce identical results.
+     * <p>
+     * PIXEL_ARRAY is the original pipeline, which builds a Pixel object for every pixel in the frame.
+     * <p>
+     * SINGLE_PASS reads each row of the frame once, classifies it straight into a bit-packed GreenMask, cleans the
+     * mask a word at a time, and reduces it into a pair of AxisHistograms without creating any per-pixel objects.
+     * <p>
+     * PARALLEL runs the SINGLE_PASS pipeline in bands of rows on a ParallelFrameProcessor, which is the shared
+     * default processor unless one is given to the constructor.
+     * <p>
+     * PYRAMID runs the SINGLE_PASS pipeline, but a PyramidDetector only classifies the pixels near green samples of
+     * a downsampled frame. It is much faster when the target is small, but may miss regions smaller than its
+     * coarsest scale.
+     * <p>
+     * RUN_LENGTH classifies each row into a single reusable row of bits and keeps only its runs of green pixels in a
+     * RunMask, which is then cleaned, labelled, and measured run by run. The frame is never held as a full mask, so
+     * it needs the least memory, and it is fastest when the green regions are few and solid. setOpeningRadius() does
+     * not apply to it.
+     */
+    public enum Mode {
+        PIXEL_ARRAY,
+        SINGLE_PASS,
+        PARALLEL,
+        PYRAMID,
+        RUN_LENGTH
+    }
+
+    private RgbFrame frame;
+    private Mode mode;
+    private GreenClassifier classifier;
+    private ParallelFrameProcessor processor;
+    private PyramidDetector detector;
+    private YuvClassifier yuvClassifier;
+    private AdaptiveClassifier adaptiveClassifier;
+    private PresenceDetector presenceDetector;
+    private boolean skipEmptyFrames;
+    private PresenceResult presence;
+    private MotionGate motionGate;
+    private boolean gatedResultsValid;
     private PixelBlob targetPixels;
+    private GreenMask targetMask;
+    private RunMask targetRuns;
+    private boolean maskReady;
+    private boolean runsWritten;
+    private String position;
+    private int size;
+    private boolean sizeReady;
+    private List<PixelBlob> blobs;
+    private int blobsMinArea;
+    private SummedAreaTable integral;
+    private boolean integralReady;
+    private boolean largestBlobOnly;
+    private int minBlobArea;
+    private int openingRadius;
+
+    private int[] row;
+    private AxisHistogram xHistogram;
+    private AxisHistogram yHistogram;
+    private PixelBlob target;
+    private CentreBoundary boundary;
+    private int boundaryWidth;
+    private int boundaryHeight;
+    private BlobLabeller labeller;
+    private Morphology morphology;
 
     /**
-     * Constructor of the ImageTools class. Responsible for initialising the BufferedImage instance variable.
+     * Constructor of the ImageTools class. Responsible for initialising the frame instance variable. The frame is
+     * processed in SINGLE_PASS mode.
      *
      * @param image     the target image in a BufferedImage object.
      */
     public ImageTools(BufferedImage image) {
-        this.image = image;
+        this(new BufferedImageFrame(image), Mode.SINGLE_PASS);
+    }
+
+    /**
+     * Constructor of the ImageTools class. Responsible for initialising the frame and mode instance variables.
+     *
+     * @param frame     the target image as an RgbFrame.
+     * @param mode      the Mode used to process the frame.
+     */
+    public ImageTools(RgbFrame frame, Mode mode) {
+        this(frame, mode, GreenClassifier.getDefault());
+    }
+
+    /**
+     * Constructor of the ImageTools class. Responsible for initialising the frame, mode, and classifier instance
+     * variables.
+     *
+     * @param frame         the target image as an RgbFrame.
+     * @param mode          the Mode used to process the frame.
+     * @param classifier    the GreenClassifier which decides which pixels are green.
+     */
+    public ImageTools(RgbFrame frame, Mode mode, GreenClassifier classifier) {
+        this.frame = frame;
+        this.mode = mode;
+        this.classifier = classifier;
+        this.largestBlobOnly = false;
+        this.minBlobArea = 20;
+        this.openingRadius = 0;
+    }
+
+    /**
+     * Constructor of the ImageTools class. The frame is processed in PARALLEL mode on the given processor, which can
+     * be shared between frames.
+     *
+     * @param frame         the target image as an RgbFrame.
+     * @param classifier    the GreenClassifier which decides which pixels are green.
+     * @param processor     the ParallelFrameProcessor used to process the frame.
+     */
+    public ImageTools(RgbFrame frame, GreenClassifier classifier, ParallelFrameProcessor processor) {
+        this(frame, Mode.PARALLEL, classifier);
+        this.processor = processor;
+    }
+
+    /**
+     * Constructor of the ImageTools class. The frame is processed in PYRAMID mode with the given detector, which
+     * should be reused from frame to frame by a single thread.
+     *
+     * @param frame         the target image as an RgbFrame.
+     * @param classifier    the GreenClassifier which decides which pixels are green.
+     * @param detector      the PyramidDetector used to find and classify the candidate regions of the frame.
+     */
+    public ImageTools(RgbFrame frame, GreenClassifier classifier, PyramidDetector detector) {
+        this(frame, Mode.PYRAMID, classifier);
+        this.detector = detector;
+    }
+
+    /**
+     * Constructor of the ImageTools class for processing a stream of frames. No frame is set; setFrame() must be
+     * called before each frame is analysed.
+     *
+     * @param mode          the Mode used to process each frame.
+     * @param classifier    the GreenClassifier which decides which pixels are green.
+     */
+    public ImageTools(Mode mode, GreenClassifier classifier) {
+        this(null, mode, classifier);
+    }
+
+    /**
+     * Switches to the next frame of a stream, forgetting the results for the previous frame. The buffers sized to
+     * the previous frame are kept, and reused if the new frame has the same dimensions.
+     *
+     * @param frame     the next image as an RgbFrame.
+     */
+    public void setFrame(RgbFrame frame) {
+        this.frame = frame;
+        forgetResults();
+    }
+
+    /**
+     * Forgets every result remembered for the current frame, so that each is worked out again when it is next asked
+     * for. Called for a new frame and whenever a setting which changes the results is changed.
+     */
+    private void forgetResults() {
+        this.targetPixels = null;
+        this.maskReady = false;
+        this.integralReady = false;
+        this.runsWritten = false;
+        this.position = null;
+        this.sizeReady = false;
+        this.blobs = null;
+        this.presence = null;
     }
 
     /**
@@ -40,6 +204,11 @@ public class ImageTools {
      * more accurate.
      * <p>
      * Finally, the PixelBlob instance variable is initialised to contain the final set of green pixels in the image.
+     * <p>
+     * In SINGLE_PASS, PARALLEL and PYRAMID modes the same steps are carried out by getTargetPixelsSinglePass()
+     * without the intermediate arrays.
+     * <p>
+     * The position is remembered until the next frame, so calling this again costs nothing.
      *
      * @return  a String value of the PixelBlob's position of either:
      *              above-left
@@ -54,46 +223,352 @@ public class ImageTools {
      */
     public String getPositionOfTarget() {
 
-        Pixel[][] allPixels = getPixelArray(this.image);
-        CentreBoundary boundary = getCentreBoundary(this.image);
-        int[][] intArray = getIntArray(this.image);
-        int[][] cleanedArray = cleanUpIntArray(intArray);
-        this.targetPixels = getTargetPixelsClean(allPixels, cleanedArray);
-        return this.targetPixels.getPosition(boundary);
+        if (this.position == null) {
+            CentreBoundary boundary = getCentreBoundary(this.frame);
+            this.position = findTarget().getPosition(boundary);
+        }
+        return this.position;
+    }
+
+    /**
+     * Runs the pipeline of the current mode over the frame and returns the final set of green pixels, without
+     * working out the position. The pipeline only runs the first time this is called for a frame. In SINGLE_PASS and
+     * PYRAMID modes the PixelBlob is reused by the next frame.
+     *
+     * @return  the target area as a PixelBlob.
+     */
+    public PixelBlob findTarget() {
+
+        if (this.targetPixels != null) {
+            return this.targetPixels;
+        }
+
+        PipelineMetrics metrics = PipelineMetrics.getDefault();
+        boolean timed = metrics.isEnabled();
+        long allocated = timed ? metrics.threadAllocatedBytes() : 0;
+        long start = timed ? System.nanoTime() : 0;
+
+        if (this.skipEmptyFrames && !getPresence().isPresent()) {
+            this.targetPixels = getEmptyTarget();
+        } else if (this.mode != Mode.PIXEL_ARRAY) {
+            this.targetPixels = getTargetPixelsSinglePass(this.frame);
+        } else if (timed) {
+            long time = start;
+            Pixel[][] allPixels = getPixelArray(this.frame);
+            time = metrics.record(PipelineMetrics.Stage.EXTRACTION, time);
+            int[][] intArray = getIntArray(allPixels);
+            time = metrics.record(PipelineMetrics.Stage.CLASSIFICATION, time);
+            int[][] cleanedArray = cleanUpIntArray(intArray);
+            time = metrics.record(PipelineMetrics.Stage.CLEANING, time);
+            this.targetPixels = getTargetPixelsClean(allPixels, cleanedArray);
+            metrics.record(PipelineMetrics.Stage.BLOB_STATISTICS, time);
+        } else {
+            Pixel[][] allPixels = getPixelArray(this.frame);
+            int[][] intArray = getIntArray(allPixels);
+            int[][] cleanedArray = cleanUpIntArray(intArray);
+            this.targetPixels = getTargetPixelsClean(allPixels, cleanedArray);
+        }
+
+        if (timed) {
+            metrics.record(PipelineMetrics.Stage.FRAME, start);
+            metrics.recordFrame(this.targetPixels.getCount(), (long) this.frame.getWidth() * this.frame.getHeight(),
+                    allocated < 0 ? -1 : metrics.threadAllocatedBytes() - allocated);
+        }
+        return this.targetPixels;
+    }
+
+    /**
+     * Scans a sparse grid of the frame with a PresenceDetector to find out whether it holds a target, and roughly
+     * where, without running the pipeline. The scan stops as soon as the answer is settled, so on most frames only a
+     * small part of the frame is read. The result is remembered until the next frame.
+     * <p>
+     * The detector set by setPresenceDetector() is used, or if there is none, one is created with the classifier of
+     * this ImageTools.
+     *
+     * @return  the outcome of the scan as a PresenceResult.
+     */
+    public PresenceResult getPresence() {
+
+        if (this.presence == null) {
+            if (this.presenceDetector == null) {
+                this.presenceDetector = new PresenceDetector(this.classifier);
+            }
+            this.presence = this.presenceDetector.detect(this.frame, getCentreBoundary(this.frame));
+        }
+        return this.presence;
+    }
+
+    /**
+     * Returns an empty target for a frame which the PresenceDetector found no target in, leaving the mask of the
+     * frame clear without classifying it.
+     *
+     * @return  an empty PixelBlob.
+     */
+    private PixelBlob getEmptyTarget() {
+
+        int w = this.frame.getWidth();
+        int h = this.frame.getHeight();
+        prepareBuffers(w, h);
+        if (this.mode == Mode.RUN_LENGTH) {
+            this.targetRuns.reset(w, h);
+        }
+        this.maskReady = true;
+        this.integralReady = false;
+        this.runsWritten = false;
+        return this.mode == Mode.PIXEL_ARRAY ? new PixelBlob() : this.target;
     }
 
     /**
-     * Returns the approximate size of the target area using the getSize() method of the PixelBlob object.
+     * Returns the approximate size of the target area using the getSize() method of the PixelBlob object. The
+     * target is found first if it has not been already.
      *
      * @return  the approximate size of the target area.
      */
     public int getSizeOfTarget() {
 
-        return this.targetPixels.getSize();
+        if (!this.sizeReady) {
+            this.size = findTarget().getSize();
+            this.sizeReady = true;
+        }
+        return this.size;
+    }
+
+    /**
+     * Returns the target area of the current frame, so that it can be passed on to a DistanceTracker. The target is
+     * found first if it has not been already.
+     *
+     * @return  the target area as a PixelBlob.
+     */
+    public PixelBlob getTarget() {
+
+        return findTarget();
+    }
+
+    /**
+     * Returns a List of PixelBlobs, one for each separate region of green pixels left after cleaning, ordered from
+     * the largest region to the smallest. Each PixelBlob provides the area, bounding box, and centroid of its
+     * region.
+     *
+     * The List is remembered until the next frame, and returned again if the same minArea is asked for.
+     *
+     * @param minArea   the smallest number of pixels a region needs to be returned.
+     * @return          a List of PixelBlobs, largest first.
+     */
+    public List<PixelBlob> getTargetBlobs(int minArea) {
+
+        if (this.blobs == null || this.blobsMinArea != minArea) {
+            prepareMask();
+            if (this.mode == Mode.RUN_LENGTH) {
+                this.blobs = labeller().label(this.targetRuns, minArea);
+            } else {
+                this.blobs = labeller().label(this.targetMask, minArea);
+            }
+            this.blobsMinArea = minArea;
+        }
+        return this.blobs;
+    }
+
+    /**
+     * Returns the mask of green pixels left after cleaning, covering the whole frame even if setLargestBlobOnly() is
+     * on. In RUN_LENGTH mode the runs are written into a GreenMask the first time it is asked for. The mask belongs
+     * to the ImageTools and is overwritten by the next frame.
+     *
+     * @return  the cleaned mask as a GreenMask.
+     */
+    public GreenMask getTargetMask() {
+
+        prepareMask();
+        if (this.mode == Mode.RUN_LENGTH && !this.runsWritten) {
+            int w = this.targetRuns.getWidth();
+            int h = this.targetRuns.getHeight();
+            if (this.targetMask != null && this.targetMask.getWidth() == w && this.targetMask.getHeight() == h) {
+                this.targetMask.clear();
+            } else {
+                this.targetMask = new GreenMask(w, h);
+            }
+            this.targetRuns.writeTo(this.targetMask);
+            this.runsWritten = true;
+        }
+        return this.targetMask;
+    }
+
+    /**
+     * Makes sure the cleaned mask of the current frame is ready. Outside PIXEL_ARRAY mode the mask is a by-product
+     * of finding the target, so the target is found at the same time; in PIXEL_ARRAY mode the mask is built by the
+     * single pass pipeline on its own, unless a PresenceDetector finds nothing in the frame.
+     */
+    private void prepareMask() {
+        if (this.mode != Mode.PIXEL_ARRAY) {
+            findTarget();
+        } else if (!this.maskReady) {
+            if (this.skipEmptyFrames && !getPresence().isPresent()) {
+                getEmptyTarget();
+            } else {
+                getTargetPixelsSinglePass(this.frame);
+            }
+        }
+    }
+
+    /**
+     * Returns a SummedAreaTable of the green pixels left after cleaning, from which the number of green pixels in
+     * any rectangle of the frame can be read in constant time. The table is built the first time it is asked for
+     * after each frame, so frames which never ask for it cost nothing extra. It belongs to the ImageTools and is
+     * overwritten by the next frame.
+     *
+     * @return  the SummedAreaTable of the cleaned mask.
+     */
+    public SummedAreaTable getIntegralImage() {
+
+        prepareMask();
+        if (!this.integralReady) {
+            if (this.integral == null) {
+                this.integral = new SummedAreaTable();
+            }
+            if (this.mode == Mode.RUN_LENGTH) {
+                this.integral.build(this.targetRuns);
+            } else {
+                this.integral.build(this.targetMask);
+            }
+            this.integralReady = true;
+        }
+        return this.integral;
+    }
+
+    /**
+     * Works out how much of each of the nine regions of the CentreBoundary of the frame is green, using the
+     * SummedAreaTable of getIntegralImage().
+     *
+     * @param coverage  an array of at least nine doubles, which receives the coverage of each region from 0 to 1,
+     *                  in the order of SummedAreaTable.ZONES.
+     * @return          the coverage array.
+     */
+    public double[] getZoneCoverage(double[] coverage) {
+
+        return getIntegralImage().getZoneCoverage(getCentreBoundary(this.frame), coverage);
+    }
+
+    /**
+     * Sets whether the target is only the largest region of green pixels, rather than every green pixel in the
+     * image. This stops a second green object or stray noise from skewing the position and size of the target. It
+     * applies in every mode apart from PIXEL_ARRAY, and is off by default.
+     *
+     * @param largestBlobOnly   true to use only the largest region as the target.
+     */
+    public void setLargestBlobOnly(boolean largestBlobOnly) {
+        this.largestBlobOnly = largestBlobOnly;
+        this.gatedResultsValid = false;
+        forgetResults();
+    }
+
+    /**
+     * Sets the smallest number of pixels a region needs to be picked as the target when setLargestBlobOnly() is on.
+     * Defaults to 20.
+     *
+     * @param minBlobArea   the smallest number of pixels the target region needs.
+     */
+    public void setMinBlobArea(int minBlobArea) {
+        this.minBlobArea = minBlobArea;
+        this.gatedResultsValid = false;
+        forgetResults();
+    }
+
+    /**
+     * Sets the radius of a morphological opening used to clean the mask in place of the original cleaner. Unlike
+     * the original cleaner it treats every direction alike, and it removes specks smaller than the radius while
+     * keeping the shape of the target. It applies in SINGLE_PASS and PYRAMID modes; 0, the default, keeps the
+     * original cleaner.
+     *
+     * @param openingRadius     the radius of the opening, or 0 to use the original cleaner.
+     */
+    public void setOpeningRadius(int openingRadius) {
+        this.openingRadius = openingRadius;
+        forgetResults();
+    }
+
+    /**
+     * Sets the YuvClassifier used to classify YuvFrames in SINGLE_PASS mode without converting them to RGB. It
+     * should be built from the same GreenClassifier as this ImageTools uses. If none is set, the default is used
+     * with the default GreenClassifier, and YuvFrames are converted to RGB with any other.
+     *
+     * @param yuvClassifier     the YuvClassifier to use for YuvFrames.
+     */
+    public void setYuvClassifier(YuvClassifier yuvClassifier) {
+        this.yuvClassifier = yuvClassifier;
+        forgetResults();
+    }
+
+    /**
+     * Sets an AdaptiveClassifier to classify frames in SINGLE_PASS mode in place of the GreenClassifier, so that the
+     * hue window follows the lighting of a stream. Its histogram is built while each frame is classified, and its
+     * thresholds are updated after each frame, so the same ImageTools should be kept for the whole stream.
+     *
+     * @param adaptiveClassifier    the AdaptiveClassifier to use, or null to go back to the GreenClassifier.
+     */
+    public void setAdaptiveClassifier(AdaptiveClassifier adaptiveClassifier) {
+        this.adaptiveClassifier = adaptiveClassifier;
+        forgetResults();
+    }
+
+    /**
+     * Sets a PresenceDetector to scan each frame before it is analysed, so that the pipeline only runs on frames in
+     * which the detector finds a target. Every other frame gets an empty target and a clear mask, and its position is
+     * "error" as for any frame without green pixels. This saves nearly all the work on frames without a target, at
+     * the risk of missing a target smaller than the detector looks for. The AdaptiveClassifier, if one is set, only
+     * sees the frames which are analysed.
+     *
+     * @param presenceDetector  the PresenceDetector to use, or null to analyse every frame.
+     */
+    public void setPresenceDetector(PresenceDetector presenceDetector) {
+        this.presenceDetector = presenceDetector;
+        this.skipEmptyFrames = presenceDetector != null;
+        forgetResults();
+    }
+
+    /**
+     * Sets a MotionGate to classify frames in SINGLE_PASS mode, so that only the blocks which changed since the
+     * previous frame are classified again. Only the rows around the changed blocks are cleaned again, and when no
+     * block changed the target of the previous frame is kept as it is, so a static scene costs little more than
+     * reading the frame and comparing it with the last. The results are the same as without the gate only while its
+     * threshold is 0 and its step is 1, as with the default MotionGate; otherwise they are approximate between the
+     * gate's refreshes. The gate classifies with the GreenClassifier, so the AdaptiveClassifier, the YuvClassifier
+     * and setOpeningRadius() do not apply while it is set, and the same ImageTools should be kept for the whole
+     * stream.
+     *
+     * @param motionGate    the MotionGate to use, or null to classify every frame in full.
+     */
+    public void setMotionGate(MotionGate motionGate) {
+        this.motionGate = motionGate;
+        this.gatedResultsValid = false;
+        if (motionGate != null) {
+            motionGate.reset();
+        }
+        forgetResults();
     }
 
     /**
      * Returns a 2D array of Pixel objects where each element corresponds to a pixel in the original image. The
      * dimensions of the array are identical to the dimensions of the image.
      *
-     * The getRGB() method of the BufferedImage class is used to get the alpha, red, green, and blue values of the
-     * image in ARGB colourspace. The method returns an integer from which the individual values are extracted. For
+     * The readRow() method of the RgbFrame interface is used to get the alpha, red, green, and blue values of the
+     * image in ARGB colourspace. Each pixel is read as an integer from which the individual values are extracted. For
      * each pixel encountered in the image, a new Pixel object to store these attributes is added to the 2D array.
      *
-     * @param image     the target image represented with a BufferedImage object.
+     * @param image     the target image represented as an RgbFrame.
      * @return          a 2D array of Pixel objects holding the attributes of each pixel in the image.
      */
-    private Pixel[][] getPixelArray(BufferedImage image) {
+    Pixel[][] getPixelArray(RgbFrame image) {
 
         int w = image.getWidth();
         int h = image.getHeight();
 
         Pixel[][] allPixels = new Pixel[w][h];
+        int[] row = new int[w];
 
         // adds every Pixel object required for the image into the array
         for (int i = 0; i < h; i++) {
+            image.readRow(i, 0, w, row);
             for (int j = 0; j < w; j++) {
-                int currPixel = image.getRGB(j, i);
+                int currPixel = row[j];
                 int alpha = (currPixel >> 24) & 0xff;
                 int red = (currPixel >> 16) & 0xff;
                 int green = (currPixel >> 8) & 0xff;
@@ -107,16 +582,21 @@ public class ImageTools {
 
     /**
      * Returns a CentreBoundary object which stores the determined boundary of the centre of the object. The boundary
-     * is currently set to a 20% deviation in all directions from the centre of the image.
+     * is currently set to a 20% deviation in all directions from the centre of the image. The same CentreBoundary is
+     * returned again for frames of the same dimensions.
      *
-     * @param image     the target image represented with a BufferedImage object.
+     * @param image     the target image represented as an RgbFrame.
      * @return          a CentreBoundary object containing values which define the centre boundaries of the image.
      */
-    private CentreBoundary getCentreBoundary(BufferedImage image) {
+    CentreBoundary getCentreBoundary(RgbFrame image) {
 
         int w = image.getWidth();
         int h = image.getHeight();
 
+        if (this.boundary != null && this.boundaryWidth == w && this.boundaryHeight == h) {
+            return this.boundary;
+        }
+
         // calculating the bounds
         // calculations produce a double, which is rounded and casted to an int
         int top = (int) ((h/2) - (h*0.2) + 0.5);
@@ -124,7 +604,10 @@ public class ImageTools {
         int left = (int) ((w/2) - (w*0.2) + 0.5);
         int right = (int) ((w/2) + (w*0.2) + 0.5);
 
-        return new CentreBoundary(top, bottom, left, right);
+        this.boundary = new CentreBoundary(top, bottom, left, right);
+        this.boundaryWidth = w;
+        this.boundaryHeight = h;
+        return this.boundary;
     }
 
     @Deprecated
@@ -147,29 +630,18 @@ public class ImageTools {
     /**
      * Calculates whether a given Pixel object lies within the accepted tolerances to be regarded as green.
      * <p>
-     * The red, green, and blue values of the Pixel object are extracted and converted into HSB colourspace. HSB is
-     * used as it provides a linear representation of colour (a colour can only lie within a specified boundary,
-     * e.g. 90-150 for every shade of green).
+     * The red, green, and blue values of the Pixel object are looked up in the GreenClassifier, whose table holds
+     * the answer for every colour in HSB colourspace. HSB is used as it provides a linear representation of colour
+     * (a colour can only lie within a specified boundary, e.g. 90-150 for every shade of green).
      *
      * @param pixel     the target Pixel object.
      * @return          a boolean value indicating whether the given Pixel object is green or not.
      */
-    private boolean isGreen(Pixel pixel) {
+    boolean isGreen(Pixel pixel) {
 
-        boolean green = false;
-        float hsb[] = new float[3];
-
-        // converting the image's RGB colourspace to HSB, which provides a linear range of colour values
-        Color.RGBtoHSB(pixel.getRed(), pixel.getGreen(), pixel.getBlue(), hsb);
-        float deg = hsb[0]*360;
-
-        // @todo
-        // determine appropriate tolerance (90-150 did not work for green-test-light.png below-right)
-        if (deg >=  110 && deg < 160) {
-            green = true;
-        }
-
-        return green;
+        // a fixed window misses green under some lighting (such as green-test-light.png below-right); in
+        // SINGLE_PASS mode setAdaptiveClassifier() lets the window follow the lighting instead
+        return this.classifier.isGreen(pixel.getRed(), pixel.getGreen(), pixel.getBlue());
     }
 
     /**
@@ -179,18 +651,29 @@ public class ImageTools {
      * A 2D array of Pixel objects is created firstly, and is iterated over to produce the parallel integer array. The
      * isGreen() method is employed to determine whether the Pixel object is green or not.
      *
-     * @param image     the target image represented as BufferedImage.
+     * @param image     the target image represented as an RgbFrame.
      * @return          a 2D array of integers with values or either 0 or 1 indicating if the pixel at a given
      *                  coordinate is green or not.
      */
-    private int[][] getIntArray(BufferedImage image) {
+    int[][] getIntArray(RgbFrame image) {
 
-        int w = image.getWidth();
-        int h = image.getHeight();
+        return getIntArray(getPixelArray(image));
+    }
 
-        int[][] intArray = new int[w][h];
+    /**
+     * Returns a 2D array of integers containing values of either 0 or 1 for a 2D array of Pixel objects which has
+     * already been created, so that the pipeline does not create the Pixel objects twice.
+     *
+     * @param allPixels     a 2D array of Pixel objects as returned by getPixelArray().
+     * @return              a 2D array of integers with values or either 0 or 1 indicating if the pixel at a given
+     *                      coordinate is green or not.
+     */
+    int[][] getIntArray(Pixel[][] allPixels) {
+
+        int w = allPixels.length;
+        int h = w > 0 ? allPixels[0].length : 0;
 
-        Pixel[][] allPixels = getPixelArray(image);
+        int[][] intArray = new int[w][h];
 
         for (int i = 0; i < h; i++) {
             for (int j = 0; j < w; j++) {
@@ -215,7 +698,7 @@ public class ImageTools {
      * @param array     a 2D array of integers with stray 1's to be removed.
      * @return          a 2D array of integers with stray 1's removed.
      */
-    private int[][] cleanUpIntArray(int[][] array) {
+    static int[][] cleanUpIntArray(int[][] array) {
 
         // traverse the 2D array twice
         for (int pass = 0; pass < 4; pass++) {
@@ -254,8 +737,8 @@ public class ImageTools {
      * @param cleanedArray      a 2D array of integers which has been cleansed of stray 1's.
      * @return                  a PixelBlob object with the final set of green Pixel objects in its array.
      */
-    private PixelBlob getTargetPixelsClean(Pixel[][] allPixels, int[][] cleanedArray) {
-        PixelBlob targetPixels = new PixelBlob();
+    PixelBlob getTargetPixelsClean(Pixel[][] allPixels, int[][] cleanedArray) {
+        PixelBlob targetPixels = new PixelBlob(allPixels.length, allPixels[0].length);
 
         // traverses through every pixel and adds green ones to targetPixels
         for (int i = 0; i < allPixels.length; i++) {
@@ -269,21 +752,273 @@ public class ImageTools {
         return targetPixels;
     }
 
+    /**
+     * Returns a PixelBlob holding the final set of green pixels in the image, produced in a single pass.
+     * <p>
+     * Every pixel of the frame is classified into a GreenMask, the mask is cleaned, and the remaining green pixels
+     * are reduced into the x and y AxisHistograms of the PixelBlob. Each row of the frame is read once into a
+     * reusable buffer, and no objects are created per pixel. In PARALLEL mode the work is handed to the
+     * ParallelFrameProcessor, and in PYRAMID mode only the candidate regions found by the PyramidDetector are
+     * classified. In SINGLE_PASS mode the AdaptiveClassifier is used if one has been set, and otherwise a YuvFrame
+     * is classified straight from its planes when a YuvClassifier is available. In RUN_LENGTH mode the green pixels
+     * are kept as a RunMask instead of a GreenMask. The cleaned mask is kept for getTargetBlobs(), and if
+     * setLargestBlobOnly() is on only the largest region of the mask is returned.
+     *
+     * @param image     the target image represented as an RgbFrame.
+     * @return          a PixelBlob with the final set of green pixels recorded in its histograms.
+     */
+    private PixelBlob getTargetPixelsSinglePass(RgbFrame image) {
+
+        if (this.mode == Mode.SINGLE_PASS && this.motionGate != null) {
+            return getTargetPixelsGated(image);
+        }
+
+        int w = image.getWidth();
+        int h = image.getHeight();
+
+        prepareBuffers(w, h);
+        GreenMask mask = this.targetMask;
+
+        // the stages are only timed while metrics are enabled
+        PipelineMetrics metrics = PipelineMetrics.getDefault();
+        boolean timed = metrics.isEnabled();
+        long time = timed ? System.nanoTime() : 0;
+
+        if (this.mode == Mode.PARALLEL) {
+            if (this.processor == null) {
+                this.processor = ParallelFrameProcessor.getDefault();
+            }
+            this.processor.process(image, this.classifier, mask, this.xHistogram, this.yHistogram);
+            if (timed) {
+                time = metrics.record(PipelineMetrics.Stage.CLASSIFICATION, time);
+            }
+        } else if (this.mode == Mode.RUN_LENGTH) {
+            RunMask runs = this.targetRuns;
+            runs.classify(image, this.classifier, this.row);
+            if (timed) {
+                time = metrics.record(PipelineMetrics.Stage.CLASSIFICATION, time);
+            }
+            runs.clean();
+            if (timed) {
+                time = metrics.record(PipelineMetrics.Stage.CLEANING, time);
+            }
+            if (!this.largestBlobOnly) {
+                runs.addTo(this.target);
+            }
+        } else {
+            boolean split = false;
+            if (this.mode == Mode.PYRAMID) {
+                if (this.detector == null) {
+                    this.detector = new PyramidDetector(this.classifier, 8, 4, 2);
+                }
+                this.detector.classify(image, mask);
+            } else {
+                long[] bits = mask.getBits();
+                int words = mask.getWordsPerRow();
+                AdaptiveClassifier adaptive = this.adaptiveClassifier;
+                YuvClassifier yuv = adaptive == null && image instanceof YuvFrame ? yuvClassifier() : null;
+
+                // classify one row at a time straight into the packed mask
+                if (adaptive != null) {
+                    for (int y = 0; y < h; y++) {
+                        image.readRow(y, 0, w, this.row);
+                        adaptive.classifyRow(this.row, w, bits, y * words, 0);
+                    }
+                    adaptive.endFrame();
+                } else if (yuv != null) {
+                    for (int y = 0; y < h; y++) {
+                        yuv.classifyRow((YuvFrame) image, y, 0, w, bits, y * words, 0);
+                    }
+                } else if (timed) {
+                    long extraction = 0;
+                    long classification = 0;
+                    for (int y = 0; y < h; y++) {
+                        image.readRow(y, 0, w, this.row);
+                        long read = System.nanoTime();
+                        this.classifier.classifyRow(this.row, w, bits, y * words, 0);
+                        long classified = System.nanoTime();
+                        extraction += read - time;
+                        classification += classified - read;
+                        time = classified;
+                    }
+                    metrics.recordLatency(PipelineMetrics.Stage.EXTRACTION, extraction);
+                    metrics.recordLatency(PipelineMetrics.Stage.CLASSIFICATION, classification);
+                    split = true;
+                } else {
+                    for (int y = 0; y < h; y++) {
+                        image.readRow(y, 0, w, this.row);
+                        this.classifier.classifyRow(this.row, w, bits, y * words, 0);
+                    }
+                }
+            }
+            if (timed && !split) {
+                time = metrics.record(PipelineMetrics.Stage.CLASSIFICATION, time);
+            }
+
+            if (this.openingRadius > 0) {
+                if (this.morphology == null) {
+                    this.morphology = new Morphology();
+                }
+                this.morphology.open(mask, this.openingRadius);
+            } else {
+                mask.clean();
+            }
+            if (timed) {
+                time = metrics.record(PipelineMetrics.Stage.CLEANING, time);
+            }
+            if (!this.largestBlobOnly) {
+                mask.addTo(this.xHistogram, this.yHistogram, 0, h);
+            }
+        }
+
+        this.maskReady = true;
+        this.integralReady = false;
+        this.runsWritten = false;
+
+        if (this.largestBlobOnly) {
+            this.target.clear();
+            if (this.mode == Mode.RUN_LENGTH) {
+                labeller().largest(this.targetRuns, this.minBlobArea, this.target);
+            } else {
+                labeller().largest(mask, this.minBlobArea, this.target);
+            }
+        }
+        if (timed) {
+            metrics.record(PipelineMetrics.Stage.BLOB_STATISTICS, time);
+        }
+        return this.target;
+    }
+
+    /**
+     * Produces the result of getTargetPixelsSinglePass() from the mask kept up to date by the MotionGate, which is
+     * the same result when the gate's threshold is 0 and its step is 1 and an approximation of it otherwise. The
+     * cleaned rows, and the target, are only worked out again where the classified mask has changed: a cleaned row
+     * depends on the four rows below it, so the changed rows and the four rows above them are cleaned again, and the
+     * target is measured again from the whole cleaned mask. If nothing changed the mask and target of the previous
+     * frame are returned untouched.
+     *
+     * @param image     the target image represented as an RgbFrame.
+     * @return          a PixelBlob with the final set of green pixels recorded in its histograms.
+     */
+    private PixelBlob getTargetPixelsGated(RgbFrame image) {
+
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if (this.targetMask == null || this.targetMask.getWidth() != w || this.targetMask.getHeight() != h) {
+            prepareBuffers(w, h);
+        }
+
+        PipelineMetrics metrics = PipelineMetrics.getDefault();
+        boolean timed = metrics.isEnabled();
+        long time = timed ? System.nanoTime() : 0;
+
+        MotionGate gate = this.motionGate;
+        int changed = gate.update(image, this.classifier);
+        if (timed) {
+            time = metrics.record(PipelineMetrics.Stage.CLASSIFICATION, time);
+        }
+
+        if (changed > 0 || !this.gatedResultsValid) {
+            GreenMask mask = this.targetMask;
+            if (this.gatedResultsValid) {
+                gate.getMask().cleanInto(mask, Math.max(0, gate.getChangedFromRow() - 4), gate.getChangedToRow());
+            } else {
+                gate.getMask().cleanInto(mask, 0, h);
+            }
+            if (timed) {
+                time = metrics.record(PipelineMetrics.Stage.CLEANING, time);
+            }
+
+            this.target.clear();
+            if (this.largestBlobOnly) {
+                labeller().largest(mask, this.minBlobArea, this.target);
+            } else {
+                mask.addTo(this.xHistogram, this.yHistogram, 0, h);
+            }
+            if (timed) {
+                metrics.record(PipelineMetrics.Stage.BLOB_STATISTICS, time);
+            }
+        }
+
+        this.gatedResultsValid = true;
+        this.maskReady = true;
+        this.integralReady = false;
+        this.runsWritten = false;
+        return this.target;
+    }
+
+    /**
+     * Gets the mask, histograms, and target PixelBlob ready for a frame. They are cleared if they already match the
+     * frame dimensions, and only replaced if the dimensions have changed.
+     *
+     * @param w     the width of the frame.
+     * @param h     the height of the frame.
+     */
+    private void prepareBuffers(int w, int h) {
+
+        // the mask and target are about to be cleared, so a MotionGate has to start again from the whole frame
+        this.gatedResultsValid = false;
+
+        // RUN_LENGTH mode keeps its pixels in a RunMask, so it never needs the GreenMask
+        if (this.mode == Mode.RUN_LENGTH) {
+            if (this.targetRuns != null && this.targetRuns.getWidth() == w && this.targetRuns.getHeight() == h) {
+                this.target.clear();
+                return;
+            }
+            this.targetRuns = new RunMask(w, h);
+        } else if (this.targetMask != null && this.targetMask.getWidth() == w && this.targetMask.getHeight() == h) {
+            this.targetMask.clear();
+            this.target.clear();
+            return;
+        } else {
+            this.targetMask = new GreenMask(w, h);
+        }
+        this.row = new int[w];
+        this.xHistogram = new AxisHistogram(w);
+        this.yHistogram = new AxisHistogram(h);
+        this.target = new PixelBlob(this.xHistogram, this.yHistogram);
+    }
+
+    /**
+     * Returns the YuvClassifier for frames which are YuvFrames. The shared default is used if none has been set and
+     * the classifier is the default one.
+     *
+     * @return  the YuvClassifier to use, or null if YUV frames have to be converted to RGB.
+     */
+    private YuvClassifier yuvClassifier() {
+        if (this.yuvClassifier == null && this.classifier == GreenClassifier.getDefault()) {
+            this.yuvClassifier = YuvClassifier.getDefault();
+        }
+        return this.yuvClassifier;
+    }
+
+    private BlobLabeller labeller() {
+        if (this.labeller == null) {
+            this.labeller = new BlobLabeller();
+        }
+        return this.labeller;
+    }
+
     public static void main(String[] args) throws IOException {
         BufferedImage testImage = ImageIO.read(new File("test-images/green-test-dark.png"));
-        ImageTools testTools = new ImageTools(testImage);
-        Pixel[][] testAllPixels = testTools.getPixelArray(testImage);
-        int[][] testIntArray = testTools.getIntArray(testImage);
+        ImageTools testTools = new ImageTools(new BufferedImageFrame(testImage), Mode.PIXEL_ARRAY);
+        Pixel[][] testAllPixels = testTools.getPixelArray(testTools.frame);
+        int[][] testIntArray = testTools.getIntArray(testTools.frame);
 
         System.out.println("testAllPixels length: " + testAllPixels.length + " testAllPixels width: " + testAllPixels[0].length);
         System.out.println("testIntArray length: " + testIntArray.length + " testIntArray width: " + testIntArray[0].length);
 
         // clean up the array
-        int[][] testIntCleanedArray = testTools.cleanUpIntArray(testIntArray);
+        int[][] testIntCleanedArray = cleanUpIntArray(testIntArray);
         System.out.println("testIntCleanedArray length: " + testIntCleanedArray.length + " testIntCleanedArray width: " + testIntCleanedArray[0].length);
 
         PixelBlob testTargetPixels = testTools.getTargetPixelsClean(testAllPixels, testIntCleanedArray);
         System.out.println(testTargetPixels.getSize());
+
+        // the single pass pipeline should agree with the original one
+        ImageTools singlePass = new ImageTools(testImage);
+        System.out.println("single pass position: " + singlePass.getPositionOfTarget());
+        System.out.println("single pass size: " + singlePass.getSizeOfTarget());
     }
 
 }
@@ -0,0 +1,154 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <h1>LatencyHistogram</h1>
+ * LatencyHistogram objects count recorded values, such as latencies in nanoseconds, into buckets whose width grows
+ * with the value, in the manner of an HdrHistogram. Values below 64 have a bucket each. Above that, every power of two
+ * is split into 32 equal buckets, so any value can be read back to within about 3% using a fixed array of under two
+ * thousand counters, however long the histogram runs.
+ * <p>
+ * Recording a value is a few shifts and an atomic increment, with nothing allocated, so a LatencyHistogram can be
+ * shared by every thread recording into it.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int BUCKETS = LINEAR_LIMIT + (63 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    /**
+     * Constructor for the LatencyHistogram class.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.total = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value     the value to record.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.counts.incrementAndGet(bucket(value));
+        this.count.incrementAndGet();
+        this.total.addAndGet(value);
+
+        long largest;
+        do {
+            largest = this.max.get();
+        } while (value > largest && !this.max.compareAndSet(largest, value));
+    }
+
+    /**
+     * Returns the bucket which counts a value.
+     *
+     * @param value     a value of 0 or more.
+     * @return          the index of its bucket.
+     */
+    private static int bucket(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return LINEAR_LIMIT + (magnitude - SUB_BUCKET_BITS - 1) * SUB_BUCKETS
+                + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Returns the largest value counted by a bucket.
+     *
+     * @param bucket    the index of the bucket.
+     * @return          the highest value which falls into the bucket.
+     */
+    private static long highestValue(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        int magnitude = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        long lowest = (long) (SUB_BUCKETS + (bucket - LINEAR_LIMIT) % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall, to the precision of the
+     * buckets. The value returned is the highest value of the bucket the percentile falls into, but never more than
+     * the largest value recorded.
+     *
+     * @param percentile    the percentile from 0 to 100.
+     * @return              the value at the percentile, or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long recorded = this.count.get();
+        if (recorded == 0) {
+            return 0;
+        }
+        long wanted = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * recorded));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts.get(i);
+            if (seen >= wanted) {
+                return Math.min(highestValue(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return  the number of values recorded.
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return  the mean value, or 0 if nothing has been recorded.
+     */
+    public double getMean() {
+        long recorded = this.count.get();
+        return recorded == 0 ? 0 : (double) this.total.get() / recorded;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return  the largest value, or 0 if nothing has been recorded.
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded by other threads while the histogram is being reset may be
+     * partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts.set(i, 0);
+        }
+        this.count.set(0);
+        this.total.set(0);
+        this.max.set(0);
+    }
+}
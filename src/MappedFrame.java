@@ -0,0 +1,173 @@
+import java.nio.ByteBuffer;
+
+/**
+ * <h1>MappedFrame</h1>
+ * MappedFrame objects expose one frame of a raw frame dump as an RgbFrame, reading the pixels straight out of a
+ * memory-mapped ByteBuffer each time a row is requested. Nothing is copied onto the heap except the row being read.
+ * <p>
+ * Packed ARGB and RGB24 frames are returned as they are stored. YUV frames are converted to RGB with the integer
+ * form of the BT.601 video range equations, in which Y runs from 16 to 235 and U and V from 16 to 240, the range
+ * produced by webcams and most capture cards.
+ * <p>
+ * Only absolute reads are made from the buffer, so a MappedFrame can be read by several threads at once. Frames in
+ * a YUV format are MappedYuvFrames, which also hand over their planes.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class MappedFrame implements RgbFrame {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int WIDTH;
+    private final int HEIGHT;
+    private final RawFrameSource.Format format;
+    private final long frameNumber;
+
+    /**
+     * Constructor for the MappedFrame class.
+     *
+     * @param buffer        the mapping holding the frame.
+     * @param offset        the index within the buffer of the first byte of the frame.
+     * @param width         the width of the frame in pixels.
+     * @param height        the height of the frame in pixels.
+     * @param format        the layout of the pixels.
+     * @param frameNumber   the index of the frame within its file.
+     */
+    public MappedFrame(ByteBuffer buffer, int offset, int width, int height, RawFrameSource.Format format,
+                       long frameNumber) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.format = format;
+        this.frameNumber = frameNumber;
+    }
+
+    @Override
+    public int getWidth() {
+        return this.WIDTH;
+    }
+
+    @Override
+    public int getHeight() {
+        return this.HEIGHT;
+    }
+
+    /**
+     * Returns the mapping holding the frame.
+     *
+     * @return  the buffer the pixels are read from.
+     */
+    public ByteBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Returns the index within the buffer of the first byte of the frame.
+     *
+     * @return  the offset of the frame.
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Returns the layout of the pixels of this frame.
+     *
+     * @return  the Format of the frame.
+     */
+    public RawFrameSource.Format getFormat() {
+        return this.format;
+    }
+
+    /**
+     * Returns the index of this frame within the file it was read from.
+     *
+     * @return  the frame number, starting from 0.
+     */
+    public long getFrameNumber() {
+        return this.frameNumber;
+    }
+
+    /**
+     * Copies a horizontal run of pixels into the supplied array as packed ARGB integers, converting from the format
+     * of the frame. The alpha byte of every format apart from ARGB is 0xff.
+     *
+     * @param y         the row to read from.
+     * @param x         the column of the first pixel to read.
+     * @param length    the number of pixels to read.
+     * @param rgb       the array the pixels are written to, starting at index 0.
+     */
+    @Override
+    public void readRow(int y, int x, int length, int[] rgb) {
+
+        ByteBuffer data = this.buffer;
+        int w = this.WIDTH;
+
+        switch (this.format) {
+            case ARGB: {
+                int index = this.offset + (y * w + x) * 4;
+                for (int i = 0; i < length; i++, index += 4) {
+                    rgb[i] = data.getInt(index);
+                }
+                break;
+            }
+            case RGB24: {
+                int index = this.offset + (y * w + x) * 3;
+                for (int i = 0; i < length; i++, index += 3) {
+                    rgb[i] = 0xff000000
+                            | (data.get(index) & 0xff) << 16
+                            | (data.get(index + 1) & 0xff) << 8
+                            | (data.get(index + 2) & 0xff);
+                }
+                break;
+            }
+            case I420: {
+                int chromaWidth = (w + 1) / 2;
+                int chromaHeight = (this.HEIGHT + 1) / 2;
+                int luma = this.offset + y * w;
+                int u = this.offset + w * this.HEIGHT + (y / 2) * chromaWidth;
+                int v = u + chromaWidth * chromaHeight;
+                for (int i = 0; i < length; i++) {
+                    int column = x + i;
+                    rgb[i] = toRgb(data.get(luma + column) & 0xff, data.get(u + column / 2) & 0xff,
+                            data.get(v + column / 2) & 0xff);
+                }
+                break;
+            }
+            case NV12: {
+                int luma = this.offset + y * w;
+                int chroma = this.offset + w * this.HEIGHT + (y / 2) * ((w + 1) / 2) * 2;
+                for (int i = 0; i < length; i++) {
+                    int column = x + i;
+                    int uv = chroma + (column / 2) * 2;
+                    rgb[i] = toRgb(data.get(luma + column) & 0xff, data.get(uv) & 0xff, data.get(uv + 1) & 0xff);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Converts a BT.601 video range YUV colour to packed RGB.
+     *
+     * @param y     the luma value.
+     * @param u     the blue difference chroma value.
+     * @param v     the red difference chroma value.
+     * @return      the colour as a packed ARGB integer with an alpha of 0xff.
+     */
+    static int toRgb(int y, int u, int v) {
+        int c = 298 * (y - 16) + 128;
+        int d = u - 128;
+        int e = v - 128;
+        int red = clamp((c + 409 * e) >> 8);
+        int green = clamp((c - 100 * d - 208 * e) >> 8);
+        int blue = clamp((c + 516 * d) >> 8);
+        return 0xff000000 | red << 16 | green << 8 | blue;
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
@@ -0,0 +1,70 @@
+import java.nio.ByteBuffer;
+
+/**
+ * <h1>MappedYuvFrame</h1>
+ * MappedYuvFrame objects are MappedFrames in the I420 or NV12 format, which hand their planes over to a
+ * YuvClassifier so that the pixels can be classified straight from the mapping.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class MappedYuvFrame extends MappedFrame implements YuvFrame {
+
+    private final int chromaWidth;
+    private final int uPlane;
+    private final int vPlane;
+    private final int chromaStep;
+
+    /**
+     * Constructor for the MappedYuvFrame class.
+     *
+     * @param buffer        the mapping holding the frame.
+     * @param offset        the index within the buffer of the first byte of the frame.
+     * @param width         the width of the frame in pixels.
+     * @param height        the height of the frame in pixels.
+     * @param format        the layout of the pixels, either I420 or NV12.
+     * @param frameNumber   the index of the frame within its file.
+     */
+    public MappedYuvFrame(ByteBuffer buffer, int offset, int width, int height, RawFrameSource.Format format,
+                          long frameNumber) {
+        super(buffer, offset, width, height, format, frameNumber);
+
+        this.chromaWidth = (width + 1) / 2;
+        int chromaSize = this.chromaWidth * ((height + 1) / 2);
+        this.uPlane = offset + width * height;
+        if (format == RawFrameSource.Format.I420) {
+            this.vPlane = this.uPlane + chromaSize;
+            this.chromaStep = 1;
+        } else if (format == RawFrameSource.Format.NV12) {
+            this.vPlane = this.uPlane + 1;
+            this.chromaStep = 2;
+        } else {
+            throw new IllegalArgumentException(format + " is not a YUV format");
+        }
+    }
+
+    @Override
+    public ByteBuffer getYuvBuffer() {
+        return getBuffer();
+    }
+
+    @Override
+    public int getLumaOffset(int y) {
+        return getOffset() + y * getWidth();
+    }
+
+    @Override
+    public int getUOffset(int y) {
+        return this.uPlane + (y / 2) * this.chromaWidth * this.chromaStep;
+    }
+
+    @Override
+    public int getVOffset(int y) {
+        return this.vPlane + (y / 2) * this.chromaWidth * this.chromaStep;
+    }
+
+    @Override
+    public int getChromaStep() {
+        return this.chromaStep;
+    }
+}
@@ -0,0 +1,255 @@
+import java.util.Random;
+
+/**
+ * <h1>Morphology</h1>
+ * Morphology objects erode, dilate, open, and close a GreenMask with a square structuring element of any radius.
+ * <p>
+ * Unlike cleanUpIntArray() in ImageTools, which only looks at the pixel below and so is biased in one direction,
+ * these operations treat every direction alike. A square element is separable, so each operation is a horizontal
+ * pass along each row followed by a vertical pass down the columns. The horizontal pass works on whole 64-pixel
+ * words using shifts, widening the window from 1 to 3 to 7 pixels and so on, so a radius r costs O(log r) word
+ * operations per word. The vertical pass combines whole rows of words.
+ * <p>
+ * Pixels outside the frame count as green when eroding and as not green when dilating, so regions touching the edge
+ * of the frame are not worn away by an opening.
+ * <p>
+ * Scratch rows are kept between calls, so a Morphology object should be reused. It is not thread safe.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class Morphology {
+
+    private long[] scratch;
+    private long[] window;
+    private long[] shifted;
+
+    /**
+     * Constructor for the Morphology class. Initialises instance variables only.
+     */
+    public Morphology() {
+        this.scratch = new long[0];
+        this.window = new long[0];
+        this.shifted = new long[0];
+    }
+
+    /**
+     * Clears every pixel which does not have green pixels all around it, out to the given radius.
+     *
+     * @param mask      the GreenMask to erode in place.
+     * @param radius    the radius of the square structuring element; 0 leaves the mask unchanged.
+     */
+    public void erode(GreenMask mask, int radius) {
+        apply(mask, radius, true);
+    }
+
+    /**
+     * Sets every pixel which has a green pixel anywhere around it, out to the given radius.
+     *
+     * @param mask      the GreenMask to dilate in place.
+     * @param radius    the radius of the square structuring element; 0 leaves the mask unchanged.
+     */
+    public void dilate(GreenMask mask, int radius) {
+        apply(mask, radius, false);
+    }
+
+    /**
+     * Erodes and then dilates the mask, which removes green specks and thin lines smaller than the structuring
+     * element while keeping the shape of larger regions.
+     *
+     * @param mask      the GreenMask to open in place.
+     * @param radius    the radius of the square structuring element.
+     */
+    public void open(GreenMask mask, int radius) {
+        erode(mask, radius);
+        dilate(mask, radius);
+    }
+
+    /**
+     * Dilates and then erodes the mask, which fills holes and gaps smaller than the structuring element.
+     *
+     * @param mask      the GreenMask to close in place.
+     * @param radius    the radius of the square structuring element.
+     */
+    public void close(GreenMask mask, int radius) {
+        dilate(mask, radius);
+        erode(mask, radius);
+    }
+
+    /**
+     * Runs the horizontal and then the vertical pass of an erosion or dilation.
+     *
+     * @param mask      the GreenMask to modify in place.
+     * @param radius    the radius of the square structuring element.
+     * @param erode     true to erode (AND the window together), false to dilate (OR the window together).
+     */
+    private void apply(GreenMask mask, int radius, boolean erode) {
+
+        if (radius <= 0 || mask.getWidth() == 0 || mask.getHeight() == 0) {
+            return;
+        }
+
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        int words = mask.getWordsPerRow();
+        long[] bits = mask.getBits();
+
+        if (this.scratch.length < bits.length) {
+            this.scratch = new long[bits.length];
+        }
+        if (this.window.length < words) {
+            this.window = new long[words];
+            this.shifted = new long[words];
+        }
+
+        long fill = erode ? -1L : 0L;
+        int padding = width & 63;
+        long lastMask = padding == 0 ? -1L : (1L << padding) - 1;
+
+        // horizontal pass, row by row in place
+        for (int y = 0; y < height; y++) {
+            int row = y * words;
+            System.arraycopy(bits, row, this.window, 0, words);
+            // the bits past the right edge stand for pixels outside the frame
+            this.window[words - 1] = (this.window[words - 1] & lastMask) | (fill & ~lastMask);
+
+            int covered = 0;
+            while (covered < radius) {
+                // widen the window from covered to at most 2 * covered + 1
+                int step = Math.min(covered + 1, radius - covered);
+                System.arraycopy(this.window, 0, this.shifted, 0, words);
+                combineShifted(this.shifted, words, step, fill, erode);
+                combineShifted(this.shifted, words, -step, fill, erode);
+                covered += step;
+            }
+
+            System.arraycopy(this.window, 0, bits, row, words);
+            bits[row + words - 1] &= lastMask;
+        }
+
+        // vertical pass into the scratch rows, then back into the mask
+        for (int y = 0; y < height; y++) {
+            int from = Math.max(0, y - radius);
+            int to = Math.min(height - 1, y + radius);
+            int row = y * words;
+            for (int w = 0; w < words; w++) {
+                long value = bits[from * words + w];
+                for (int other = from + 1; other <= to; other++) {
+                    value = erode ? value & bits[other * words + w] : value | bits[other * words + w];
+                }
+                this.scratch[row + w] = value;
+            }
+        }
+        System.arraycopy(this.scratch, 0, bits, 0, bits.length);
+    }
+
+    /**
+     * Combines the window row with a copy of the source row shifted by the given number of pixels, so that each
+     * pixel of the window takes in the pixel that far to its right (positive shifts) or left (negative shifts).
+     *
+     * @param source    the row to shift, which is not modified.
+     * @param words     the number of words in the row.
+     * @param shift     the number of pixels to shift by.
+     * @param fill      the word standing for pixels outside the frame.
+     * @param erode     true to AND the shifted row into the window, false to OR it.
+     */
+    private void combineShifted(long[] source, int words, int shift, long fill, boolean erode) {
+
+        int distance = Math.abs(shift);
+        int wordShift = distance >>> 6;
+        int bitShift = distance & 63;
+
+        for (int i = 0; i < words; i++) {
+            long value;
+            if (shift > 0) {
+                long low = wordAt(source, words, i + wordShift, fill);
+                long high = wordAt(source, words, i + wordShift + 1, fill);
+                value = bitShift == 0 ? low : (low >>> bitShift) | (high << (64 - bitShift));
+            } else {
+                long high = wordAt(source, words, i - wordShift, fill);
+                long low = wordAt(source, words, i - wordShift - 1, fill);
+                value = bitShift == 0 ? high : (high << bitShift) | (low >>> (64 - bitShift));
+            }
+            this.window[i] = erode ? this.window[i] & value : this.window[i] | value;
+        }
+    }
+
+    private static long wordAt(long[] row, int words, int index, long fill) {
+        return index >= 0 && index < words ? row[index] : fill;
+    }
+
+    /**
+     * Times the original int[][] cleaner from ImageTools against GreenMask.clean(), which gives the same result on
+     * a packed mask, and against an opening of radius 1 and 2, on a 640x480 mask of noisy green regions.
+     */
+    public static void main(String[] args) {
+        int width = 640;
+        int height = 480;
+        int rounds = 200;
+
+        Random random = new Random(42);
+        int[][] source = new int[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                boolean inTarget = Math.abs(x - 400) < 90 && Math.abs(y - 200) < 70;
+                source[x][y] = inTarget || random.nextInt(50) == 0 ? 1 : 0;
+            }
+        }
+
+        GreenMask original = new GreenMask(width, height);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (source[x][y] == 1) {
+                    original.set(x, y);
+                }
+            }
+        }
+
+        Morphology morphology = new Morphology();
+        GreenMask mask = new GreenMask(width, height);
+        int[][] array = new int[width][height];
+
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                for (int x = 0; x < width; x++) {
+                    System.arraycopy(source[x], 0, array[x], 0, height);
+                }
+                ImageTools.cleanUpIntArray(array);
+            }
+            long intArrayTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                System.arraycopy(original.getBits(), 0, mask.getBits(), 0, mask.getBits().length);
+                mask.clean();
+            }
+            long packedTime = System.nanoTime() - start;
+            int cleanedCount = mask.count();
+
+            long[] openTimes = new long[2];
+            int[] openCounts = new int[2];
+            for (int radius = 1; radius <= 2; radius++) {
+                start = System.nanoTime();
+                for (int i = 0; i < rounds; i++) {
+                    System.arraycopy(original.getBits(), 0, mask.getBits(), 0, mask.getBits().length);
+                    morphology.open(mask, radius);
+                }
+                openTimes[radius - 1] = System.nanoTime() - start;
+                openCounts[radius - 1] = mask.count();
+            }
+
+            // the first pass only warms up the JIT
+            if (pass == 1) {
+                System.out.println("pixels: " + original.count());
+                System.out.println("cleanUpIntArray:   " + intArrayTime / rounds / 1000 + " us");
+                System.out.println("GreenMask.clean(): " + packedTime / rounds / 1000 + " us, " + cleanedCount
+                        + " pixels left");
+                for (int radius = 1; radius <= 2; radius++) {
+                    System.out.println("open radius " + radius + ":     " + openTimes[radius - 1] / rounds / 1000
+                            + " us, " + openCounts[radius - 1] + " pixels left");
+                }
+            }
+        }
+    }
+}
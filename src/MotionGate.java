@@ -0,0 +1,510 @@
+import java.util.Arrays;
+
+/**
+ * <h1>MotionGate</h1>
+ * MotionGate objects keep the classified mask of a stream of frames up to date by classifying only the parts of each
+ * frame which have changed since the frame before.
+ * <p>
+ * The frame is divided into a grid of blocks, and the pixels of each block are kept from the frame it was last
+ * classified in. Comparing a pixel with the one kept for it costs a read and an exclusive or, which is less than
+ * classifying, cleaning and measuring the pixel. With a step above 1 only every step-th pixel of every step-th row
+ * of a block is kept and compared, a coarser grid which reads only those rows of a block unless it has changed. With
+ * a threshold of 0 a block has changed if any of its compared pixels has; otherwise it has changed if the compared
+ * pixels have moved by more than the threshold in each colour channel on average, so that sensor noise is absorbed.
+ * Only the changed blocks are classified again, into a mask which holds the classified but uncleaned pixels of the
+ * whole frame; every other block keeps the pixels it was classified with before.
+ * <p>
+ * The rows of each band of blocks are read once into a buffer, so the pixels of a changed block are classified from the
+ * buffer rather than read from the frame a second time. ImageTools uses the range of rows which changed to clean only
+ * those rows again, and when no block changed it reuses its previous results altogether, so a static scene costs only
+ * reading and comparing the frame. When every block changes, as with a noisy sensor and a threshold of 0, comparing
+ * and keeping the pixels is extra work on top of a full pass, so such a stream wants a threshold or a step.
+ * <p>
+ * The gate is exact with a threshold of 0 and a step of 1, which the default constructor uses: the mask is the same as
+ * classifying every frame in full. Otherwise the mask is approximate, since a change below the threshold, or to a
+ * pixel between the compared ones, is missed until the block changes by enough elsewhere. Every block is classified
+ * again every refreshInterval frames so that such misses cannot last. A MotionGate holds the state of a single stream
+ * of frames and is not thread safe.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class MotionGate {
+
+    private final int BLOCK;
+    private final double THRESHOLD;
+    private final int STEP;
+    private final int REFRESH_INTERVAL;
+
+    private GreenMask mask;
+    private int blocksWide;
+    private int blocksHigh;
+    private int samplesWide;
+    private int[] sampleStarts;
+    private int[] reference;
+    private long[] differences;
+    private long[] allowances;
+    private boolean[] changedBlocks;
+    private int[][] band;
+    private int[] segment;
+    private boolean primed;
+    private int framesSinceRefresh;
+    private int changedFromRow;
+    private int changedToRow;
+
+    private long framesChecked;
+    private long staticFrames;
+    private long blocksChecked;
+    private long blocksSkipped;
+    private long pixelsClassified;
+    private long pixelsInFrames;
+
+    /**
+     * Constructor for the MotionGate class. Uses blocks of 16x16 pixels and compares every pixel exactly, so the mask
+     * is always the same as classifying the frame in full.
+     */
+    public MotionGate() {
+        this(16, 0, 1, 0);
+    }
+
+    /**
+     * Constructor for the MotionGate class. Compares every pixel, and when the threshold is above 0 classifies every
+     * block again every 30 frames.
+     *
+     * @param block         the width and height of each block in pixels, from 1 to 256.
+     * @param threshold     the mean change of a colour channel across a block, from 0 to 255, which a block has to
+     *                      exceed to be classified again. 0 classifies a block again on any change to its pixels.
+     */
+    public MotionGate(int block, double threshold) {
+        this(block, threshold, 1, threshold > 0 ? 30 : 0);
+    }
+
+    /**
+     * Constructor for the MotionGate class.
+     *
+     * @param block             the width and height of each block in pixels, from 1 to 256.
+     * @param threshold         the mean change of a colour channel across the compared pixels of a block, from 0 to
+     *                          255, which a block has to exceed to be classified again. 0 classifies a block again on
+     *                          any change to its compared pixels.
+     * @param step              the distance between compared pixels, in both directions, from 1 to the block size. 1
+     *                          compares every pixel.
+     * @param refreshInterval   the number of frames after which every block is classified again regardless, or 0 to
+     *                          only classify blocks which have changed.
+     */
+    public MotionGate(int block, double threshold, int step, int refreshInterval) {
+
+        if (block < 1 || block > 256 || threshold < 0 || step < 1 || step > block || refreshInterval < 0) {
+            throw new IllegalArgumentException("block must be from 1 to 256, threshold at least 0, step from 1 to "
+                    + "block and refreshInterval at least 0: " + block + ", " + threshold + ", " + step + ", "
+                    + refreshInterval);
+        }
+        this.BLOCK = block;
+        this.THRESHOLD = threshold;
+        this.STEP = step;
+        this.REFRESH_INTERVAL = refreshInterval;
+        this.segment = new int[0];
+    }
+
+    /**
+     * Compares a frame with the previous one and classifies the blocks which have changed into the mask. Every
+     * block of the first frame, of a frame of different dimensions, or of a frame due a refresh counts as changed.
+     *
+     * @param frame         the next frame of the stream as an RgbFrame.
+     * @param classifier    the GreenClassifier which decides which pixels are green. It should be the same for
+     *                      every frame.
+     * @return              the number of blocks which were classified again.
+     */
+    public int update(RgbFrame frame, GreenClassifier classifier) {
+
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        prepare(w, h);
+
+        boolean refresh = !this.primed
+                || (this.REFRESH_INTERVAL > 0 && this.framesSinceRefresh >= this.REFRESH_INTERVAL);
+        this.framesSinceRefresh = refresh ? 1 : this.framesSinceRefresh + 1;
+
+        long[] bits = this.mask.getBits();
+        int words = this.mask.getWordsPerRow();
+        int[][] rows = this.band;
+        boolean[] changedBlocks = this.changedBlocks;
+        int step = this.STEP;
+        int changed = 0;
+        this.changedFromRow = h;
+        this.changedToRow = 0;
+
+        for (int by = 0; by < this.blocksHigh; by++) {
+            int top = by * this.BLOCK;
+            int bottom = Math.min(top + this.BLOCK, h);
+            int sampledRows = (bottom - top + step - 1) / step;
+            // the kept pixels of the band start after those of every full band above it
+            int bandReference = by * ((this.BLOCK + step - 1) / step) * this.samplesWide;
+
+            // read the sampled rows of the band once, comparing them with the kept pixels unless refreshing
+            if (!refresh) {
+                Arrays.fill(this.differences, 0);
+                for (int bx = 0; bx < this.blocksWide; bx++) {
+                    int samples = (this.sampleStarts[bx + 1] - this.sampleStarts[bx]) * sampledRows;
+                    this.allowances[bx] = (long) (this.THRESHOLD * 3 * samples);
+                }
+            }
+            for (int i = 0, y = top; y < bottom; i++, y += step) {
+                int[] row = rows[i];
+                frame.readRow(y, 0, w, row);
+                if (!refresh) {
+                    compare(row, w, bandReference + i * this.samplesWide);
+                }
+            }
+
+            // decide once for each block whether it has changed
+            for (int bx = 0; bx < this.blocksWide; bx++) {
+                changedBlocks[bx] = refresh || this.differences[bx] > this.allowances[bx];
+            }
+
+            // classify each run of changed blocks again
+            int bx = 0;
+            while (bx < this.blocksWide) {
+                if (!changedBlocks[bx]) {
+                    bx++;
+                    continue;
+                }
+                int first = bx;
+                while (bx < this.blocksWide && changedBlocks[bx]) {
+                    bx++;
+                }
+                int left = first * this.BLOCK;
+                int right = Math.min(bx * this.BLOCK, w);
+                for (int y = top; y < bottom; y++) {
+                    clearRange(bits, y * words, left, right);
+                    int[] row;
+                    if ((y - top) % step == 0) {
+                        row = rows[(y - top) / step];
+                        if (left > 0) {
+                            System.arraycopy(row, left, this.segment, 0, right - left);
+                            row = this.segment;
+                        }
+                    } else {
+                        // rows between the sampled ones are only read for blocks which have changed
+                        frame.readRow(y, left, right - left, this.segment);
+                        row = this.segment;
+                    }
+                    classifier.classifyRow(row, right - left, bits, y * words, left);
+                }
+                keep(rows, sampledRows, bandReference, first, bx, w);
+                changed += bx - first;
+                this.pixelsClassified += (long) (right - left) * (bottom - top);
+                this.changedFromRow = Math.min(this.changedFromRow, top);
+                this.changedToRow = bottom;
+            }
+        }
+
+        int blocks = this.blocksWide * this.blocksHigh;
+        this.primed = true;
+        this.framesChecked++;
+        this.blocksChecked += blocks;
+        this.blocksSkipped += blocks - changed;
+        this.pixelsInFrames += (long) w * h;
+        if (changed == 0) {
+            this.staticFrames++;
+            this.changedFromRow = 0;
+        }
+        return changed;
+    }
+
+    /**
+     * Compares a sampled row of a band with the pixels kept for it, adding how far each block has changed to its
+     * difference. With a threshold of 0 a block's difference only records whether any pixel changed, and blocks
+     * already known to have changed are not compared again.
+     *
+     * @param row       the pixels of the row.
+     * @param w         the width of the frame.
+     * @param offset    the index of the row's first kept pixel.
+     */
+    private void compare(int[] row, int w, int offset) {
+        int[] reference = this.reference;
+        int step = this.STEP;
+        if (step == 1) {
+            // most rows of a still scene match in full, which one long loop finds faster than a loop for each block
+            int difference = 0;
+            for (int x = 0; x < w; x++) {
+                difference |= row[x] ^ reference[offset + x];
+            }
+            if (difference == 0) {
+                return;
+            }
+        }
+        for (int bx = 0, left = 0; bx < this.blocksWide; bx++, left += this.BLOCK) {
+            if (this.differences[bx] > this.allowances[bx]) {
+                continue;
+            }
+            int end = Math.min(left + this.BLOCK, w);
+            int k = offset + this.sampleStarts[bx];
+            if (this.THRESHOLD == 0) {
+                int difference = 0;
+                if (step == 1) {
+                    for (int x = left; x < end; x++, k++) {
+                        difference |= row[x] ^ reference[k];
+                    }
+                } else {
+                    for (int x = left; x < end; x += step, k++) {
+                        difference |= row[x] ^ reference[k];
+                    }
+                }
+                if (difference != 0) {
+                    this.differences[bx] = 1;
+                }
+            } else {
+                // at most 256 pixels of 765 each, so an int cannot overflow
+                int difference = 0;
+                if (step == 1) {
+                    for (int x = left; x < end; x++, k++) {
+                        difference += channelDifference(row[x], reference[k]);
+                    }
+                } else {
+                    for (int x = left; x < end; x += step, k++) {
+                        difference += channelDifference(row[x], reference[k]);
+                    }
+                }
+                this.differences[bx] += difference;
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of how far the red, green and blue channels of two pixels are apart.
+     *
+     * @param pixel     the pixel of the current frame.
+     * @param kept      the pixel kept for it.
+     * @return          the difference, from 0 to 765.
+     */
+    private static int channelDifference(int pixel, int kept) {
+        return Math.abs(((pixel >>> 16) & 0xff) - ((kept >>> 16) & 0xff))
+                + Math.abs(((pixel >>> 8) & 0xff) - ((kept >>> 8) & 0xff))
+                + Math.abs((pixel & 0xff) - (kept & 0xff));
+    }
+
+    /**
+     * Keeps the sampled pixels of a run of blocks which have just been classified, to compare the next frame with.
+     *
+     * @param rows          the sampled rows of the band.
+     * @param sampledRows   the number of sampled rows in the band.
+     * @param offset        the index of the band's first kept pixel.
+     * @param first         the first block of the run (inclusive).
+     * @param last          the last block of the run (exclusive).
+     * @param w             the width of the frame.
+     */
+    private void keep(int[][] rows, int sampledRows, int offset, int first, int last, int w) {
+        int left = first * this.BLOCK;
+        int right = Math.min(last * this.BLOCK, w);
+        for (int i = 0; i < sampledRows; i++) {
+            int[] row = rows[i];
+            int k = offset + i * this.samplesWide + this.sampleStarts[first];
+            if (this.STEP == 1) {
+                System.arraycopy(row, left, this.reference, k, right - left);
+                continue;
+            }
+            // every block is sampled from its own first column
+            for (int blockLeft = left; blockLeft < right; blockLeft += this.BLOCK) {
+                int end = Math.min(blockLeft + this.BLOCK, w);
+                for (int x = blockLeft; x < end; x += this.STEP) {
+                    this.reference[k++] = row[x];
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears the bits of a range of columns in a row of the mask.
+     *
+     * @param bits      the bits of the mask.
+     * @param offset    the index of the first word of the row.
+     * @param left      the first column to clear (inclusive).
+     * @param right     the last column to clear (exclusive).
+     */
+    private static void clearRange(long[] bits, int offset, int left, int right) {
+        int firstWord = left >>> 6;
+        int lastWord = (right - 1) >>> 6;
+        long firstMask = -1L << left;
+        long lastMask = -1L >>> (63 - ((right - 1) & 63));
+        if (firstWord == lastWord) {
+            bits[offset + firstWord] &= ~(firstMask & lastMask);
+            return;
+        }
+        bits[offset + firstWord] &= ~firstMask;
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            bits[offset + i] = 0;
+        }
+        bits[offset + lastWord] &= ~lastMask;
+    }
+
+    /**
+     * Creates the mask, the kept pixels and the buffers for the first frame, and again whenever the frame size
+     * changes.
+     *
+     * @param w     the width of the frame.
+     * @param h     the height of the frame.
+     */
+    private void prepare(int w, int h) {
+        if (this.mask != null && this.mask.getWidth() == w && this.mask.getHeight() == h) {
+            return;
+        }
+        this.mask = new GreenMask(w, h);
+        this.blocksWide = (w + this.BLOCK - 1) / this.BLOCK;
+        this.blocksHigh = (h + this.BLOCK - 1) / this.BLOCK;
+        this.sampleStarts = new int[this.blocksWide + 1];
+        for (int bx = 0; bx < this.blocksWide; bx++) {
+            int blockWidth = Math.min(this.BLOCK, w - bx * this.BLOCK);
+            this.sampleStarts[bx + 1] = this.sampleStarts[bx] + (blockWidth + this.STEP - 1) / this.STEP;
+        }
+        this.samplesWide = this.sampleStarts[this.blocksWide];
+        int sampledRows = (this.BLOCK + this.STEP - 1) / this.STEP;
+        this.reference = new int[this.blocksHigh * sampledRows * this.samplesWide];
+        this.differences = new long[this.blocksWide];
+        this.allowances = new long[this.blocksWide];
+        this.changedBlocks = new boolean[this.blocksWide];
+        this.band = new int[(Math.min(this.BLOCK, h) + this.STEP - 1) / this.STEP][w];
+        this.segment = new int[w];
+        this.primed = false;
+    }
+
+    /**
+     * Forgets the previous frame, so that every block of the next frame is classified again.
+     */
+    public void reset() {
+        this.primed = false;
+    }
+
+    /**
+     * Returns the mask of classified but uncleaned pixels of the last frame passed to update(). It belongs to the
+     * MotionGate and is updated in place by the next frame.
+     *
+     * @return  the classified mask as a GreenMask, or null before the first frame.
+     */
+    public GreenMask getMask() {
+        return this.mask;
+    }
+
+    /**
+     * Returns the first row of the blocks classified again by the last update().
+     *
+     * @return  the first changed row (inclusive), which is 0 if nothing changed.
+     */
+    public int getChangedFromRow() {
+        return this.changedFromRow;
+    }
+
+    /**
+     * Returns the row after the last row of the blocks classified again by the last update().
+     *
+     * @return  the last changed row (exclusive), which is 0 if nothing changed.
+     */
+    public int getChangedToRow() {
+        return this.changedToRow;
+    }
+
+    /**
+     * Returns the fraction of all blocks of the frames seen which had not changed and were not classified again.
+     *
+     * @return  the fraction of blocks skipped, from 0 to 1.
+     */
+    public double getSkippedFraction() {
+        return this.blocksChecked == 0 ? 0 : (double) this.blocksSkipped / this.blocksChecked;
+    }
+
+    /**
+     * Returns the fraction of all pixels in the frames seen which were classified.
+     *
+     * @return  the fraction of pixels classified, from 0 to 1.
+     */
+    public double getClassifiedFraction() {
+        return this.pixelsInFrames == 0 ? 0 : (double) this.pixelsClassified / this.pixelsInFrames;
+    }
+
+    /**
+     * Returns the number of frames passed to update().
+     *
+     * @return  the number of frames checked.
+     */
+    public long getFramesChecked() {
+        return this.framesChecked;
+    }
+
+    /**
+     * Returns the number of frames in which no block had changed.
+     *
+     * @return  the number of static frames.
+     */
+    public long getStaticFrames() {
+        return this.staticFrames;
+    }
+
+    /**
+     * Compares ImageTools in SINGLE_PASS mode with and without a MotionGate on synthetic scenes of several sizes: a
+     * static scene which repeats one frame, and a moving scene in which the target moves across a still background
+     * from frame to frame. Each scene is run with the exact default gate and with a sampled gate comparing every
+     * fourth pixel of every fourth row. Prints the time taken per frame by each, the fraction of blocks skipped and
+     * of pixels classified by the gate, and how often the positions of the target agree.
+     * <p>
+     * Usage: java MotionGate [frames]
+     */
+    public static void main(String[] args) {
+
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        int[][] sizes = {{640, 480}, {1920, 1080}};
+        String[] scenes = {"static", "moving"};
+        GreenClassifier classifier = GreenClassifier.getDefault();
+
+        String[] gates = {"exact", "sampled"};
+
+        System.out.println(String.format("%-12s %-8s %-8s %9s %9s %11s %10s %10s", "frame", "scene", "gate",
+                "skipped", "classified", "positions", "full ms", "gated ms"));
+
+        for (int[] size : sizes) {
+            for (String scene : scenes) {
+                RgbFrame[] testFrames = new RgbFrame[frames];
+                for (int i = 0; i < frames; i++) {
+                    long frameNumber = scene.equals("static") ? 0 : i;
+                    testFrames[i] = new BufferedImageFrame(SyntheticFrameSource.createFrame(size[0], size[1],
+                            frameNumber, 0.1));
+                }
+
+                ImageTools full = new ImageTools(ImageTools.Mode.SINGLE_PASS, classifier);
+                String[] positions = new String[frames];
+                long fullTime = 0;
+                for (int pass = 0; pass < 2; pass++) {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < frames; i++) {
+                        full.setFrame(testFrames[i]);
+                        positions[i] = full.getPositionOfTarget();
+                    }
+                    fullTime = System.nanoTime() - start;
+                }
+
+                for (String gateName : gates) {
+                    MotionGate gate = null;
+                    int agreed = 0;
+                    long gatedTime = 0;
+                    for (int pass = 0; pass < 2; pass++) {
+                        gate = gateName.equals("exact") ? new MotionGate() : new MotionGate(16, 2, 4, 30);
+                        ImageTools gated = new ImageTools(ImageTools.Mode.SINGLE_PASS, classifier);
+                        gated.setMotionGate(gate);
+                        agreed = 0;
+                        long start = System.nanoTime();
+                        for (int i = 0; i < frames; i++) {
+                            gated.setFrame(testFrames[i]);
+                            if (gated.getPositionOfTarget().equals(positions[i])) {
+                                agreed++;
+                            }
+                        }
+                        gatedTime = System.nanoTime() - start;
+                    }
+
+                    System.out.println(String.format("%-12s %-8s %-8s %8.1f%% %9.1f%% %10.1f%% %10.2f %10.2f",
+                            size[0] + "x" + size[1], scene, gateName, 100 * gate.getSkippedFraction(),
+                            100 * gate.getClassifiedFraction(), 100.0 * agreed / frames, fullTime / 1e6 / frames,
+                            gatedTime / 1e6 / frames));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,268 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * <h1>ParallelFrameProcessor</h1>
+ * ParallelFrameProcessor objects run the single pass pipeline of ImageTools across several cores, for large frames
+ * such as 4K still images.
+ * <p>
+ * The frame is split into bands of rows which are processed on a ForkJoinPool in two phases. Firstly, every band is
+ * classified into a shared GreenMask; bands never share a row, so no locking is needed. Secondly, every band is
+ * cleaned into a second mask (cleaning a row reads the four rows below it, which may belong to the next band, so it
+ * has to wait until classification is finished) and reduced into its own pair of AxisHistograms. The partial
+ * histograms are merged as the tasks join, giving exactly the same result as the sequential pipeline.
+ * <p>
+ * The classified mask, the row buffer and histograms of each band, and the tasks themselves are kept from frame to
+ * frame, so nothing is allocated once a frame of the same size has been processed. process() is synchronized, so
+ * ImageTools objects sharing a processor take turns with it.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class ParallelFrameProcessor {
+
+    private final ForkJoinPool pool;
+    private final int BAND_HEIGHT;
+
+    private GreenMask mask;
+    private int[][] rows;
+    private AxisHistogram[] xHistograms;
+    private AxisHistogram[] yHistograms;
+    private ClassifyTask classifyTask;
+    private CleanTask cleanTask;
+    private FrameTask frameTask;
+
+    private RgbFrame frame;
+    private GreenClassifier classifier;
+    private GreenMask cleaned;
+
+    /**
+     * Constructor for the ParallelFrameProcessor class. Bands are 32 rows high.
+     *
+     * @param parallelism   the number of cores to use.
+     */
+    public ParallelFrameProcessor(int parallelism) {
+        this(parallelism, 32);
+    }
+
+    /**
+     * Constructor for the ParallelFrameProcessor class. Responsible for creating the ForkJoinPool.
+     *
+     * @param parallelism   the number of cores to use.
+     * @param bandHeight    the number of rows in each band.
+     */
+    public ParallelFrameProcessor(int parallelism, int bandHeight) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.BAND_HEIGHT = Math.max(1, bandHeight);
+    }
+
+    /**
+     * Returns the shared processor used by ImageTools in PARALLEL mode when none is given, which uses every core. Its
+     * worker threads are daemon threads, so it never needs to be shut down.
+     *
+     * @return  the shared default ParallelFrameProcessor.
+     */
+    public static ParallelFrameProcessor getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the number of cores used by the processor.
+     *
+     * @return  the number of cores used by the processor.
+     */
+    public int getParallelism() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * Classifies and cleans every pixel in the frame, and adds the remaining green pixels to the given histograms.
+     *
+     * @param frame         the target image as an RgbFrame.
+     * @param classifier    the GreenClassifier which decides which pixels are green.
+     * @param cleaned       an empty GreenMask the size of the frame, which receives the cleaned mask.
+     * @param xHistogram    the AxisHistogram receiving x coordinates, as long as the frame is wide.
+     * @param yHistogram    the AxisHistogram receiving y coordinates, as long as the frame is high.
+     */
+    public synchronized void process(RgbFrame frame, GreenClassifier classifier, GreenMask cleaned,
+                                     AxisHistogram xHistogram, AxisHistogram yHistogram) {
+
+        if (frame.getHeight() == 0) {
+            return;
+        }
+        prepare(frame.getWidth(), frame.getHeight());
+        this.frame = frame;
+        this.classifier = classifier;
+        this.cleaned = cleaned;
+
+        this.frameTask.reinitialize();
+        this.pool.invoke(this.frameTask);
+
+        // the histograms of every band have been merged into those of the first
+        xHistogram.addAll(this.xHistograms[0]);
+        yHistogram.addAll(this.yHistograms[0]);
+
+        this.frame = null;
+        this.cleaned = null;
+    }
+
+    /**
+     * Creates the mask, the buffers and the histograms of every band, and the tasks which process them, for the
+     * first frame and again whenever the frame size changes.
+     *
+     * @param w     the width of the frame.
+     * @param h     the height of the frame.
+     */
+    private void prepare(int w, int h) {
+        if (this.mask != null && this.mask.getWidth() == w && this.mask.getHeight() == h) {
+            return;
+        }
+        int bands = (h + this.BAND_HEIGHT - 1) / this.BAND_HEIGHT;
+        this.mask = new GreenMask(w, h);
+        this.rows = new int[bands][w];
+        this.xHistograms = new AxisHistogram[bands];
+        this.yHistograms = new AxisHistogram[bands];
+        for (int band = 0; band < bands; band++) {
+            this.xHistograms[band] = new AxisHistogram(w);
+            this.yHistograms[band] = new AxisHistogram(h);
+        }
+        this.classifyTask = new ClassifyTask(0, bands);
+        this.cleanTask = new CleanTask(0, bands);
+        this.frameTask = new FrameTask();
+    }
+
+    /**
+     * Stops the worker threads once any queued frames have been processed.
+     */
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Runs both phases for a frame inside the pool, so that the calling thread only waits once per frame.
+     */
+    private class FrameTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            classifyTask.reset();
+            classifyTask.invoke();
+            cleanTask.reset();
+            cleanTask.invoke();
+        }
+    }
+
+    /**
+     * Classifies a range of bands into the shared mask, splitting in half down to single bands. The tree of tasks is
+     * built once for each frame size and reset before every frame.
+     */
+    private class ClassifyTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int fromBand;
+        private final int toBand;
+        private final ClassifyTask top;
+        private final ClassifyTask bottom;
+
+        ClassifyTask(int fromBand, int toBand) {
+            this.fromBand = fromBand;
+            this.toBand = toBand;
+            int middle = (fromBand + toBand) >>> 1;
+            this.top = toBand - fromBand > 1 ? new ClassifyTask(fromBand, middle) : null;
+            this.bottom = toBand - fromBand > 1 ? new ClassifyTask(middle, toBand) : null;
+        }
+
+        void reset() {
+            reinitialize();
+            if (this.top != null) {
+                this.top.reset();
+                this.bottom.reset();
+            }
+        }
+
+        @Override
+        protected void compute() {
+            if (this.top != null) {
+                invokeAll(this.top, this.bottom);
+                return;
+            }
+
+            RgbFrame frame = ParallelFrameProcessor.this.frame;
+            GreenClassifier classifier = ParallelFrameProcessor.this.classifier;
+            GreenMask mask = ParallelFrameProcessor.this.mask;
+            int w = frame.getWidth();
+            int words = mask.getWordsPerRow();
+            long[] bits = mask.getBits();
+            int[] row = rows[this.fromBand];
+            int fromRow = this.fromBand * BAND_HEIGHT;
+            int toRow = Math.min(fromRow + BAND_HEIGHT, frame.getHeight());
+
+            // the rows still hold the previous frame, and classifyRow() only sets bits
+            Arrays.fill(bits, fromRow * words, toRow * words, 0);
+            for (int y = fromRow; y < toRow; y++) {
+                frame.readRow(y, 0, w, row);
+                classifier.classifyRow(row, w, bits, y * words, 0);
+            }
+        }
+    }
+
+    /**
+     * Cleans a range of bands into the second mask and adds them to the histograms of the first band in the range,
+     * merging the histograms of both halves when the range is split.
+     */
+    private class CleanTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int fromBand;
+        private final int toBand;
+        private final CleanTask top;
+        private final CleanTask bottom;
+
+        CleanTask(int fromBand, int toBand) {
+            this.fromBand = fromBand;
+            this.toBand = toBand;
+            int middle = (fromBand + toBand) >>> 1;
+            this.top = toBand - fromBand > 1 ? new CleanTask(fromBand, middle) : null;
+            this.bottom = toBand - fromBand > 1 ? new CleanTask(middle, toBand) : null;
+        }
+
+        void reset() {
+            reinitialize();
+            if (this.top != null) {
+                this.top.reset();
+                this.bottom.reset();
+            }
+        }
+
+        @Override
+        protected void compute() {
+            if (this.top != null) {
+                invokeAll(this.top, this.bottom);
+                xHistograms[this.fromBand].addAll(xHistograms[this.bottom.fromBand]);
+                yHistograms[this.fromBand].addAll(yHistograms[this.bottom.fromBand]);
+                return;
+            }
+
+            GreenMask mask = ParallelFrameProcessor.this.mask;
+            AxisHistogram xHistogram = xHistograms[this.fromBand];
+            AxisHistogram yHistogram = yHistograms[this.fromBand];
+            int fromRow = this.fromBand * BAND_HEIGHT;
+            int toRow = Math.min(fromRow + BAND_HEIGHT, mask.getHeight());
+
+            xHistogram.clear();
+            yHistogram.clear();
+            mask.cleanInto(cleaned, fromRow, toRow);
+            cleaned.addTo(xHistogram, yHistogram, fromRow, toRow);
+        }
+    }
+
+    private static class DefaultHolder {
+        private static final ParallelFrameProcessor INSTANCE = new ParallelFrameProcessor(
+                Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,450 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h1>PipelineBenchmark</h1>
+ * PipelineBenchmark runs every stage of the ImageTools pipeline, on its own and end to end, against deterministic
+ * synthetic frames, and reports the time and the bytes allocated per operation.
+ * <p>
+ * Frames are generated by SyntheticFrameSource at 320x240, 640x480, 1920x1080 and 3840x2160, with the target
+ * covering 1%, 10% and 40% of the frame. Each benchmark is warmed up for a fixed time before being measured, and the
+ * result of every operation is consumed so the JIT cannot remove it. Allocation is read from the per-thread
+ * allocation counter of the JVM, so regressions in the hot path show up as a non-zero or growing B/op column.
+ * <p>
+ * The check option instead verifies that a reused ImageTools allocates nothing per frame in the SINGLE_PASS,
+ * PARALLEL, PYRAMID and RUN_LENGTH modes once warmed up, zone coverage queries included, and exits with status 1
+ * if it does. PARALLEL mode is measured across every thread, so that the worker threads of its
+ * ParallelFrameProcessor are counted too.
+ * <p>
+ * Usage: java PipelineBenchmark [stage=name,...] [size=WxH,...] [coverage=0.1,...] [warmup=ms] [time=ms] [check]
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class PipelineBenchmark {
+
+    private static volatile long sink;
+
+    // on Java 9 and later, ForkJoinPool allocates a small node for each wait of a thread outside the pool
+    private static final long POOL_WAIT_BYTES = 64;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final PrintStream report;
+    private final long WARMUP;
+    private final long TIME;
+
+    /**
+     * A single operation being measured.
+     */
+    private interface Operation {
+
+        /**
+         * Runs the operation once.
+         *
+         * @return  a value derived from the result of the operation, so that it cannot be optimised away.
+         */
+        long run();
+    }
+
+    /**
+     * Constructor for the PipelineBenchmark class.
+     *
+     * @param warmupMillis      the time each benchmark is run for before measuring.
+     * @param timeMillis        the time each benchmark is measured for.
+     */
+    public PipelineBenchmark(long warmupMillis, long timeMillis) {
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+        this.report = System.out;
+        this.WARMUP = warmupMillis * 1000000L;
+        this.TIME = timeMillis * 1000000L;
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the calling thread.
+     *
+     * @return  the number of bytes allocated by the calling thread.
+     */
+    public long allocatedBytes() {
+        return this.threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by every live thread, including the worker threads of any
+     * ParallelFrameProcessor.
+     *
+     * @return  the number of bytes allocated by every live thread.
+     */
+    public long allocatedBytesAllThreads() {
+        long total = 0;
+        for (long bytes : this.threads.getThreadAllocatedBytes(this.threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Warms up and then measures an operation, printing its time and allocation per operation.
+     *
+     * @param stage         the name of the stage being measured.
+     * @param frame         a description of the frame, such as its size and coverage.
+     * @param operation     the Operation to measure.
+     */
+    private void measure(String stage, String frame, Operation operation) {
+
+        long result = 0;
+        try {
+            long end = System.nanoTime() + this.WARMUP;
+            do {
+                result += operation.run();
+            } while (System.nanoTime() < end);
+
+            long operations = 0;
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            end = start + this.TIME;
+            long now;
+            do {
+                result += operation.run();
+                operations++;
+                now = System.nanoTime();
+            } while (now < end);
+            long allocated = allocatedBytes() - allocatedBefore;
+            long elapsed = now - start;
+
+            double microsPerOp = elapsed / 1000.0 / operations;
+            double bytesPerOp = (double) allocated / operations;
+            double megabytesPerSecond = allocated / 1048576.0 / (elapsed / 1e9);
+            this.report.println(String.format("%-28s %-20s %12.1f %10.1f %14.0f %10.1f", stage, frame, microsPerOp,
+                    operations * 1e9 / elapsed, bytesPerOp, megabytesPerSecond));
+        } catch (OutOfMemoryError e) {
+            this.report.println(String.format("%-28s %-20s %12s", stage, frame, "out of memory"));
+        }
+        sink += result;
+    }
+
+    /**
+     * Runs every selected stage against every selected frame.
+     *
+     * @param stages        the stages to run, or an empty list for all of them.
+     * @param sizes         the frame sizes to use, as {width, height} pairs.
+     * @param coverages     the target coverages to use, as fractions of the frame.
+     */
+    public void run(List<String> stages, List<int[]> sizes, List<Double> coverages) {
+
+        this.report.println(String.format("%-28s %-20s %12s %10s %14s %10s", "stage", "frame", "us/op", "ops/s",
+                "B/op", "MB/s"));
+
+        GreenClassifier classifier = GreenClassifier.getDefault();
+        ParallelFrameProcessor processor = new ParallelFrameProcessor(Runtime.getRuntime().availableProcessors());
+        PyramidDetector detector = new PyramidDetector();
+
+        for (int[] size : sizes) {
+            for (double coverage : coverages) {
+                int w = size[0];
+                int h = size[1];
+                String label = w + "x" + h + " " + Math.round(coverage * 100) + "%";
+
+                RgbFrame frame = new BufferedImageFrame(SyntheticFrameSource.createFrame(w, h, 40, coverage));
+                ImageTools tools = new ImageTools(frame, ImageTools.Mode.PIXEL_ARRAY, classifier);
+
+                // inputs for the individual stages, built once
+                Pixel[][] allPixels = selected(stages, "getPixelArray", "isGreen", "getTargetPixelsClean")
+                        ? tools.getPixelArray(frame) : null;
+                int[][] intArray = selected(stages, "cleanUpIntArray", "getTargetPixelsClean")
+                        ? tools.getIntArray(frame) : null;
+                int[][] cleanedArray = intArray != null ? ImageTools.cleanUpIntArray(copy(intArray)) : null;
+                int[][] scratchArray = intArray != null ? copy(intArray) : null;
+                PixelBlob blob = allPixels != null ? tools.getTargetPixelsClean(allPixels, cleanedArray) : null;
+                CentreBoundary boundary = tools.getCentreBoundary(frame);
+                GreenMask classified = new GreenMask(w, h);
+                int[] row = new int[w];
+                for (int y = 0; y < h; y++) {
+                    frame.readRow(y, 0, w, row);
+                    classifier.classifyRow(row, w, classified.getBits(), y * classified.getWordsPerRow(), 0);
+                }
+                GreenMask mask = new GreenMask(w, h);
+
+                if (selected(stages, "getPixelArray")) {
+                    measure("getPixelArray", label, () -> tools.getPixelArray(frame).length);
+                }
+                if (selected(stages, "getIntArray")) {
+                    measure("getIntArray", label, () -> tools.getIntArray(frame).length);
+                }
+                if (selected(stages, "isGreen") && allPixels != null) {
+                    measure("isGreen", label, () -> {
+                        long green = 0;
+                        for (Pixel[] column : allPixels) {
+                            for (Pixel pixel : column) {
+                                if (tools.isGreen(pixel)) {
+                                    green++;
+                                }
+                            }
+                        }
+                        return green;
+                    });
+                }
+                if (selected(stages, "cleanUpIntArray") && intArray != null) {
+                    // includes copying the uncleaned array back in, as the cleaner works in place
+                    measure("cleanUpIntArray", label, () -> {
+                        for (int x = 0; x < w; x++) {
+                            System.arraycopy(intArray[x], 0, scratchArray[x], 0, h);
+                        }
+                        return ImageTools.cleanUpIntArray(scratchArray).length;
+                    });
+                }
+                if (selected(stages, "getTargetPixelsClean") && allPixels != null) {
+                    measure("getTargetPixelsClean", label,
+                            () -> tools.getTargetPixelsClean(allPixels, cleanedArray).getCount());
+                }
+                if (selected(stages, "PixelBlob.getSize") && blob != null) {
+                    measure("PixelBlob.getSize", label, blob::getSize);
+                }
+                if (selected(stages, "PixelBlob.getPosition") && blob != null) {
+                    measure("PixelBlob.getPosition", label, () -> blob.getPosition(boundary).length());
+                }
+                if (selected(stages, "classifyRow")) {
+                    measure("classifyRow", label, () -> {
+                        long[] bits = mask.getBits();
+                        int words = mask.getWordsPerRow();
+                        for (int y = 0; y < h; y++) {
+                            frame.readRow(y, 0, w, row);
+                            classifier.classifyRow(row, w, bits, y * words, 0);
+                        }
+                        return bits[0];
+                    });
+                }
+                if (selected(stages, "GreenMask.clean")) {
+                    // includes copying the uncleaned mask back in, as clean() works in place
+                    measure("GreenMask.clean", label, () -> {
+                        System.arraycopy(classified.getBits(), 0, mask.getBits(), 0, mask.getBits().length);
+                        mask.clean();
+                        return mask.getBits()[0];
+                    });
+                }
+                if (selected(stages, "GreenMask.addTo")) {
+                    measure("GreenMask.addTo", label, () -> {
+                        AxisHistogram xHistogram = new AxisHistogram(w);
+                        AxisHistogram yHistogram = new AxisHistogram(h);
+                        classified.addTo(xHistogram, yHistogram, 0, h);
+                        return xHistogram.getTotal();
+                    });
+                }
+
+                for (ImageTools.Mode mode : ImageTools.Mode.values()) {
+                    String stage = "end-to-end " + mode;
+                    if (!selected(stages, stage)) {
+                        continue;
+                    }
+                    measure(stage, label, () -> {
+                        ImageTools perFrame;
+                        if (mode == ImageTools.Mode.PARALLEL) {
+                            perFrame = new ImageTools(frame, classifier, processor);
+                        } else if (mode == ImageTools.Mode.PYRAMID) {
+                            perFrame = new ImageTools(frame, classifier, detector);
+                        } else {
+                            perFrame = new ImageTools(frame, mode, classifier);
+                        }
+                        return perFrame.getPositionOfTarget().length() + perFrame.getSizeOfTarget();
+                    });
+                }
+
+                // the same ImageTools for every frame, as a long-lived stream processor would use it
+                for (ImageTools.Mode mode : new ImageTools.Mode[] {ImageTools.Mode.SINGLE_PASS,
+                        ImageTools.Mode.PARALLEL, ImageTools.Mode.PYRAMID, ImageTools.Mode.RUN_LENGTH}) {
+                    String stage = "reused " + mode;
+                    if (!selected(stages, stage)) {
+                        continue;
+                    }
+                    ImageTools reused = mode == ImageTools.Mode.PARALLEL ? new ImageTools(null, classifier, processor)
+                            : new ImageTools(mode, classifier);
+                    measure(stage, label, () -> {
+                        reused.setFrame(frame);
+                        return reused.getPositionOfTarget().length() + reused.getSizeOfTarget();
+                    });
+                }
+            }
+        }
+
+        processor.shutdown();
+    }
+
+    /**
+     * Checks that a reused ImageTools allocates nothing per frame in the SINGLE_PASS, PARALLEL, PYRAMID and
+     * RUN_LENGTH modes, with and without setLargestBlobOnly() and with zone coverage queries, once it has been warmed
+     * up on frames of the same size. The target, its size and its position are worked out for every frame. PARALLEL
+     * mode runs on the shared default ParallelFrameProcessor and is measured across every thread; the only allocation
+     * allowed is the node which ForkJoinPool allocates on newer JVMs each time the calling thread waits for a frame.
+     *
+     * @param width     the width of the frames.
+     * @param height    the height of the frames.
+     * @param frames    the number of frames to measure over.
+     * @return          true if nothing was allocated in any mode.
+     */
+    public boolean checkSteadyStateAllocation(int width, int height, int frames) {
+
+        GreenClassifier classifier = GreenClassifier.getDefault();
+        RgbFrame[] inputs = new RgbFrame[8];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = new BufferedImageFrame(SyntheticFrameSource.createFrame(width, height, i * 11,
+                    0.01 + 0.05 * i));
+        }
+
+        double[] coverage = new double[SummedAreaTable.ZONES.length];
+        boolean passed = true;
+        for (ImageTools.Mode mode : new ImageTools.Mode[] {ImageTools.Mode.SINGLE_PASS, ImageTools.Mode.PARALLEL,
+                ImageTools.Mode.PYRAMID, ImageTools.Mode.RUN_LENGTH}) {
+            boolean allThreads = mode == ImageTools.Mode.PARALLEL;
+            long allowed = allThreads ? POOL_WAIT_BYTES : 0;
+            for (int variant = 0; variant < 3; variant++) {
+                boolean largestBlobOnly = variant == 1;
+                boolean zones = variant == 2;
+                ImageTools imageTools = new ImageTools(mode, classifier);
+                imageTools.setLargestBlobOnly(largestBlobOnly);
+
+                long result = 0;
+                long end = System.nanoTime() + this.WARMUP;
+                for (int i = 0; System.nanoTime() < end || i < inputs.length; i++) {
+                    result += analyse(imageTools, inputs[i % inputs.length], zones, coverage);
+                }
+
+                // the cost of reading the counter itself
+                long overhead = allThreads ? -allocatedBytesAllThreads() + allocatedBytesAllThreads()
+                        : -allocatedBytes() + allocatedBytes();
+
+                long before = allThreads ? allocatedBytesAllThreads() : allocatedBytes();
+                for (int i = 0; i < frames; i++) {
+                    result += analyse(imageTools, inputs[i % inputs.length], zones, coverage);
+                }
+                long allocated = (allThreads ? allocatedBytesAllThreads() : allocatedBytes()) - before - overhead;
+                sink += result;
+
+                boolean ok = allocated <= allowed * frames;
+                String name = mode + (largestBlobOnly ? " largest blob" : zones ? " zone coverage" : "");
+                this.report.println(String.format("%-28s %dx%d %10.1f B/frame %s", name, width, height,
+                        (double) allocated / frames, ok ? "ok" : "ALLOCATES"));
+                passed &= ok;
+            }
+        }
+        return passed;
+    }
+
+    /**
+     * Analyses a frame as checkSteadyStateAllocation() does, working out the target, its size and its position, and
+     * the coverage of each zone if asked to.
+     *
+     * @param imageTools    the ImageTools to analyse the frame with.
+     * @param frame         the frame to analyse.
+     * @param zones         true to also work out the coverage of each zone.
+     * @param coverage      the array which receives the coverage of each zone.
+     * @return              a value depending on the results, to be consumed by the caller.
+     */
+    private static long analyse(ImageTools imageTools, RgbFrame frame, boolean zones, double[] coverage) {
+        imageTools.setFrame(frame);
+        long result = imageTools.getPositionOfTarget().length() + imageTools.getSizeOfTarget();
+        if (zones) {
+            result += (long) (imageTools.getZoneCoverage(coverage)[4] * 100);
+        }
+        return result;
+    }
+
+    private static boolean selected(List<String> stages, String... names) {
+        if (stages.isEmpty()) {
+            return true;
+        }
+        for (String name : names) {
+            for (String stage : stages) {
+                if (name.equalsIgnoreCase(stage) || name.toLowerCase().startsWith(stage.toLowerCase())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int[][] copy(int[][] array) {
+        int[][] copy = new int[array.length][];
+        for (int i = 0; i < array.length; i++) {
+            copy[i] = array[i].clone();
+        }
+        return copy;
+    }
+
+    public static void main(String[] args) {
+
+        List<String> stages = new ArrayList<>();
+        List<int[]> sizes = new ArrayList<>();
+        List<Double> coverages = new ArrayList<>();
+        long warmup = 500;
+        long time = 1000;
+        boolean check = false;
+
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            String value = parts.length > 1 ? parts[1] : "";
+            switch (parts[0]) {
+                case "stage":
+                    for (String stage : value.split(",")) {
+                        stages.add(stage);
+                    }
+                    break;
+                case "size":
+                    for (String size : value.split(",")) {
+                        String[] dimensions = size.split("x");
+                        sizes.add(new int[] {Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1])});
+                    }
+                    break;
+                case "coverage":
+                    for (String coverage : value.split(",")) {
+                        coverages.add(Double.parseDouble(coverage));
+                    }
+                    break;
+                case "warmup":
+                    warmup = Long.parseLong(value);
+                    break;
+                case "time":
+                    time = Long.parseLong(value);
+                    break;
+                case "check":
+                    check = true;
+                    break;
+                default:
+                    System.err.println("unknown option " + arg);
+                    return;
+            }
+        }
+
+        if (sizes.isEmpty()) {
+            sizes.add(new int[] {320, 240});
+            sizes.add(new int[] {640, 480});
+            sizes.add(new int[] {1920, 1080});
+            sizes.add(new int[] {3840, 2160});
+        }
+        if (coverages.isEmpty()) {
+            coverages.add(0.01);
+            coverages.add(0.1);
+            coverages.add(0.4);
+        }
+
+        if (check) {
+            PipelineBenchmark benchmark = new PipelineBenchmark(warmup, time);
+            boolean passed = true;
+            for (int[] size : sizes) {
+                passed &= benchmark.checkSteadyStateAllocation(size[0], size[1], 200);
+            }
+            if (!passed) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        new PipelineBenchmark(warmup, time).run(stages, sizes, coverages);
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+}
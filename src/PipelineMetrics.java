@@ -0,0 +1,381 @@
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * <h1>PipelineMetrics</h1>
+ * PipelineMetrics objects collect where the time of each frame goes, as a LatencyHistogram of the time spent in each
+ * Stage of the pipeline, along with counts of frames processed and dropped, the fraction of pixels which were green,
+ * and the bytes allocated per frame. ImageTools, CapturePipeline and FollowTest record into the shared instance
+ * returned by getDefault().
+ * <p>
+ * Metrics are off unless the pipeline.metrics system property is true or setEnabled() is called. While they are
+ * off, the instrumented code checks isEnabled() once per frame and takes its usual path, so the cost is a single
+ * volatile read. While they are on, each stage costs a call to System.nanoTime() and an atomic increment, and each
+ * frame a read of the thread's allocation counter.
+ * <p>
+ * The metrics can be watched over JMX after registerMBean(), and written to the PipelineMetrics java.util.logging
+ * Logger every so often by startReporter(). A PipelineMetrics is thread safe.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class PipelineMetrics implements PipelineMetricsMBean {
+
+    /**
+     * The parts of the pipeline which are timed.
+     * <p>
+     * CAPTURE is the wait for the FrameSource to deliver a frame. EXTRACTION is reading the rows of pixels out of the
+     * frame, and CLASSIFICATION deciding which are green; in PARALLEL and PYRAMID modes, and for YuvFrames, the two
+     * are not separated and are both counted as CLASSIFICATION. CLEANING removes stray pixels from the mask, and
+     * BLOB_STATISTICS reduces it to the histograms or largest region of the target. FRAME is the whole analysis of a
+     * frame by ImageTools, and UI_UPDATE the time taken to show a result.
+     */
+    public enum Stage {
+        CAPTURE,
+        EXTRACTION,
+        CLASSIFICATION,
+        CLEANING,
+        BLOB_STATISTICS,
+        FRAME,
+        UI_UPDATE
+    }
+
+    private static final Logger LOGGER = Logger.getLogger("PipelineMetrics");
+
+    private final LatencyHistogram[] stages;
+    private final LongAdder framesProcessed;
+    private final LongAdder framesDropped;
+    private final LongAdder greenPixels;
+    private final LongAdder totalPixels;
+    private final LongAdder allocatedBytes;
+    private final LongAdder allocationSamples;
+    private final com.sun.management.ThreadMXBean threads;
+
+    private volatile boolean enabled;
+    private ScheduledExecutorService reporter;
+
+    /**
+     * Constructor for the PipelineMetrics class. Metrics start off disabled.
+     */
+    public PipelineMetrics() {
+        this.stages = new LatencyHistogram[Stage.values().length];
+        for (int i = 0; i < this.stages.length; i++) {
+            this.stages[i] = new LatencyHistogram();
+        }
+        this.framesProcessed = new LongAdder();
+        this.framesDropped = new LongAdder();
+        this.greenPixels = new LongAdder();
+        this.totalPixels = new LongAdder();
+        this.allocatedBytes = new LongAdder();
+        this.allocationSamples = new LongAdder();
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+            this.threads = (com.sun.management.ThreadMXBean) threadBean;
+        } else {
+            this.threads = null;
+        }
+    }
+
+    /**
+     * Returns the instance shared by the whole pipeline. It is enabled at first if the pipeline.metrics system
+     * property is true.
+     *
+     * @return  the shared PipelineMetrics.
+     */
+    public static PipelineMetrics getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Lazily creates the shared instance the first time it is requested.
+     */
+    private static class DefaultHolder {
+        private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+        static {
+            INSTANCE.setEnabled(Boolean.getBoolean("pipeline.metrics"));
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records the time since a stage started, and returns the current time so that it can start the next stage.
+     * Callers should only record while isEnabled() is true.
+     *
+     * @param stage     the Stage which has finished.
+     * @param start     the value of System.nanoTime() when the stage started.
+     * @return          the value of System.nanoTime() now.
+     */
+    public long record(Stage stage, long start) {
+        long now = System.nanoTime();
+        this.stages[stage.ordinal()].record(now - start);
+        return now;
+    }
+
+    /**
+     * Records how long a stage took.
+     *
+     * @param stage     the Stage which was timed.
+     * @param nanos     the time it took in nanoseconds.
+     */
+    public void recordLatency(Stage stage, long nanos) {
+        if (this.enabled) {
+            this.stages[stage.ordinal()].record(nanos);
+        }
+    }
+
+    /**
+     * Records an analysed frame.
+     *
+     * @param targetPixels      the number of pixels in the target of the frame.
+     * @param framePixels       the number of pixels in the frame.
+     * @param allocated         the bytes allocated by the thread while analysing it, or -1 if unknown.
+     */
+    public void recordFrame(int targetPixels, long framePixels, long allocated) {
+        if (!this.enabled) {
+            return;
+        }
+        this.framesProcessed.increment();
+        this.greenPixels.add(targetPixels);
+        this.totalPixels.add(framePixels);
+        if (allocated >= 0) {
+            this.allocatedBytes.add(allocated);
+            this.allocationSamples.increment();
+        }
+    }
+
+    /**
+     * Records a frame which was captured but dropped before it could be analysed.
+     */
+    public void recordDroppedFrame() {
+        if (this.enabled) {
+            this.framesDropped.increment();
+        }
+    }
+
+    /**
+     * Returns the number of bytes the calling thread has allocated so far, so that the allocation of a frame can be
+     * found from two readings.
+     *
+     * @return  the bytes allocated by the current thread, or -1 if the JVM does not count them.
+     */
+    public long threadAllocatedBytes() {
+        return this.threads == null ? -1 : this.threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the histogram of the time taken by a stage.
+     *
+     * @param stage     the Stage to return.
+     * @return          the LatencyHistogram of the stage, in nanoseconds.
+     */
+    public LatencyHistogram getHistogram(Stage stage) {
+        return this.stages[stage.ordinal()];
+    }
+
+    @Override
+    public long getFramesProcessed() {
+        return this.framesProcessed.sum();
+    }
+
+    @Override
+    public long getFramesDropped() {
+        return this.framesDropped.sum();
+    }
+
+    @Override
+    public double getGreenPixelRatio() {
+        long pixels = this.totalPixels.sum();
+        return pixels == 0 ? 0 : (double) this.greenPixels.sum() / pixels;
+    }
+
+    @Override
+    public double getAllocatedBytesPerFrame() {
+        long samples = this.allocationSamples.sum();
+        return samples == 0 ? 0 : (double) this.allocatedBytes.sum() / samples;
+    }
+
+    @Override
+    public String[] getStageNames() {
+        Stage[] values = Stage.values();
+        String[] names = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            names[i] = values[i].name();
+        }
+        return names;
+    }
+
+    @Override
+    public long[] getStageCounts() {
+        long[] counts = new long[this.stages.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.stages[i].getCount();
+        }
+        return counts;
+    }
+
+    @Override
+    public double[] getStageMeanMicros() {
+        double[] means = new double[this.stages.length];
+        for (int i = 0; i < means.length; i++) {
+            means[i] = this.stages[i].getMean() / 1000;
+        }
+        return means;
+    }
+
+    @Override
+    public double[] getStageP50Micros() {
+        return percentileMicros(50);
+    }
+
+    @Override
+    public double[] getStageP99Micros() {
+        return percentileMicros(99);
+    }
+
+    @Override
+    public double[] getStageMaxMicros() {
+        double[] maxima = new double[this.stages.length];
+        for (int i = 0; i < maxima.length; i++) {
+            maxima[i] = this.stages[i].getMax() / 1000.0;
+        }
+        return maxima;
+    }
+
+    private double[] percentileMicros(double percentile) {
+        double[] values = new double[this.stages.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = this.stages[i].getValueAtPercentile(percentile) / 1000.0;
+        }
+        return values;
+    }
+
+    @Override
+    public String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("frames processed %d, dropped %d, green pixels %.2f%%, allocated %.0f B/frame%n",
+                getFramesProcessed(), getFramesDropped(), 100 * getGreenPixelRatio(), getAllocatedBytesPerFrame()));
+        report.append(String.format("%-16s %8s %10s %10s %10s %10s", "stage", "count", "mean us", "p50 us",
+                "p99 us", "max us"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = this.stages[stage.ordinal()];
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            report.append(String.format("%n%-16s %8d %10.1f %10.1f %10.1f %10.1f", stage, histogram.getCount(),
+                    histogram.getMean() / 1000, histogram.getValueAtPercentile(50) / 1000.0,
+                    histogram.getValueAtPercentile(99) / 1000.0, histogram.getMax() / 1000.0));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : this.stages) {
+            histogram.reset();
+        }
+        this.framesProcessed.reset();
+        this.framesDropped.reset();
+        this.greenPixels.reset();
+        this.totalPixels.reset();
+        this.allocatedBytes.reset();
+        this.allocationSamples.reset();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as ImageRecognition:type=PipelineMetrics. Registering
+     * twice has no further effect.
+     *
+     * @throws JMException  if the MBean cannot be registered.
+     */
+    public void registerMBean() throws JMException {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName("ImageRecognition:type=PipelineMetrics"));
+        } catch (InstanceAlreadyExistsException e) {
+            // already registered
+        }
+    }
+
+    /**
+     * Logs report() at INFO level to the PipelineMetrics Logger at a fixed rate on a daemon thread, replacing any
+     * reporter already running.
+     *
+     * @param period    the time between reports.
+     * @param unit      the unit of the period argument.
+     */
+    public synchronized void startReporter(long period, TimeUnit unit) {
+        stopReporter();
+        this.reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reporter.scheduleAtFixedRate(() -> LOGGER.info(report()), period, period, unit);
+    }
+
+    /**
+     * Stops the reporter started by startReporter(), if any.
+     */
+    public synchronized void stopReporter() {
+        if (this.reporter != null) {
+            this.reporter.shutdownNow();
+            this.reporter = null;
+        }
+    }
+
+    /**
+     * Analyses synthetic frames with metrics disabled and then enabled, and prints the time per frame of each along
+     * with the report.
+     * <p>
+     * Usage: java PipelineMetrics [width] [height] [frames]
+     */
+    public static void main(String[] args) {
+
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 640;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 480;
+        int frames = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+
+        RgbFrame[] testFrames = new RgbFrame[50];
+        for (int i = 0; i < testFrames.length; i++) {
+            testFrames[i] = new BufferedImageFrame(SyntheticFrameSource.createFrame(width, height, i));
+        }
+
+        PipelineMetrics metrics = getDefault();
+        ImageTools tools = new ImageTools(ImageTools.Mode.SINGLE_PASS, GreenClassifier.getDefault());
+        double[] nanosPerFrame = new double[2];
+        for (int pass = 0; pass < 6; pass++) {
+            boolean enabled = pass % 2 == 1;
+            metrics.setEnabled(enabled);
+            metrics.reset();
+            long start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                tools.setFrame(testFrames[i % testFrames.length]);
+                tools.getPositionOfTarget();
+            }
+            nanosPerFrame[enabled ? 1 : 0] = (System.nanoTime() - start) / (double) frames;
+        }
+        System.out.println(String.format("%dx%d: disabled %.1f us/frame, enabled %.1f us/frame", width, height,
+                nanosPerFrame[0] / 1000, nanosPerFrame[1] / 1000));
+        System.out.println(metrics.report());
+    }
+}
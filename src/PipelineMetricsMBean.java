@@ -0,0 +1,106 @@
+/**
+ * <h1>PipelineMetricsMBean</h1>
+ * PipelineMetricsMBean is the JMX management interface of PipelineMetrics, so that the metrics of a running pipeline
+ * can be watched from JConsole or VisualVM. The stage arrays are all in the order of getStageNames().
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public interface PipelineMetricsMBean {
+
+    /**
+     * Returns whether metrics are being recorded.
+     *
+     * @return  true if metrics are being recorded.
+     */
+    boolean isEnabled();
+
+    /**
+     * Starts or stops recording metrics.
+     *
+     * @param enabled   true to record metrics, false to make every recording call a no-op.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns the number of frames analysed.
+     *
+     * @return  the number of frames analysed.
+     */
+    long getFramesProcessed();
+
+    /**
+     * Returns the number of captured frames dropped before they were analysed.
+     *
+     * @return  the number of frames dropped.
+     */
+    long getFramesDropped();
+
+    /**
+     * Returns the fraction of all analysed pixels which were part of the target.
+     *
+     * @return  the green pixel ratio from 0 to 1.
+     */
+    double getGreenPixelRatio();
+
+    /**
+     * Returns the mean number of bytes allocated by the analysing thread per frame.
+     *
+     * @return  the mean allocation per frame in bytes.
+     */
+    double getAllocatedBytesPerFrame();
+
+    /**
+     * Returns the names of the stages which are timed.
+     *
+     * @return  the stage names.
+     */
+    String[] getStageNames();
+
+    /**
+     * Returns the number of times each stage has been timed.
+     *
+     * @return  the count of each stage.
+     */
+    long[] getStageCounts();
+
+    /**
+     * Returns the mean latency of each stage.
+     *
+     * @return  the mean of each stage in microseconds.
+     */
+    double[] getStageMeanMicros();
+
+    /**
+     * Returns the median latency of each stage.
+     *
+     * @return  the 50th percentile of each stage in microseconds.
+     */
+    double[] getStageP50Micros();
+
+    /**
+     * Returns the 99th percentile latency of each stage.
+     *
+     * @return  the 99th percentile of each stage in microseconds.
+     */
+    double[] getStageP99Micros();
+
+    /**
+     * Returns the largest latency of each stage.
+     *
+     * @return  the maximum of each stage in microseconds.
+     */
+    double[] getStageMaxMicros();
+
+    /**
+     * Returns a multi-line summary of every metric.
+     *
+     * @return  the summary as a String.
+     */
+    String report();
+
+    /**
+     * Forgets every metric recorded so far.
+     */
+    void reset();
+}
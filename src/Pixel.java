@@ -106,33 +106,7 @@ public class Pixel {
      */
     public String getPosition(CentreBoundary b) {
 
-        int x = this.X_POS;
-        int y = this.Y_POS;
-
-        String position;
-
-        if (y <= b.getTop() && x <= b.getLeft()) {
-            position = "above-left";
-        } else if (y <= b.getTop() && x <= b.getRight() && x >= b.getLeft()) {
-            position = "above";
-        } else if (y <= b.getTop() && x >= b.getRight()) {
-            position = "above-right";
-        } else if (y <= b.getBottom() && y >= b.getTop() && x <= b.getRight() && x >= b.getLeft()) {
-            position = "centre";
-        } else if (y <= b.getBottom() && y >= b.getTop() && x <= b.getLeft()) {
-            position = "left";
-        } else if (y <= b.getBottom() && y >= b.getTop() && x >= b.getLeft()) {
-            position = "right";
-        } else if (y >= b.getBottom() && x <= b.getLeft()) {
-            position = "below-left";
-        } else if (y >= b.getBottom() && x <= b.getRight() && x >= b.getLeft()) {
-            position = "below";
-        } else if (y >= b.getBottom() && x >= b.getRight()) {
-            position = "below-right";
-        } else {
-            position = "error";
-        }
-        return position;
+        return b.getPosition(this.X_POS, this.Y_POS);
     }
 
 }
\ No newline at end of file
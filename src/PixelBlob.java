@@ -1,10 +1,13 @@
 import java.util.ArrayList;
-import java.util.Collections;
 
 /**
  * <h1>PixelBlob</h1>
- * PixelBlob objects contain an array of Pixel objects which satisfy the conditions for the target area; i.e. the
- * pixels have been determined to be green.
+ * PixelBlob objects contain the pixels which satisfy the conditions for the target area; i.e. the pixels have been
+ * determined to be green.
+ * <p>
+ * Rather than sorting every coordinate whenever a statistic is needed, a PixelBlob keeps a running AxisHistogram of
+ * the x and y coordinates of its pixels. The median, the trimmed bounds used by getSize(), the bounding box and the
+ * centroid are all read from the histograms in O(width+height) time or better.
  *
  * @author disposedtrolley
  * @since 25/06/2015
@@ -12,75 +15,138 @@ import java.util.Collections;
 public class PixelBlob {
 
     private ArrayList<Pixel> pixelArray;
-    private ArrayList<Integer> xArray;
-    private ArrayList<Integer> yArray;
+    private AxisHistogram xHistogram;
+    private AxisHistogram yHistogram;
+    private String distance;
 
     /**
-     * Constructor for the PixelBlob class. Initialises instance variables only.
+     * Constructor for the PixelBlob class. Initialises instance variables only. The histograms grow as pixels are
+     * added.
      */
     public PixelBlob() {
-        pixelArray = new ArrayList<>();
-        xArray = new ArrayList<>();
-        yArray = new ArrayList<>();
+        this(0, 0);
     }
 
     /**
-     * Adds a new Pixel object to the Pixel array.
+     * Constructor for the PixelBlob class. Initialises the histograms to the dimensions of the frame.
+     *
+     * @param width     the width of the frame the pixels come from.
+     * @param height    the height of the frame the pixels come from.
+     */
+    public PixelBlob(int width, int height) {
+        this(new AxisHistogram(width), new AxisHistogram(height));
+    }
+
+    /**
+     * Constructor for the PixelBlob class. Wraps a pair of histograms which have already been filled, such as those
+     * produced by the single pass pipeline of ImageTools. Both histograms must describe the same pixels.
+     *
+     * @param xHistogram    an AxisHistogram of the x coordinates of the pixels.
+     * @param yHistogram    an AxisHistogram of the y coordinates of the pixels.
+     */
+    public PixelBlob(AxisHistogram xHistogram, AxisHistogram yHistogram) {
+        this.pixelArray = new ArrayList<>();
+        this.xHistogram = xHistogram;
+        this.yHistogram = yHistogram;
+    }
+
+    /**
+     * Adds a new Pixel object to the Pixel array and records its coordinates.
      *
      * @param newPixel  a Pixel object which satisfies colour tolerances (is green).
      */
     public void addPixel(Pixel newPixel) {
         this.pixelArray.add(newPixel);
+        addPixel(newPixel.getX(), newPixel.getY());
+    }
+
+    /**
+     * Records the coordinates of a green pixel without keeping a Pixel object for it.
+     *
+     * @param x     x position of the pixel within the image.
+     * @param y     y position of the pixel within the image.
+     */
+    public void addPixel(int x, int y) {
+        this.xHistogram.add(x);
+        this.yHistogram.add(y);
+    }
+
+    /**
+     * Records a horizontal run of green pixels without keeping Pixel objects for them.
+     *
+     * @param y         the row of the run.
+     * @param startX    the column of the first pixel in the run (inclusive).
+     * @param endX      the column of the last pixel in the run (inclusive).
+     */
+    public void addRun(int y, int startX, int endX) {
+        this.xHistogram.addRange(startX, endX);
+        this.yHistogram.add(y, endX - startX + 1);
+    }
+
+    /**
+     * Adds every pixel recorded in another PixelBlob to this one.
+     *
+     * @param other     the PixelBlob to merge into this one.
+     */
+    public void addAll(PixelBlob other) {
+        this.pixelArray.addAll(other.pixelArray);
+        this.xHistogram.addAll(other.xHistogram);
+        this.yHistogram.addAll(other.yHistogram);
+    }
+
+    /**
+     * Removes every pixel from the PixelBlob and forgets its distance, keeping its histograms so that it can be
+     * reused for the next frame without allocating.
+     */
+    public void clear() {
+        this.pixelArray.clear();
+        this.xHistogram.clear();
+        this.yHistogram.clear();
+        this.distance = null;
     }
 
     /**
-     * Returns a String value indicating z axis movement of the target area.
+     * Returns a String value indicating z axis movement of the target area. A single frame says nothing about
+     * movement, so the value is set by the DistanceTracker following the stream the PixelBlob came from.
      *
-     * @return  currently null as the method has not been implemented, possible values are:
+     * @return  null if the PixelBlob has not been passed to a DistanceTracker or the movement is not yet known,
+     *          otherwise one of:
      *              same
      *              closer
      *              farther
-     *          from the current position (at time-1).
+     *          compared to the previous frames.
      */
     public String getDistance() {
-        return null;
+        return this.distance;
+    }
+
+    /**
+     * Sets the z axis movement of the target area, as decided by a DistanceTracker.
+     *
+     * @param distance  one of same, closer, or farther, or null if it is not known.
+     */
+    public void setDistance(String distance) {
+        this.distance = distance;
     }
 
     /**
      * Returns the approximate size of the target area by getting the values of the corner points and multiplying
      * the calculated length and width.
      * <p>
-     * Two arrays are used to hold the x and y coordinates of each pixel respectively.
-     * Both arrays are sorted, and the minimum+10 and maximum-1 values are taken from xArray (to produce the width),
-     * and yArray (to produce the length). This was done as it was found that the value of the element at index 0 is
-     * often incorrect.
+     * The x and y histograms each stand in for a sorted array of coordinates, and the minimum+10 and maximum-1
+     * values are taken from the x histogram (to produce the width), and the y histogram (to produce the length).
+     * This was done as it was found that the value of the element at index 0 is often incorrect.
      *
      * @return  the approximate size of the target area.
      */
     public int getSize() {
-        ArrayList<Integer> xValues = new ArrayList<>();
-        ArrayList<Integer> yValues = new ArrayList<>();
-        for (Pixel pixel : this.pixelArray) {
-            xValues.add(pixel.getX());
-            yValues.add(pixel.getY());
-        }
-        Collections.sort(xValues);
-        Collections.sort(yValues);
 
         int width;
         int length;
 
-        if (xValues.size() > 10 && yValues.size() > 10) {
-            width = xValues.get(xValues.size()-1) - xValues.get(10);
-            length = yValues.get(yValues.size()-1) - yValues.get(10);
-
-            /*
-            System.out.println("xValues 10: " + xValues.get(10));
-            System.out.println("xValues max: " + xValues.get(xValues.size()-1));
-
-            System.out.println("yValues 10: " + yValues.get(10));
-            System.out.println("yValues max: " + yValues.get(yValues.size()-1));
-            */
+        if (this.xHistogram.getTotal() > 10 && this.yHistogram.getTotal() > 10) {
+            width = this.xHistogram.getMax() - this.xHistogram.getSorted(10);
+            length = this.yHistogram.getMax() - this.yHistogram.getSorted(10);
         } else {
             width = 0;
             length = 0;
@@ -110,39 +176,16 @@ public class PixelBlob {
 
         String position;
 
-        if (this.pixelArray.size() > 0) {
+        if (getCount() > 0) {
             int x = calculateMedianX();
             int y = calculateMedianY();
 
-            System.out.println("med x: " + x);
-            System.out.println("med y: " + y);
-
             // get position of each pixel and calculate the average position
             // hmm should we get the mean or the median??? median would be less susceptible to erroneous pixels being added
 
 
 
-            if (y <= b.getTop() && x <= b.getLeft()) {
-                position = "above-left";
-            } else if (y <= b.getTop() && x <= b.getRight() && x >= b.getLeft()) {
-                position = "above";
-            } else if (y <= b.getTop() && x >= b.getRight()) {
-                position = "above-right";
-            } else if (y <= b.getBottom() && y >= b.getTop() && x <= b.getRight() && x >= b.getLeft()) {
-                position = "centre";
-            } else if (y <= b.getBottom() && y >= b.getTop() && x <= b.getLeft()) {
-                position = "left";
-            } else if (y <= b.getBottom() && y >= b.getTop() && x >= b.getLeft()) {
-                position = "right";
-            } else if (y >= b.getBottom() && x <= b.getLeft()) {
-                position = "below-left";
-            } else if (y >= b.getBottom() && x <= b.getRight() && x >= b.getLeft()) {
-                position = "below";
-            } else if (y >= b.getBottom() && x >= b.getRight()) {
-                position = "below-right";
-            } else {
-                position = "error";
-            }
+            position = b.getPosition(x, y);
 
         } else {
             position = "error";
@@ -158,11 +201,7 @@ public class PixelBlob {
      * @return  the median value of all of the x values.
      */
     private int calculateMedianX() {
-        for (Pixel pixel : this.pixelArray) {
-            this.xArray.add(pixel.getX());
-        }
-        Collections.sort(this.xArray);
-        return this.xArray.get(this.xArray.size()/2);
+        return this.xHistogram.getMedian();
     }
 
     /**
@@ -172,15 +211,75 @@ public class PixelBlob {
      * @return  the median value of all of the y values.
      */
     private int calculateMedianY() {
-        for (Pixel pixel : this.pixelArray) {
-            this.yArray.add(pixel.getY());
-        }
-        Collections.sort(this.yArray);
-        return this.yArray.get(this.yArray.size()/2);
+        return this.yHistogram.getMedian();
+    }
+
+    /**
+     * Returns the number of green pixels in the PixelBlob.
+     *
+     * @return  the number of green pixels.
+     */
+    public int getCount() {
+        return this.xHistogram.getTotal();
+    }
+
+    /**
+     * Returns the smallest x value of the pixels in the PixelBlob.
+     *
+     * @return  the left edge of the bounding box, or -1 if the PixelBlob is empty.
+     */
+    public int getMinX() {
+        return this.xHistogram.getMin();
+    }
+
+    /**
+     * Returns the largest x value of the pixels in the PixelBlob.
+     *
+     * @return  the right edge of the bounding box, or -1 if the PixelBlob is empty.
+     */
+    public int getMaxX() {
+        return this.xHistogram.getMax();
+    }
+
+    /**
+     * Returns the smallest y value of the pixels in the PixelBlob.
+     *
+     * @return  the top edge of the bounding box, or -1 if the PixelBlob is empty.
+     */
+    public int getMinY() {
+        return this.yHistogram.getMin();
+    }
+
+    /**
+     * Returns the largest y value of the pixels in the PixelBlob.
+     *
+     * @return  the bottom edge of the bounding box, or -1 if the PixelBlob is empty.
+     */
+    public int getMaxY() {
+        return this.yHistogram.getMax();
+    }
+
+    /**
+     * Returns the mean x value of the pixels in the PixelBlob.
+     *
+     * @return  the x value of the centroid, or -1 if the PixelBlob is empty.
+     */
+    public double getCentroidX() {
+        return this.xHistogram.getMean();
+    }
+
+    /**
+     * Returns the mean y value of the pixels in the PixelBlob.
+     *
+     * @return  the y value of the centroid, or -1 if the PixelBlob is empty.
+     */
+    public double getCentroidY() {
+        return this.yHistogram.getMean();
     }
 
     /**
-     * Returns the Pixels in the PixelBlob as an array.
+     * Returns the Pixel objects added to the PixelBlob with addPixel(Pixel) as an array. Pixels recorded by
+     * coordinates only are not included.
      *
      * @return  an ArrayList of Pixels which were all determined to be green.
      */
@@ -0,0 +1,334 @@
+/**
+ * <h1>PresenceDetector</h1>
+ * PresenceDetector objects decide whether a frame holds a green target, and roughly where, by sampling a sparse
+ * grid of the frame instead of classifying every pixel. It is meant for callers which only need to know whether
+ * there is anything to track, and for ImageTools, which can use it to skip the full pipeline on empty frames.
+ * <p>
+ * One pixel is sampled in every step x step block of the frame, at the centre of the block as in PyramidDetector.
+ * A sample is green only if it and the two pixels to its right pass GreenClassifier.isGreen(), so that the single
+ * stray pixels the cleaner would remove are not taken for a target. The rows of the grid are visited in bit-reversed
+ * order: the first row scanned is the top one, the second is halfway down, the next two are at a quarter and three
+ * quarters, and so on, so that the rows read at the end of each of these passes are always evenly spread over the
+ * whole frame.
+ * <p>
+ * The scan stops at the end of the first pass which settles the answer:
+ * <ul>
+ *     <li>the target is present once at least minHits samples have been green, and its position is then taken from
+ *     the median of the green samples, just as PixelBlob.getPosition() takes it from the median of every green
+ *     pixel;</li>
+ *     <li>the target is absent once no sample has been green and enough have been taken that a target covering
+ *     minCoverage of the frame would have been sampled with the required confidence.</li>
+ * </ul>
+ * If neither happens before the grid runs out, the target is present if any sample was green, with a confidence
+ * below 1.
+ * <p>
+ * The buffers are kept between frames of the same size, so a PresenceDetector should be reused. It is not thread
+ * safe.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class PresenceDetector {
+
+    /**
+     * The number of rows which need green samples before the target is taken to be present, so that the median row
+     * is not decided by the first row to cross a large target.
+     */
+    private static final int MIN_HIT_ROWS = 4;
+
+    private final GreenClassifier classifier;
+    private final int STEP;
+    private final int MIN_HITS;
+    private final double MIN_COVERAGE;
+    private final double REQUIRED_CONFIDENCE;
+
+    private int[] row;
+    private int[] rowOrder;
+    private int orderRows;
+    private AxisHistogram xHistogram;
+    private AxisHistogram yHistogram;
+
+    private long pixelsRead;
+    private long pixelsSampled;
+    private long pixelsInFrames;
+
+    /**
+     * Constructor for the PresenceDetector class. Uses the default GreenClassifier, a step of 8 pixels, 8 green
+     * samples for a target, and a confidence of 0.99 that no target covering 0.2% of the frame was missed.
+     */
+    public PresenceDetector() {
+        this(GreenClassifier.getDefault());
+    }
+
+    /**
+     * Constructor for the PresenceDetector class. Uses the given GreenClassifier with the default settings.
+     *
+     * @param classifier    the GreenClassifier which decides which pixels are green.
+     */
+    public PresenceDetector(GreenClassifier classifier) {
+        this(classifier, 8, 8, 0.002, 0.99);
+    }
+
+    /**
+     * Constructor for the PresenceDetector class.
+     *
+     * @param classifier            the GreenClassifier which decides which pixels are green.
+     * @param step                  the distance between samples in pixels, both across and down. Must be at
+     *                              least 1.
+     * @param minHits               the number of green samples needed to stop the scan with the target present.
+     *                              More samples give a steadier position. Must be at least 1.
+     * @param minCoverage           the smallest fraction of the frame a target is expected to cover, from 0 to 1.
+     * @param requiredConfidence    the confidence needed to stop the scan with the target absent, from 0 to 1.
+     */
+    public PresenceDetector(GreenClassifier classifier, int step, int minHits, double minCoverage,
+                            double requiredConfidence) {
+
+        if (step < 1 || minHits < 1) {
+            throw new IllegalArgumentException("step and minHits must be at least 1: " + step + ", " + minHits);
+        }
+        if (minCoverage <= 0 || minCoverage > 1 || requiredConfidence < 0 || requiredConfidence >= 1) {
+            throw new IllegalArgumentException("minCoverage must be in (0, 1] and requiredConfidence in [0, 1): "
+                    + minCoverage + ", " + requiredConfidence);
+        }
+
+        this.classifier = classifier;
+        this.STEP = step;
+        this.MIN_HITS = minHits;
+        this.MIN_COVERAGE = minCoverage;
+        this.REQUIRED_CONFIDENCE = requiredConfidence;
+        this.row = new int[0];
+        this.rowOrder = new int[0];
+        this.orderRows = -1;
+        this.xHistogram = new AxisHistogram(0);
+        this.yHistogram = new AxisHistogram(0);
+    }
+
+    /**
+     * Scans the frame until the presence of the target is settled.
+     *
+     * @param frame     the frame to scan as an RgbFrame.
+     * @param b         the CentreBoundary of the frame, used to work out the position of the target.
+     * @return          the outcome of the scan as a PresenceResult.
+     */
+    public PresenceResult detect(RgbFrame frame, CentreBoundary b) {
+
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        prepare(w, h);
+        this.pixelsInFrames += (long) w * h;
+
+        int rows = (h + this.STEP - 1) / this.STEP;
+        int columns = (w + this.STEP - 1) / this.STEP;
+        int[] order = this.rowOrder;
+        int[] pixels = this.row;
+        int hits = 0;
+        int hitRows = 0;
+        int samples = 0;
+        int scanned = 0;
+        boolean settled = false;
+
+        for (int i = 0; i < order.length && !settled; i++) {
+            int y = sample(order[i], h);
+            frame.readRow(y, 0, w, pixels);
+            int rowHits = hits;
+            for (int cx = 0; cx < columns; cx++) {
+                int x = sample(cx, w);
+                int last = Math.min(x + 2, w - 1);
+                boolean green = true;
+                for (int j = x; j <= last && green; j++) {
+                    green = this.classifier.isGreen(pixels[j]);
+                }
+                if (green) {
+                    this.xHistogram.add(x);
+                    this.yHistogram.add(y);
+                    hits++;
+                }
+            }
+            if (hits > rowHits) {
+                hitRows++;
+            }
+            samples += columns;
+            scanned++;
+
+            // only stop at the end of a pass, when the rows read are evenly spread
+            if (isEndOfPass(i, rows)) {
+                settled = (hits >= this.MIN_HITS && hitRows >= MIN_HIT_ROWS)
+                        || (hits == 0 && absentConfidence(samples) >= this.REQUIRED_CONFIDENCE);
+            }
+        }
+
+        this.pixelsRead += (long) scanned * w;
+        this.pixelsSampled += samples;
+
+        if (hits == 0) {
+            return new PresenceResult(false, absentConfidence(samples), "error", 0, samples, scanned);
+        }
+        String position = b.getPosition(this.xHistogram.getMedian(), this.yHistogram.getMedian());
+        return new PresenceResult(true, Math.min(1.0, (double) hits / this.MIN_HITS), position, hits, samples,
+                scanned);
+    }
+
+    /**
+     * Returns the chance that a target covering minCoverage of the frame would have been hit by at least one of the
+     * given number of samples, if each sample falls on the target with a probability equal to its coverage.
+     *
+     * @param samples   the number of samples taken.
+     * @return          the confidence that no such target is in the frame, from 0 to 1.
+     */
+    private double absentConfidence(int samples) {
+        return 1 - Math.pow(1 - this.MIN_COVERAGE, samples);
+    }
+
+    /**
+     * Returns whether the row at the given index of the order is the last of a pass, which is when the number of
+     * rows read is a power of two or every row has been read.
+     *
+     * @param index     the index in the row order of the row just read.
+     * @param rows      the number of rows in the grid.
+     * @return          true if the rows read so far are evenly spread over the frame.
+     */
+    private static boolean isEndOfPass(int index, int rows) {
+        int read = index + 1;
+        return (read & index) == 0 || read == rows;
+    }
+
+    /**
+     * Clears the histograms, which grow to fit the frame, and creates the row buffer and the row order when the
+     * frame size changes.
+     *
+     * @param w     the width of the frame.
+     * @param h     the height of the frame.
+     */
+    private void prepare(int w, int h) {
+
+        if (this.row.length < w) {
+            this.row = new int[w];
+        }
+        this.xHistogram.clear();
+        this.yHistogram.clear();
+
+        int rows = (h + this.STEP - 1) / this.STEP;
+        if (rows == this.orderRows) {
+            return;
+        }
+
+        // the grid rows in bit-reversed order of their index, skipping those past the last row
+        int bits = 0;
+        while ((1 << bits) < rows) {
+            bits++;
+        }
+        this.rowOrder = new int[rows];
+        int next = 0;
+        for (int i = 0; i < (1 << bits); i++) {
+            int reversed = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            if (reversed < rows) {
+                this.rowOrder[next++] = reversed;
+            }
+        }
+        this.orderRows = rows;
+    }
+
+    /**
+     * Returns the coordinate of the pixel sampled for a cell of the grid, which is the centre of its block, or the
+     * last pixel of the frame for a partial block at the edge.
+     *
+     * @param cell      the coordinate of the cell.
+     * @param limit     the width or height of the frame.
+     * @return          the coordinate of the sampled pixel.
+     */
+    private int sample(int cell, int limit) {
+        return Math.min(limit - 1, cell * this.STEP + this.STEP / 2);
+    }
+
+    /**
+     * Returns the fraction of all pixels in the frames seen which were read from the frame.
+     *
+     * @return  the fraction of pixels read, from 0 to 1.
+     */
+    public double getReadFraction() {
+        return this.pixelsInFrames == 0 ? 0 : (double) this.pixelsRead / this.pixelsInFrames;
+    }
+
+    /**
+     * Returns the fraction of all pixels in the frames seen which were sampled.
+     *
+     * @return  the fraction of pixels sampled, from 0 to 1.
+     */
+    public double getSampledFraction() {
+        return this.pixelsInFrames == 0 ? 0 : (double) this.pixelsSampled / this.pixelsInFrames;
+    }
+
+    /**
+     * Compares the PresenceDetector with the full SINGLE_PASS pipeline of ImageTools on synthetic frames of several
+     * sizes, with and without a target. Prints how often presence and position agree, the mean confidence, the
+     * fraction of the frame read, and the time taken by each. On frames without a target the full pipeline still
+     * keeps the stray pixels on the edges of the frame, which the cleaner never touches, so presence is not expected
+     * to agree there.
+     * <p>
+     * Usage: java PresenceDetector [frames]
+     */
+    public static void main(String[] args) {
+
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        int[][] sizes = {{640, 480}, {1920, 1080}};
+        double[] coverages = {0, 0.01, 0.1, 0.4};
+        GreenClassifier classifier = GreenClassifier.getDefault();
+
+        System.out.println(String.format("%-12s %-10s %9s %9s %11s %8s %10s %11s", "frame", "coverage", "presence",
+                "position", "confidence", "read", "full ms", "presence ms"));
+
+        for (int[] size : sizes) {
+            for (double coverage : coverages) {
+                RgbFrame[] testFrames = new RgbFrame[frames];
+                for (int i = 0; i < frames; i++) {
+                    testFrames[i] = new BufferedImageFrame(SyntheticFrameSource.createFrame(size[0], size[1], i * 7,
+                            coverage));
+                }
+
+                ImageTools tools = new ImageTools(ImageTools.Mode.SINGLE_PASS, classifier);
+                boolean[] fullPresent = new boolean[frames];
+                String[] fullPositions = new String[frames];
+                long fullTime = 0;
+                for (int pass = 0; pass < 2; pass++) {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < frames; i++) {
+                        tools.setFrame(testFrames[i]);
+                        fullPositions[i] = tools.getPositionOfTarget();
+                        fullPresent[i] = tools.findTarget().getCount() > 0;
+                    }
+                    fullTime = System.nanoTime() - start;
+                }
+
+                PresenceDetector detector = null;
+                int presenceAgreed = 0;
+                int positionAgreed = 0;
+                double confidence = 0;
+                long presenceTime = 0;
+                for (int pass = 0; pass < 2; pass++) {
+                    detector = new PresenceDetector();
+                    presenceAgreed = 0;
+                    positionAgreed = 0;
+                    confidence = 0;
+                    long start = System.nanoTime();
+                    for (int i = 0; i < frames; i++) {
+                        PresenceResult result = detector.detect(testFrames[i],
+                                tools.getCentreBoundary(testFrames[i]));
+                        if (result.isPresent() == fullPresent[i]) {
+                            presenceAgreed++;
+                        }
+                        if (result.getPosition().equals(fullPositions[i])) {
+                            positionAgreed++;
+                        }
+                        confidence += result.getConfidence();
+                    }
+                    presenceTime = System.nanoTime() - start;
+                }
+
+                System.out.println(String.format("%-12s %-10s %8.1f%% %8.1f%% %11.3f %7.1f%% %10.2f %11.2f",
+                        size[0] + "x" + size[1], Math.round(coverage * 100) + "%", 100.0 * presenceAgreed / frames,
+                        100.0 * positionAgreed / frames, confidence / frames, 100 * detector.getReadFraction(),
+                        fullTime / 1e6 / frames, presenceTime / 1e6 / frames));
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * <h1>PresenceResult</h1>
+ * PresenceResult objects store the outcome of a PresenceDetector scanning a single frame: whether a target was
+ * found, how sure the detector is, and roughly where the target is.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class PresenceResult {
+
+    private final boolean PRESENT;
+    private final double CONFIDENCE;
+    private final String POSITION;
+    private final int HITS;
+    private final int SAMPLES;
+    private final int ROWS_SCANNED;
+
+    /**
+     * Constructor for the PresenceResult class. Initialises instance variables only.
+     *
+     * @param present       true if the target was found.
+     * @param confidence    the confidence in the answer given by present, from 0 to 1.
+     * @param position      the coarse position of the target, or "error" if it was not found.
+     * @param hits          the number of samples which were green.
+     * @param samples       the number of samples taken.
+     * @param rowsScanned   the number of rows of the frame which were read.
+     */
+    public PresenceResult(boolean present, double confidence, String position, int hits, int samples,
+                          int rowsScanned) {
+        this.PRESENT = present;
+        this.CONFIDENCE = confidence;
+        this.POSITION = position;
+        this.HITS = hits;
+        this.SAMPLES = samples;
+        this.ROWS_SCANNED = rowsScanned;
+    }
+
+    /**
+     * Returns whether the target was found.
+     *
+     * @return  true if at least one sample was green.
+     */
+    public boolean isPresent() {
+        return this.PRESENT;
+    }
+
+    /**
+     * Returns the confidence in the answer given by isPresent(). For a target which was found it is the fraction of
+     * the green samples the detector asks for which were seen; for a target which was not found it is the chance
+     * that a target of the smallest size looked for would have been sampled.
+     *
+     * @return  the confidence, from 0 to 1.
+     */
+    public double getConfidence() {
+        return this.CONFIDENCE;
+    }
+
+    /**
+     * Returns the coarse position of the target, worked out from the median of the green samples in the same way
+     * as PixelBlob.getPosition().
+     *
+     * @return  one of the positions returned by CentreBoundary.getPosition(), or "error" if the target was not
+     *          found.
+     */
+    public String getPosition() {
+        return this.POSITION;
+    }
+
+    /**
+     * Returns the number of samples which were green.
+     *
+     * @return  the number of green samples.
+     */
+    public int getHits() {
+        return this.HITS;
+    }
+
+    /**
+     * Returns the number of samples taken before the detector stopped.
+     *
+     * @return  the number of samples.
+     */
+    public int getSamples() {
+        return this.SAMPLES;
+    }
+
+    /**
+     * Returns the number of rows of the frame which were read before the detector stopped.
+     *
+     * @return  the number of rows read.
+     */
+    public int getRowsScanned() {
+        return this.ROWS_SCANNED;
+    }
+}
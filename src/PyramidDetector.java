@@ -0,0 +1,299 @@
+import java.util.Arrays;
+
+/**
+ * <h1>PyramidDetector</h1>
+ * PyramidDetector objects classify a frame coarse to fine, so that when the target only covers a small part of a
+ * large frame, most of the frame is never read or classified at full resolution.
+ * <p>
+ * Each level of the pyramid is a grid of cells, one cell per scale x scale block of the frame, and a cell is green
+ * if the pixel at the centre of its block is. The coarsest level samples every block of the frame. Each finer level
+ * only samples the blocks inside green cells of the level above, after those cells have been dilated by one cell so
+ * that the edges of a region are not lost. Finally, full resolution pixels are classified only inside the dilated
+ * green cells of the finest level, and every other pixel of the mask is left clear. The result is then cleaned as
+ * usual, which removes any stray pixels near the candidates just as it would for the whole frame. The outermost rows
+ * and columns of the frame are never touched by the cleaner, so they are always classified in full to keep any
+ * green pixels there in the result.
+ * <p>
+ * The result is an approximation: a green region smaller than the coarsest scale may fall between the samples and
+ * be missed. The scales are therefore tunable, and main() measures the position and size reported against the full
+ * resolution path.
+ * <p>
+ * The candidate grids are kept between frames of the same size, so a PyramidDetector should be reused. It is not
+ * thread safe.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class PyramidDetector {
+
+    private final int[] SCALES;
+    private final GreenClassifier classifier;
+    private final Morphology morphology;
+
+    private GreenMask[] levels;
+    private int[] row;
+
+    private long pixelsClassified;
+    private long pixelsSampled;
+    private long pixelsInFrames;
+
+    /**
+     * Constructor for the PyramidDetector class. Uses the default GreenClassifier and scales of 8, 4 and 2.
+     */
+    public PyramidDetector() {
+        this(GreenClassifier.getDefault(), 8, 4, 2);
+    }
+
+    /**
+     * Constructor for the PyramidDetector class.
+     *
+     * @param classifier    the GreenClassifier which decides which pixels are green.
+     * @param scales        the downsampling factor of each level, coarsest first. Every scale must be at least 2
+     *                      and a multiple of the scale after it.
+     */
+    public PyramidDetector(GreenClassifier classifier, int... scales) {
+
+        if (scales.length == 0) {
+            throw new IllegalArgumentException("at least one scale is needed");
+        }
+        for (int i = 0; i < scales.length; i++) {
+            if (scales[i] < 2 || (i > 0 && scales[i - 1] % scales[i] != 0)) {
+                throw new IllegalArgumentException("scales must be at least 2 and each a multiple of the next: "
+                        + Arrays.toString(scales));
+            }
+        }
+
+        this.SCALES = scales.clone();
+        this.classifier = classifier;
+        this.morphology = new Morphology();
+        this.levels = new GreenMask[scales.length];
+        this.row = new int[0];
+    }
+
+    /**
+     * Classifies the candidate regions of the frame into a mask. Pixels outside the candidates are left as they are,
+     * so the mask should be empty.
+     *
+     * @param frame     the frame to classify as an RgbFrame.
+     * @param mask      an empty GreenMask the size of the frame.
+     */
+    public void classify(RgbFrame frame, GreenMask mask) {
+
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        this.pixelsInFrames += (long) w * h;
+
+        if (this.row.length < w) {
+            this.row = new int[w];
+        }
+
+        // the coarsest level samples every block
+        int scale = this.SCALES[0];
+        GreenMask level = level(0, w, h);
+        for (int cy = 0; cy < level.getHeight(); cy++) {
+            int y = sample(cy, scale, h);
+            frame.readRow(y, 0, w, this.row);
+            for (int cx = 0; cx < level.getWidth(); cx++) {
+                if (this.classifier.isGreen(this.row[sample(cx, scale, w)])) {
+                    level.set(cx, cy);
+                }
+            }
+            this.pixelsSampled += level.getWidth();
+        }
+        this.morphology.dilate(level, 1);
+
+        // each finer level samples only inside the candidates of the level above
+        for (int i = 1; i < this.SCALES.length; i++) {
+            GreenMask parent = level;
+            int ratio = scale / this.SCALES[i];
+            scale = this.SCALES[i];
+            level = level(i, w, h);
+
+            for (int cy = 0; cy < level.getHeight(); cy++) {
+                int py = cy / ratio;
+                int y = sample(cy, scale, h);
+                int start = parent.nextSetBit(py, 0);
+                while (start < parent.getWidth()) {
+                    int end = parent.nextClearBit(py, start);
+                    int firstCell = start * ratio;
+                    int lastCell = Math.min(level.getWidth(), end * ratio) - 1;
+                    int firstX = sample(firstCell, scale, w);
+                    int lastX = sample(lastCell, scale, w);
+                    frame.readRow(y, firstX, lastX - firstX + 1, this.row);
+                    for (int cx = firstCell; cx <= lastCell; cx++) {
+                        if (this.classifier.isGreen(this.row[sample(cx, scale, w) - firstX])) {
+                            level.set(cx, cy);
+                        }
+                    }
+                    this.pixelsSampled += lastCell - firstCell + 1;
+                    start = parent.nextSetBit(py, end);
+                }
+            }
+            this.morphology.dilate(level, 1);
+        }
+
+        // full resolution only inside the candidates of the finest level, and around the edge of the frame
+        long[] bits = mask.getBits();
+        int words = mask.getWordsPerRow();
+        for (int y = 0; y < h; y++) {
+            if (y == 0 || y == h - 1) {
+                frame.readRow(y, 0, w, this.row);
+                this.classifier.classifyRow(this.row, w, bits, y * words, 0);
+                this.pixelsClassified += w;
+                continue;
+            }
+            frame.readRow(y, 0, 1, this.row);
+            this.classifier.classifyRow(this.row, 1, bits, y * words, 0);
+            frame.readRow(y, w - 1, 1, this.row);
+            this.classifier.classifyRow(this.row, 1, bits, y * words, w - 1);
+            this.pixelsClassified += 2;
+
+            int cy = y / scale;
+            int start = level.nextSetBit(cy, 0);
+            while (start < level.getWidth()) {
+                int end = level.nextClearBit(cy, start);
+                int firstX = start * scale;
+                int length = Math.min(w, end * scale) - firstX;
+                frame.readRow(y, firstX, length, this.row);
+                this.classifier.classifyRow(this.row, length, bits, y * words, firstX);
+                this.pixelsClassified += length;
+                start = level.nextSetBit(cy, end);
+            }
+        }
+    }
+
+    /**
+     * Returns the cleared candidate grid of a level, creating it when the frame size changes.
+     *
+     * @param index     the index of the level, 0 being the coarsest.
+     * @param width     the width of the frame.
+     * @param height    the height of the frame.
+     * @return          an empty GreenMask with one bit per cell of the level.
+     */
+    private GreenMask level(int index, int width, int height) {
+        int scale = this.SCALES[index];
+        int cellsWide = (width + scale - 1) / scale;
+        int cellsHigh = (height + scale - 1) / scale;
+        GreenMask level = this.levels[index];
+        if (level == null || level.getWidth() != cellsWide || level.getHeight() != cellsHigh) {
+            level = new GreenMask(cellsWide, cellsHigh);
+            this.levels[index] = level;
+        } else {
+            Arrays.fill(level.getBits(), 0L);
+        }
+        return level;
+    }
+
+    /**
+     * Returns the coordinate of the pixel sampled for a cell, which is the centre of its block, or the last pixel of
+     * the frame for a partial block at the edge.
+     *
+     * @param cell      the coordinate of the cell.
+     * @param scale     the scale of the level.
+     * @param limit     the width or height of the frame.
+     * @return          the coordinate of the sampled pixel.
+     */
+    private static int sample(int cell, int scale, int limit) {
+        return Math.min(limit - 1, cell * scale + scale / 2);
+    }
+
+    /**
+     * Returns the fraction of all pixels in the frames seen which were classified at full resolution.
+     *
+     * @return  the fraction of pixels classified, from 0 to 1.
+     */
+    public double getClassifiedFraction() {
+        return this.pixelsInFrames == 0 ? 0 : (double) this.pixelsClassified / this.pixelsInFrames;
+    }
+
+    /**
+     * Returns the fraction of all pixels in the frames seen which were sampled for the coarser levels.
+     *
+     * @return  the fraction of pixels sampled, from 0 to 1.
+     */
+    public double getSampledFraction() {
+        return this.pixelsInFrames == 0 ? 0 : (double) this.pixelsSampled / this.pixelsInFrames;
+    }
+
+    /**
+     * Returns the downsampling factor of each level.
+     *
+     * @return  a copy of the scales, coarsest first.
+     */
+    public int[] getScales() {
+        return this.SCALES.clone();
+    }
+
+    /**
+     * Compares the PYRAMID mode of ImageTools with the SINGLE_PASS mode on synthetic frames of several sizes and
+     * target coverages, for several sets of scales. Prints how often the position agrees, the mean error in size,
+     * the fraction of pixels classified, and the time taken by each mode.
+     * <p>
+     * Usage: java PyramidDetector [frames]
+     */
+    public static void main(String[] args) {
+
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        int[][] sizes = {{640, 480}, {1920, 1080}, {3840, 2160}};
+        double[] coverages = {0.01, 0.1, 0.4};
+        int[][] scaleSets = {{4, 2}, {8, 4, 2}, {16, 8, 4, 2}, {16, 4}};
+        GreenClassifier classifier = GreenClassifier.getDefault();
+
+        System.out.println(String.format("%-12s %-10s %-14s %9s %10s %11s %10s %10s", "frame", "coverage", "scales",
+                "position", "size err", "classified", "full ms", "pyramid ms"));
+
+        for (int[] size : sizes) {
+            for (double coverage : coverages) {
+                RgbFrame[] testFrames = new RgbFrame[frames];
+                for (int i = 0; i < frames; i++) {
+                    testFrames[i] = new BufferedImageFrame(SyntheticFrameSource.createFrame(size[0], size[1], i * 7,
+                            coverage));
+                }
+
+                String[] fullPositions = new String[frames];
+                int[] fullSizes = new int[frames];
+                long fullTime = 0;
+                for (int pass = 0; pass < 2; pass++) {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < frames; i++) {
+                        ImageTools tools = new ImageTools(testFrames[i], ImageTools.Mode.SINGLE_PASS, classifier);
+                        fullPositions[i] = tools.getPositionOfTarget();
+                        fullSizes[i] = tools.getSizeOfTarget();
+                    }
+                    fullTime = System.nanoTime() - start;
+                }
+
+                for (int[] scales : scaleSets) {
+                    PyramidDetector detector = new PyramidDetector(classifier, scales);
+                    int agreed = 0;
+                    double sizeError = 0;
+                    long pyramidTime = 0;
+                    for (int pass = 0; pass < 2; pass++) {
+                        if (pass == 1) {
+                            detector = new PyramidDetector(classifier, scales);
+                            agreed = 0;
+                            sizeError = 0;
+                        }
+                        long start = System.nanoTime();
+                        for (int i = 0; i < frames; i++) {
+                            ImageTools tools = new ImageTools(testFrames[i], classifier, detector);
+                            if (tools.getPositionOfTarget().equals(fullPositions[i])) {
+                                agreed++;
+                            }
+                            int pyramidSize = tools.getSizeOfTarget();
+                            sizeError += fullSizes[i] == 0 ? (pyramidSize == 0 ? 0 : 1)
+                                    : Math.abs(pyramidSize - fullSizes[i]) / (double) fullSizes[i];
+                        }
+                        pyramidTime = System.nanoTime() - start;
+                    }
+
+                    System.out.println(String.format("%-12s %-10s %-14s %8.1f%% %9.2f%% %10.1f%% %10.1f %10.1f",
+                            size[0] + "x" + size[1], Math.round(coverage * 100) + "%",
+                            Arrays.toString(scales).replace(" ", ""), 100.0 * agreed / frames,
+                            100 * sizeError / frames, 100 * detector.getClassifiedFraction(),
+                            fullTime / 1e6 / frames, pyramidTime / 1e6 / frames));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * <h1>RawFrameSource</h1>
+ * RawFrameSource objects deliver frames from a raw frame dump, a file holding nothing but frames of the same size
+ * and format one after another, as written by a capture card or a recording tool. The file is memory-mapped rather
+ * than read, so frames are handed out as MappedFrames which read their pixels straight from the page cache, and
+ * scanning a recording of many gigabytes puts no pressure on the heap.
+ * <p>
+ * A single mapping is limited to 2GB, so the file is mapped in windows holding a whole number of frames, and a
+ * window is only mapped when a frame inside it is first requested. Frames can be read in order with nextFrame(),
+ * or in any order with getFrame(). A frame keeps its window mapped for as long as it is held, so frames may be kept
+ * after the source has moved on or been closed.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class RawFrameSource implements FrameSource {
+
+    /**
+     * The layouts of raw frame which can be mapped.
+     * <p>
+     * ARGB is four bytes per pixel in the order alpha, red, green, blue. RGB24 is three bytes per pixel in the
+     * order red, green, blue. I420 is a full size plane of Y followed by quarter size planes of U and then V. NV12 is
+     * a full size plane of Y followed by a quarter size plane of interleaved U and V pairs. The chroma planes of
+     * both YUV formats are rounded up to a whole pixel for odd widths and heights.
+     */
+    public enum Format {
+        ARGB,
+        RGB24,
+        I420,
+        NV12;
+
+        /**
+         * Returns the number of bytes a frame of the given size takes up in this format.
+         *
+         * @param width     the width of the frame in pixels.
+         * @param height    the height of the frame in pixels.
+         * @return          the size of one frame in bytes.
+         */
+        public long frameBytes(int width, int height) {
+            long pixels = (long) width * height;
+            switch (this) {
+                case ARGB:
+                    return pixels * 4;
+                case RGB24:
+                    return pixels * 3;
+                default:
+                    return pixels + 2L * ((width + 1) / 2) * ((height + 1) / 2);
+            }
+        }
+    }
+
+    private static final long DEFAULT_WINDOW_BYTES = 256L << 20;
+
+    private final FileChannel channel;
+    private final int WIDTH;
+    private final int HEIGHT;
+    private final Format format;
+    private final int FRAME_BYTES;
+    private final long FRAME_COUNT;
+    private final int FRAMES_PER_WINDOW;
+    private final boolean LOOP;
+
+    private MappedByteBuffer window;
+    private long windowIndex;
+    private long next;
+    private volatile boolean closed;
+
+    /**
+     * Constructor for the RawFrameSource class. Stops after the last frame of the file.
+     *
+     * @param file      the raw frame dump.
+     * @param width     the width of each frame in pixels.
+     * @param height    the height of each frame in pixels.
+     * @param format    the layout of the pixels of each frame.
+     * @throws IOException  if the file cannot be opened.
+     */
+    public RawFrameSource(File file, int width, int height, Format format) throws IOException {
+        this(file, width, height, format, false, DEFAULT_WINDOW_BYTES);
+    }
+
+    /**
+     * Constructor for the RawFrameSource class. Any incomplete frame at the end of the file is ignored.
+     *
+     * @param file          the raw frame dump.
+     * @param width         the width of each frame in pixels.
+     * @param height        the height of each frame in pixels.
+     * @param format        the layout of the pixels of each frame.
+     * @param loop          true to start again from the first frame after the last one, false to stop.
+     * @param windowBytes   the largest number of bytes to map at once, which is rounded down to a whole number of
+     *                      frames but always holds at least one.
+     * @throws IOException  if the file cannot be opened.
+     */
+    public RawFrameSource(File file, int width, int height, Format format, boolean loop, long windowBytes)
+            throws IOException {
+
+        long frameBytes = format.frameBytes(width, height);
+        if (width <= 0 || height <= 0 || frameBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("cannot map frames of " + width + "x" + height + " " + format);
+        }
+
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.format = format;
+        this.FRAME_BYTES = (int) frameBytes;
+        this.FRAME_COUNT = this.channel.size() / frameBytes;
+        this.FRAMES_PER_WINDOW = (int) Math.max(1, Math.min(windowBytes, Integer.MAX_VALUE) / frameBytes);
+        this.LOOP = loop;
+        this.windowIndex = -1;
+        this.next = 0;
+        this.closed = false;
+    }
+
+    /**
+     * Returns the next frame of the file.
+     *
+     * @return  the next frame as a MappedFrame, which is also a YuvFrame for the YUV formats, or null once every
+     *          frame has been delivered (when not looping) or the source has been closed.
+     */
+    @Override
+    public synchronized RgbFrame nextFrame() {
+
+        if (this.closed || this.FRAME_COUNT == 0) {
+            return null;
+        }
+        if (this.next >= this.FRAME_COUNT) {
+            if (!this.LOOP) {
+                return null;
+            }
+            this.next = 0;
+        }
+
+        try {
+            return map(this.next++);
+        } catch (IOException e) {
+            System.err.println("could not map frame " + (this.next - 1) + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns any frame of the file, without changing which frame nextFrame() returns.
+     *
+     * @param index     the index of the frame, starting from 0.
+     * @return          the frame as a MappedFrame.
+     * @throws IOException  if the frame cannot be mapped.
+     */
+    public synchronized MappedFrame getFrame(long index) throws IOException {
+        if (index < 0 || index >= this.FRAME_COUNT) {
+            throw new IndexOutOfBoundsException("frame " + index + " of " + this.FRAME_COUNT);
+        }
+        if (this.closed) {
+            throw new IllegalStateException("the source has been closed");
+        }
+        return map(index);
+    }
+
+    /**
+     * Sets the frame which nextFrame() returns next.
+     *
+     * @param index     the index of the frame, starting from 0.
+     */
+    public synchronized void seek(long index) {
+        if (index < 0 || index > this.FRAME_COUNT) {
+            throw new IndexOutOfBoundsException("frame " + index + " of " + this.FRAME_COUNT);
+        }
+        this.next = index;
+    }
+
+    /**
+     * Returns a frame, mapping the window which holds it if it is not the current one.
+     *
+     * @param index     the index of the frame.
+     * @return          the frame as a MappedFrame.
+     * @throws IOException  if the window cannot be mapped.
+     */
+    private MappedFrame map(long index) throws IOException {
+        long wanted = index / this.FRAMES_PER_WINDOW;
+        if (wanted != this.windowIndex) {
+            long first = wanted * this.FRAMES_PER_WINDOW;
+            long frames = Math.min(this.FRAMES_PER_WINDOW, this.FRAME_COUNT - first);
+            this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, first * this.FRAME_BYTES,
+                    frames * this.FRAME_BYTES);
+            this.windowIndex = wanted;
+        }
+        int offset = (int) (index - wanted * this.FRAMES_PER_WINDOW) * this.FRAME_BYTES;
+        if (this.format == Format.I420 || this.format == Format.NV12) {
+            return new MappedYuvFrame(this.window, offset, this.WIDTH, this.HEIGHT, this.format, index);
+        }
+        return new MappedFrame(this.window, offset, this.WIDTH, this.HEIGHT, this.format, index);
+    }
+
+    /**
+     * Returns the number of whole frames in the file.
+     *
+     * @return  the number of frames.
+     */
+    public long getFrameCount() {
+        return this.FRAME_COUNT;
+    }
+
+    /**
+     * Returns the layout of the pixels of each frame.
+     *
+     * @return  the Format of the file.
+     */
+    public Format getFormat() {
+        return this.format;
+    }
+
+    /**
+     * Stops delivering frames and closes the file. Frames already returned can still be read.
+     */
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        this.window = null;
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            System.err.println("could not close the raw frame file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a frame to a buffer in the given format, such as when recording a dump. YUV frames are converted from
+     * RGB with the BT.601 video range equations, each chroma sample being the average of its 2x2 block.
+     *
+     * @param frame     the frame to write.
+     * @param format    the layout to write the pixels in.
+     * @param out       the buffer the frame is written to, from its current position.
+     */
+    public static void writeFrame(RgbFrame frame, Format format, ByteBuffer out) {
+
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        int[] row = new int[w];
+
+        if (format == Format.ARGB || format == Format.RGB24) {
+            for (int y = 0; y < h; y++) {
+                frame.readRow(y, 0, w, row);
+                for (int x = 0; x < w; x++) {
+                    if (format == Format.ARGB) {
+                        out.putInt(row[x]);
+                    } else {
+                        out.put((byte) (row[x] >>> 16)).put((byte) (row[x] >>> 8)).put((byte) row[x]);
+                    }
+                }
+            }
+            return;
+        }
+
+        int chromaWidth = (w + 1) / 2;
+        int chromaHeight = (h + 1) / 2;
+        int[] u = new int[chromaWidth * chromaHeight];
+        int[] v = new int[chromaWidth * chromaHeight];
+        int[] samples = new int[chromaWidth * chromaHeight];
+
+        for (int y = 0; y < h; y++) {
+            frame.readRow(y, 0, w, row);
+            for (int x = 0; x < w; x++) {
+                int red = (row[x] >>> 16) & 0xff;
+                int green = (row[x] >>> 8) & 0xff;
+                int blue = row[x] & 0xff;
+                out.put((byte) (((66 * red + 129 * green + 25 * blue + 128) >> 8) + 16));
+                int chroma = (y / 2) * chromaWidth + x / 2;
+                u[chroma] += ((-38 * red - 74 * green + 112 * blue + 128) >> 8) + 128;
+                v[chroma] += ((112 * red - 94 * green - 18 * blue + 128) >> 8) + 128;
+                samples[chroma]++;
+            }
+        }
+
+        if (format == Format.I420) {
+            for (int i = 0; i < u.length; i++) {
+                out.put((byte) ((u[i] + samples[i] / 2) / samples[i]));
+            }
+            for (int i = 0; i < v.length; i++) {
+                out.put((byte) ((v[i] + samples[i] / 2) / samples[i]));
+            }
+        } else {
+            for (int i = 0; i < u.length; i++) {
+                out.put((byte) ((u[i] + samples[i] / 2) / samples[i]));
+                out.put((byte) ((v[i] + samples[i] / 2) / samples[i]));
+            }
+        }
+    }
+
+    /**
+     * Records synthetic frames to a raw dump in each format, then reads them back through the mapping in order and
+     * at random. Prints how often the position found in each mapped frame agrees with the original frame, and the
+     * rate the dump was scanned at.
+     * <p>
+     * Usage: java RawFrameSource [width] [height] [frames]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 640;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 480;
+        int frames = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        GreenClassifier classifier = GreenClassifier.getDefault();
+
+        String[] expected = new String[frames];
+        ImageTools tools = new ImageTools(ImageTools.Mode.SINGLE_PASS, classifier);
+        for (int i = 0; i < frames; i++) {
+            tools.setFrame(new BufferedImageFrame(SyntheticFrameSource.createFrame(width, height, i)));
+            expected[i] = tools.getPositionOfTarget();
+        }
+
+        for (Format format : Format.values()) {
+            File file = File.createTempFile("frames-", "." + format.name().toLowerCase());
+            file.deleteOnExit();
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) format.frameBytes(width, height));
+            try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                for (int i = 0; i < frames; i++) {
+                    buffer.clear();
+                    writeFrame(new BufferedImageFrame(SyntheticFrameSource.createFrame(width, height, i)), format,
+                            buffer);
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                }
+            }
+
+            // small windows so that several mappings are made
+            RawFrameSource source = new RawFrameSource(file, width, height, format, false,
+                    format.frameBytes(width, height) * 16);
+            int agreed = 0;
+            long start = System.nanoTime();
+            RgbFrame frame;
+            while ((frame = source.nextFrame()) != null) {
+                tools.setFrame(frame);
+                if (tools.getPositionOfTarget().equals(expected[(int) ((MappedFrame) frame).getFrameNumber()])) {
+                    agreed++;
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+
+            Random random = new Random(1);
+            int randomAgreed = 0;
+            for (int i = 0; i < frames; i++) {
+                int index = random.nextInt(frames);
+                tools.setFrame(source.getFrame(index));
+                if (tools.getPositionOfTarget().equals(expected[index])) {
+                    randomAgreed++;
+                }
+            }
+            source.close();
+
+            System.out.println(String.format("%-6s %d frames, sequential %d agree, random %d agree, %.0f frames/sec, "
+                    + "%.0f MB/sec", format, source.getFrameCount(), agreed, randomAgreed, frames / (elapsed / 1e9),
+                    frames * (double) format.frameBytes(width, height) / (1 << 20) / (elapsed / 1e9)));
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * <h1>ResultListener</h1>
+ * ResultListener is implemented by anything which wants to receive the TargetResults published by a
+ * CapturePipeline.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public interface ResultListener {
+
+    /**
+     * Called with each published result. This is called on one of the pipeline's analysis threads, so listeners
+     * which update a Swing UI need to hand the result over to the event dispatch thread.
+     *
+     * @param result    the TargetResult of an analysed frame.
+     */
+    void onResult(TargetResult result);
+}
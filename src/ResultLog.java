@@ -0,0 +1,265 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <h1>ResultLog</h1>
+ * ResultLog objects append the result of every analysed frame of a stream to a compact binary file, which can be
+ * replayed and aggregated afterwards with a ResultLogReader.
+ * <p>
+ * The file starts with a 16 byte header (the magic number IRLG, the format version and the record size), followed
+ * by one fixed size record of 44 bytes per frame:
+ * <pre>
+ *     offset  size  field
+ *      0      8     timestamp in milliseconds since the epoch
+ *      8      8     frame number
+ *     16      4     centroid x (float), -1 if there is no target
+ *     20      4     centroid y (float), -1 if there is no target
+ *     24      8     bounding box left, top, right, bottom (unsigned shorts), 65535 if there is no target
+ *     32      4     area in pixels
+ *     36      4     size, as returned by PixelBlob.getSize()
+ *     40      1     position code, the index of the position in SummedAreaTable.ZONES, or 9 if there is no target
+ *     41      1     distance code: 0 unknown, 1 same, 2 closer, 3 farther
+ *     42      2     reserved, always 0
+ * </pre>
+ * All values are big-endian. Records are collected in a buffer and written to the file channel when it is full, so
+ * appending a record costs no more than a few puts into the buffer. A log which already exists is appended to, and
+ * any partly written record at its end, left by a process which died while writing, is cut off first.
+ * <p>
+ * The methods of a ResultLog are synchronized, so one log can be shared by the threads analysing a stream. Records
+ * are kept in the order they are appended, so frames which finish out of order should be put back in order first, or
+ * dropped when a later frame has already been appended, as CapturePipeline does.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class ResultLog implements Closeable {
+
+    static final int MAGIC = 0x49524C47;
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 44;
+    static final int NO_TARGET = SummedAreaTable.ZONES.length;
+
+    private static final String[] DISTANCES = {null, "same", "closer", "farther"};
+    private static final int BUFFER_RECORDS = 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long records;
+
+    /**
+     * Constructor for the ResultLog class. Creates the file if it does not exist, or opens it to append to if it
+     * does.
+     *
+     * @param file          the file to write the log to.
+     * @throws IOException  if the file cannot be opened, or exists but is not a result log.
+     */
+    public ResultLog(File file) throws IOException {
+
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_BYTES);
+
+        try {
+            long length = this.channel.size();
+            if (length == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putShort(VERSION).putShort((short) RECORD_BYTES);
+                header.position(0);
+                while (header.hasRemaining()) {
+                    this.channel.write(header);
+                }
+                length = HEADER_BYTES;
+            } else {
+                readHeader(this.channel, file);
+            }
+
+            // drop a record which was only partly written
+            this.records = (length - HEADER_BYTES) / RECORD_BYTES;
+            long end = HEADER_BYTES + this.records * RECORD_BYTES;
+            if (end < length) {
+                this.channel.truncate(end);
+            }
+            this.channel.position(end);
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks that a file starts with the header of a result log of this version.
+     *
+     * @param channel       the channel to read the header from.
+     * @param file          the file, for the error message.
+     * @throws IOException  if the header cannot be read or does not match.
+     */
+    static void readHeader(FileChannel channel, File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                break;
+            }
+        }
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getShort() != VERSION
+                || header.getShort() != RECORD_BYTES) {
+            throw new IOException(file + " is not a result log of version " + VERSION);
+        }
+    }
+
+    /**
+     * Appends the result of a frame to the log.
+     *
+     * @param result        the TargetResult of the frame, giving its number, timestamp, position, size and distance.
+     * @param target        the target of the frame, giving its centroid, bounding box and area.
+     * @throws IOException  if the buffer was full and could not be written.
+     */
+    public synchronized void append(TargetResult result, PixelBlob target) throws IOException {
+
+        if (this.buffer.remaining() < RECORD_BYTES) {
+            writeBuffer();
+        }
+
+        ByteBuffer b = this.buffer;
+        b.putLong(result.getTimestamp());
+        b.putLong(result.getFrameNumber());
+        if (target.getCount() > 0) {
+            b.putFloat((float) target.getCentroidX());
+            b.putFloat((float) target.getCentroidY());
+            b.putShort((short) target.getMinX());
+            b.putShort((short) target.getMinY());
+            b.putShort((short) target.getMaxX());
+            b.putShort((short) target.getMaxY());
+        } else {
+            b.putFloat(-1);
+            b.putFloat(-1);
+            b.putLong(-1);
+        }
+        b.putInt(target.getCount());
+        b.putInt(result.getSize());
+        b.put((byte) positionCode(result.getPosition()));
+        b.put((byte) distanceCode(result.getDistance()));
+        b.putShort((short) 0);
+        this.records++;
+    }
+
+    /**
+     * Writes every buffered record to the file.
+     *
+     * @throws IOException  if the records could not be written.
+     */
+    public synchronized void flush() throws IOException {
+        writeBuffer();
+    }
+
+    /**
+     * Writes every buffered record to the file and closes it.
+     *
+     * @throws IOException  if the records could not be written or the file could not be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!this.channel.isOpen()) {
+            return;
+        }
+        try {
+            writeBuffer();
+        } finally {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Writes the buffered records to the channel and empties the buffer. If the write fails partway through, the
+     * bytes which were not written stay at the start of the buffer, so the next write carries on from where this one
+     * stopped rather than writing the same records again.
+     *
+     * @throws IOException  if the records could not be written.
+     */
+    private void writeBuffer() throws IOException {
+        this.buffer.flip();
+        try {
+            while (this.buffer.hasRemaining()) {
+                this.channel.write(this.buffer);
+            }
+        } finally {
+            this.buffer.compact();
+        }
+    }
+
+    /**
+     * Returns the number of records in the log, including those appended but not yet written.
+     *
+     * @return  the number of records.
+     */
+    public synchronized long getRecordCount() {
+        return this.records;
+    }
+
+    /**
+     * Returns the file the log is written to.
+     *
+     * @return  the file of the log.
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Returns the code stored for a position.
+     *
+     * @param position  one of the positions returned by CentreBoundary.getPosition(), or anything else if there is
+     *                  no target.
+     * @return          the index of the position in SummedAreaTable.ZONES, or NO_TARGET.
+     */
+    static int positionCode(String position) {
+        for (int i = 0; i < SummedAreaTable.ZONES.length; i++) {
+            if (SummedAreaTable.ZONES[i].equals(position)) {
+                return i;
+            }
+        }
+        return NO_TARGET;
+    }
+
+    /**
+     * Returns the position stored as a code.
+     *
+     * @param code  the position code of a record.
+     * @return      the position, or "error" if there was no target, as PixelBlob.getPosition() returns.
+     */
+    static String positionName(int code) {
+        return code < NO_TARGET ? SummedAreaTable.ZONES[code] : "error";
+    }
+
+    /**
+     * Returns the code stored for a distance.
+     *
+     * @param distance  the distance returned by DistanceTracker.update(), or null if it is not known.
+     * @return          the distance code.
+     */
+    static int distanceCode(String distance) {
+        for (int i = 1; i < DISTANCES.length; i++) {
+            if (DISTANCES[i].equals(distance)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the distance stored as a code.
+     *
+     * @param code  the distance code of a record.
+     * @return      one of same, closer, or farther, or null if it is not known.
+     */
+    static String distanceName(int code) {
+        return code > 0 && code < DISTANCES.length ? DISTANCES[code] : null;
+    }
+}
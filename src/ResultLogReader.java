@@ -0,0 +1,563 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <h1>ResultLogReader</h1>
+ * ResultLogReader objects read back a file written by a ResultLog. Every record can be read by its index in any
+ * order, replayed to a ResultListener, or summed up into a Summary, without creating an object per record.
+ * <p>
+ * The file is memory-mapped in windows holding a whole number of records, as RawFrameSource maps frames, and each
+ * window is only mapped when a record inside it is first read. The number of records is fixed when the reader is
+ * opened, so records appended afterwards are not seen, and a partly written record at the end is ignored.
+ * <p>
+ * Records appended by CapturePipeline and TrackingService are in frame order, and so in timestamp order, which
+ * find() relies on. A ResultLogReader is not thread safe.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class ResultLogReader implements Closeable {
+
+    private static final long DEFAULT_WINDOW_BYTES = 256L << 20;
+
+    private final File file;
+    private final FileChannel channel;
+    private final long RECORD_COUNT;
+    private final int RECORDS_PER_WINDOW;
+    private final MappedByteBuffer[] windows;
+
+    /**
+     * Constructor for the ResultLogReader class.
+     *
+     * @param file          the result log to read.
+     * @throws IOException  if the file cannot be opened or is not a result log.
+     */
+    public ResultLogReader(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_BYTES);
+    }
+
+    /**
+     * Constructor for the ResultLogReader class.
+     *
+     * @param file          the result log to read.
+     * @param windowBytes   the largest number of bytes to map at once, which is rounded down to a whole number of
+     *                      records but always holds at least one.
+     * @throws IOException  if the file cannot be opened or is not a result log.
+     */
+    public ResultLogReader(File file, long windowBytes) throws IOException {
+
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ResultLog.readHeader(this.channel, file);
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+
+        this.RECORD_COUNT = (this.channel.size() - ResultLog.HEADER_BYTES) / ResultLog.RECORD_BYTES;
+        this.RECORDS_PER_WINDOW = (int) Math.max(1, Math.min(windowBytes, Integer.MAX_VALUE)
+                / ResultLog.RECORD_BYTES);
+        this.windows = new MappedByteBuffer[(int) ((this.RECORD_COUNT + this.RECORDS_PER_WINDOW - 1)
+                / this.RECORDS_PER_WINDOW)];
+    }
+
+    /**
+     * Returns the number of complete records in the log when it was opened.
+     *
+     * @return  the number of records.
+     */
+    public long getRecordCount() {
+        return this.RECORD_COUNT;
+    }
+
+    /**
+     * Returns the file being read.
+     *
+     * @return  the file of the log.
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Returns the window holding a record, mapping it if it has not been mapped yet.
+     *
+     * @param index     the index of the record.
+     * @return          the mapped window.
+     */
+    private MappedByteBuffer window(long index) {
+
+        if (index < 0 || index >= this.RECORD_COUNT) {
+            throw new IndexOutOfBoundsException("record " + index + " of " + this.RECORD_COUNT);
+        }
+        int w = (int) (index / this.RECORDS_PER_WINDOW);
+        MappedByteBuffer window = this.windows[w];
+        if (window == null) {
+            long first = (long) w * this.RECORDS_PER_WINDOW;
+            long records = Math.min(this.RECORDS_PER_WINDOW, this.RECORD_COUNT - first);
+            try {
+                window = this.channel.map(FileChannel.MapMode.READ_ONLY,
+                        ResultLog.HEADER_BYTES + first * ResultLog.RECORD_BYTES, records * ResultLog.RECORD_BYTES);
+            } catch (IOException e) {
+                throw new IllegalStateException("could not map records from " + first + " of " + this.file, e);
+            }
+            this.windows[w] = window;
+        }
+        return window;
+    }
+
+    /**
+     * Returns the offset of a record within its window.
+     *
+     * @param index     the index of the record.
+     * @return          the offset in bytes.
+     */
+    private int offset(long index) {
+        return (int) (index % this.RECORDS_PER_WINDOW) * ResultLog.RECORD_BYTES;
+    }
+
+    /**
+     * Returns the time the frame of a record was captured.
+     *
+     * @param index     the index of the record, from 0 to getRecordCount()-1.
+     * @return          the time in milliseconds since the epoch.
+     */
+    public long getTimestamp(long index) {
+        return window(index).getLong(offset(index));
+    }
+
+    /**
+     * Returns the sequence number of the frame of a record.
+     *
+     * @param index     the index of the record.
+     * @return          the frame number.
+     */
+    public long getFrameNumber(long index) {
+        return window(index).getLong(offset(index) + 8);
+    }
+
+    /**
+     * Returns the x value of the centroid of the target of a record.
+     *
+     * @param index     the index of the record.
+     * @return          the x value of the centroid, or -1 if there was no target.
+     */
+    public float getCentroidX(long index) {
+        return window(index).getFloat(offset(index) + 16);
+    }
+
+    /**
+     * Returns the y value of the centroid of the target of a record.
+     *
+     * @param index     the index of the record.
+     * @return          the y value of the centroid, or -1 if there was no target.
+     */
+    public float getCentroidY(long index) {
+        return window(index).getFloat(offset(index) + 20);
+    }
+
+    /**
+     * Returns the left edge of the bounding box of the target of a record.
+     *
+     * @param index     the index of the record.
+     * @return          the smallest x value of the target, or -1 if there was no target.
+     */
+    public int getMinX(long index) {
+        return coordinate(index, 24);
+    }
+
+    /**
+     * Returns the top edge of the bounding box of the target of a record.
+     *
+     * @param index     the index of the record.
+     * @return          the smallest y value of the target, or -1 if there was no target.
+     */
+    public int getMinY(long index) {
+        return coordinate(index, 26);
+    }
+
+    /**
+     * Returns the right edge of the bounding box of the target of a record.
+     *
+     * @param index     the index of the record.
+     * @return          the largest x value of the target, or -1 if there was no target.
+     */
+    public int getMaxX(long index) {
+        return coordinate(index, 28);
+    }
+
+    /**
+     * Returns the bottom edge of the bounding box of the target of a record.
+     *
+     * @param index     the index of the record.
+     * @return          the largest y value of the target, or -1 if there was no target.
+     */
+    public int getMaxY(long index) {
+        return coordinate(index, 30);
+    }
+
+    /**
+     * Reads one edge of the bounding box of a record, which is stored as an unsigned short.
+     *
+     * @param index     the index of the record.
+     * @param field     the offset of the edge within the record.
+     * @return          the coordinate, or -1 if there was no target.
+     */
+    private int coordinate(long index, int field) {
+        int value = window(index).getChar(offset(index) + field);
+        return value == 0xFFFF ? -1 : value;
+    }
+
+    /**
+     * Returns the number of pixels in the target of a record.
+     *
+     * @param index     the index of the record.
+     * @return          the area of the target in pixels.
+     */
+    public int getArea(long index) {
+        return window(index).getInt(offset(index) + 32);
+    }
+
+    /**
+     * Returns the size of the target of a record.
+     *
+     * @param index     the index of the record.
+     * @return          the size as returned by ImageTools.getSizeOfTarget().
+     */
+    public int getSize(long index) {
+        return window(index).getInt(offset(index) + 36);
+    }
+
+    /**
+     * Returns the position code of a record, which is cheaper to compare than the position.
+     *
+     * @param index     the index of the record.
+     * @return          the index of the position in SummedAreaTable.ZONES, or 9 if there was no target.
+     */
+    public int getPositionCode(long index) {
+        return window(index).get(offset(index) + 40);
+    }
+
+    /**
+     * Returns the position of the target of a record.
+     *
+     * @param index     the index of the record.
+     * @return          the position as returned by ImageTools.getPositionOfTarget().
+     */
+    public String getPosition(long index) {
+        return ResultLog.positionName(getPositionCode(index));
+    }
+
+    /**
+     * Returns the movement of the target of a record towards or away from the camera.
+     *
+     * @param index     the index of the record.
+     * @return          one of same, closer, or farther, or null if it was not known.
+     */
+    public String getDistance(long index) {
+        return ResultLog.distanceName(window(index).get(offset(index) + 41));
+    }
+
+    /**
+     * Returns the index of the first record captured at or after the given time, assuming the records are in
+     * timestamp order.
+     *
+     * @param timestamp     the time in milliseconds since the epoch.
+     * @return              the index of the record, or getRecordCount() if every record is earlier.
+     */
+    public long find(long timestamp) {
+        long low = 0;
+        long high = this.RECORD_COUNT;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (getTimestamp(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Hands the records in a range to a ResultListener as TargetResults, in the order they were written. The
+     * latency of each result is 0, as it is not logged.
+     *
+     * @param from      the index of the first record.
+     * @param to        the index after the last record.
+     * @param listener  the ResultListener to receive the results.
+     */
+    public void replay(long from, long to, ResultListener listener) {
+        for (long i = from; i < to; i++) {
+            listener.onResult(new TargetResult(getFrameNumber(i), getTimestamp(i), getPosition(i), getSize(i),
+                    getDistance(i), 0));
+        }
+    }
+
+    /**
+     * Sums up every record in the log.
+     *
+     * @return  a Summary of the whole log.
+     */
+    public Summary aggregate() {
+        return aggregate(0, this.RECORD_COUNT);
+    }
+
+    /**
+     * Sums up the records in a range. Each window is read straight through, so millions of records take a few
+     * milliseconds once the file is in the page cache.
+     *
+     * @param from      the index of the first record.
+     * @param to        the index after the last record.
+     * @return          a Summary of the records.
+     */
+    public Summary aggregate(long from, long to) {
+
+        Summary summary = new Summary();
+        from = Math.max(from, 0);
+        to = Math.min(to, this.RECORD_COUNT);
+        if (from >= to) {
+            return summary;
+        }
+        summary.firstTimestamp = getTimestamp(from);
+        summary.lastTimestamp = getTimestamp(to - 1);
+
+        long i = from;
+        while (i < to) {
+            MappedByteBuffer window = window(i);
+            long end = Math.min(to, (i / this.RECORDS_PER_WINDOW + 1) * this.RECORDS_PER_WINDOW);
+            int limit = offset(end - 1) + ResultLog.RECORD_BYTES;
+            for (int o = offset(i); o < limit; o += ResultLog.RECORD_BYTES) {
+                int position = window.get(o + 40);
+                summary.positionCounts[position]++;
+                summary.distanceCounts[window.get(o + 41)]++;
+                if (position != ResultLog.NO_TARGET) {
+                    int area = window.getInt(o + 32);
+                    summary.framesWithTarget++;
+                    summary.areaSum += area;
+                    summary.maxArea = Math.max(summary.maxArea, area);
+                    summary.centroidXSum += window.getFloat(o + 16);
+                    summary.centroidYSum += window.getFloat(o + 20);
+                }
+            }
+            summary.records += end - i;
+            i = end;
+        }
+        return summary;
+    }
+
+    /**
+     * Closes the file. Windows which have already been mapped stay readable until they are garbage collected.
+     *
+     * @throws IOException  if the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Writes a log of synthetic results, then reads it back, checking every field and timing an aggregate and a
+     * replay of the whole log.
+     * <p>
+     * Usage: java ResultLogReader [records]
+     */
+    public static void main(String[] args) throws IOException {
+
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        File file = File.createTempFile("results", ".irlog");
+        file.deleteOnExit();
+
+        CentreBoundary b = new CentreBoundary(96, 288, 128, 512);
+        PixelBlob target = new PixelBlob(640, 480);
+        DistanceTracker tracker = new DistanceTracker();
+
+        long start = System.nanoTime();
+        try (ResultLog log = new ResultLog(file)) {
+            for (int i = 0; i < count; i++) {
+                target.clear();
+                if (i % 10 != 0) {
+                    int left = (int) (300 + 290 * Math.sin(i * 0.01));
+                    int top = (int) (220 + 200 * Math.sin(i * 0.02));
+                    for (int y = top; y < top + 20; y++) {
+                        target.addRun(y, left, left + 19 + i % 30);
+                    }
+                }
+                String position = target.getPosition(b);
+                String distance = tracker.update(target);
+                log.append(new TargetResult(i, 1000L * i / 30, position, target.getSize(), distance, 0), target);
+            }
+        }
+        long written = System.nanoTime() - start;
+
+        int mismatches = 0;
+        try (ResultLogReader reader = new ResultLogReader(file)) {
+            start = System.nanoTime();
+            Summary summary = reader.aggregate();
+            long aggregated = System.nanoTime() - start;
+
+            long[] replayed = new long[1];
+            start = System.nanoTime();
+            reader.replay(0, reader.getRecordCount(), result -> replayed[0] += result.getSize());
+            long replayTime = System.nanoTime() - start;
+
+            // the first thousand records, checked against the same targets drawn again
+            for (int i = 0; i < Math.min(count, 1000); i++) {
+                target.clear();
+                if (i % 10 != 0) {
+                    int left = (int) (300 + 290 * Math.sin(i * 0.01));
+                    int top = (int) (220 + 200 * Math.sin(i * 0.02));
+                    for (int y = top; y < top + 20; y++) {
+                        target.addRun(y, left, left + 19 + i % 30);
+                    }
+                }
+                boolean same = reader.getFrameNumber(i) == i && reader.getTimestamp(i) == 1000L * i / 30
+                        && reader.getArea(i) == target.getCount() && reader.getSize(i) == target.getSize()
+                        && reader.getPosition(i).equals(target.getPosition(b))
+                        && reader.getMinX(i) == target.getMinX() && reader.getMaxY(i) == target.getMaxY()
+                        && (target.getCount() == 0 || reader.getCentroidX(i) == (float) target.getCentroidX());
+                if (!same) {
+                    mismatches++;
+                }
+            }
+
+            System.out.println(String.format("%d records, %d bytes each, %.1f MB", reader.getRecordCount(),
+                    ResultLog.RECORD_BYTES, file.length() / 1e6));
+            System.out.println(String.format("write:     %.1f M records/sec", count / (written / 1e3)));
+            System.out.println(String.format("aggregate: %.1f M records/sec", count / (aggregated / 1e3)));
+            System.out.println(String.format("replay:    %.1f M records/sec", count / (replayTime / 1e3)));
+            System.out.println("mismatches in the first 1000 records: " + mismatches);
+            System.out.println(summary);
+        }
+    }
+
+    /**
+     * The totals of a range of records, returned by aggregate().
+     */
+    public static class Summary {
+
+        private long records;
+        private long framesWithTarget;
+        private final long[] positionCounts = new long[ResultLog.NO_TARGET + 1];
+        private final long[] distanceCounts = new long[4];
+        private long areaSum;
+        private int maxArea;
+        private double centroidXSum;
+        private double centroidYSum;
+        private long firstTimestamp;
+        private long lastTimestamp;
+
+        /**
+         * Returns the number of records summed up.
+         *
+         * @return  the number of records.
+         */
+        public long getRecords() {
+            return this.records;
+        }
+
+        /**
+         * Returns the number of records in which there was a target.
+         *
+         * @return  the number of frames with a target.
+         */
+        public long getFramesWithTarget() {
+            return this.framesWithTarget;
+        }
+
+        /**
+         * Returns the number of records in which the target was at a position.
+         *
+         * @param position  one of the positions returned by CentreBoundary.getPosition(), or "error" for the
+         *                  records without a target.
+         * @return          the number of records at that position.
+         */
+        public long getPositionCount(String position) {
+            return this.positionCounts[ResultLog.positionCode(position)];
+        }
+
+        /**
+         * Returns the number of records in which the target moved in a direction.
+         *
+         * @param distance  one of same, closer, or farther, or null for the records in which it was not known.
+         * @return          the number of records with that distance.
+         */
+        public long getDistanceCount(String distance) {
+            return this.distanceCounts[ResultLog.distanceCode(distance)];
+        }
+
+        /**
+         * Returns the mean area of the target over the records with a target.
+         *
+         * @return  the mean area in pixels, or 0 if no record had a target.
+         */
+        public double getMeanArea() {
+            return this.framesWithTarget == 0 ? 0 : (double) this.areaSum / this.framesWithTarget;
+        }
+
+        /**
+         * Returns the largest area of the target.
+         *
+         * @return  the largest area in pixels.
+         */
+        public int getMaxArea() {
+            return this.maxArea;
+        }
+
+        /**
+         * Returns the mean x value of the centroid over the records with a target.
+         *
+         * @return  the mean x value, or -1 if no record had a target.
+         */
+        public double getMeanCentroidX() {
+            return this.framesWithTarget == 0 ? -1 : this.centroidXSum / this.framesWithTarget;
+        }
+
+        /**
+         * Returns the mean y value of the centroid over the records with a target.
+         *
+         * @return  the mean y value, or -1 if no record had a target.
+         */
+        public double getMeanCentroidY() {
+            return this.framesWithTarget == 0 ? -1 : this.centroidYSum / this.framesWithTarget;
+        }
+
+        /**
+         * Returns the time the first frame summed up was captured.
+         *
+         * @return  the time in milliseconds since the epoch, or 0 if there were no records.
+         */
+        public long getFirstTimestamp() {
+            return this.firstTimestamp;
+        }
+
+        /**
+         * Returns the time the last frame summed up was captured.
+         *
+         * @return  the time in milliseconds since the epoch, or 0 if there were no records.
+         */
+        public long getLastTimestamp() {
+            return this.lastTimestamp;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder positions = new StringBuilder();
+            for (int i = 0; i < this.positionCounts.length; i++) {
+                if (this.positionCounts[i] > 0) {
+                    positions.append(positions.length() > 0 ? ", " : "").append(ResultLog.positionName(i))
+                            .append(' ').append(this.positionCounts[i]);
+                }
+            }
+            return String.format("%d records, %d with a target, mean area %.1f, max area %d, mean centroid "
+                    + "(%.1f, %.1f), over %.1f s: %s", this.records, this.framesWithTarget, getMeanArea(),
+                    this.maxArea, getMeanCentroidX(), getMeanCentroidY(),
+                    (this.lastTimestamp - this.firstTimestamp) / 1000.0, positions);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * <h1>RgbFrame</h1>
+ * RgbFrame is implemented by anything which can supply the pixels of a single image frame one row at a time. Pixels
+ * are delivered as packed integers in the same ARGB layout returned by BufferedImage.getRGB(), so the frame
+ * processing code never needs to know where the pixels actually live.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public interface RgbFrame {
+
+    /**
+     * Returns the width of the frame in pixels.
+     *
+     * @return  the width of the frame in pixels.
+     */
+    int getWidth();
+
+    /**
+     * Returns the height of the frame in pixels.
+     *
+     * @return  the height of the frame in pixels.
+     */
+    int getHeight();
+
+    /**
+     * Copies a horizontal run of pixels into the supplied array as packed ARGB integers.
+     *
+     * @param y         the row to read from.
+     * @param x         the column of the first pixel to read.
+     * @param length    the number of pixels to read.
+     * @param rgb       the array the pixels are written to, starting at index 0.
+     */
+    void readRow(int y, int x, int length, int[] rgb);
+}
@@ -0,0 +1,324 @@
+import java.util.Arrays;
+
+/**
+ * <h1>RoiTracker</h1>
+ * RoiTracker objects follow a target from frame to frame, only scanning a region of interest (ROI) around where the
+ * target was last seen instead of every pixel of the frame.
+ * <p>
+ * The ROI is the bounding box of the target in the previous frame, moved by however far the target moved between
+ * the two frames before, and expanded by a margin plus that movement on every side. If the
+ * target cannot be found inside the ROI, or it runs up against an edge of the ROI (so part of it may lie outside),
+ * the frame is scanned in full instead. The frame is also scanned in full every fullScanInterval frames so that a
+ * second, larger target appearing elsewhere is not missed. The target in each frame is the largest connected region
+ * of green pixels, found with a BlobLabeller, and is passed to a DistanceTracker so that its getDistance() is set.
+ * <p>
+ * The ROI is classified into a mask the size of the frame, together with the four rows below it which cleaning a row
+ * reads, and only its own rows are cleaned, so the pixels of the ROI are cleaned exactly as they would be in a full
+ * scan. The masks and the target are kept and reused from frame to frame, so tracking allocates nothing once the
+ * frame size has settled. A RoiTracker holds the state of a single stream of frames and is not thread safe.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class RoiTracker {
+
+    private final GreenClassifier classifier;
+    private final BlobLabeller labeller;
+    private final DistanceTracker distanceTracker;
+    private final int MARGIN;
+    private final int FULL_SCAN_INTERVAL;
+    private final int MIN_AREA;
+
+    private boolean hasLastTarget;
+    private int lastMinX;
+    private int lastMinY;
+    private int lastMaxX;
+    private int lastMaxY;
+    private double lastCentroidX;
+    private double lastCentroidY;
+    private int motionX;
+    private int motionY;
+    private int framesSinceFullScan;
+    private int[] row;
+
+    private GreenMask classified;
+    private GreenMask cleaned;
+    private PixelBlob target;
+    private int cleanedFromRow;
+    private int cleanedToRow;
+
+    private long framesTracked;
+    private long roiHits;
+    private long roiMisses;
+    private long fullScans;
+    private long pixelsScanned;
+    private long pixelsInFrames;
+
+    /**
+     * Constructor for the RoiTracker class. Uses the default GreenClassifier, a 32 pixel margin, a full scan every
+     * 30 frames, and ignores regions smaller than 20 pixels.
+     */
+    public RoiTracker() {
+        this(GreenClassifier.getDefault(), 32, 30, 20);
+    }
+
+    /**
+     * Constructor for the RoiTracker class.
+     *
+     * @param classifier            the GreenClassifier which decides which pixels are green.
+     * @param margin                the number of pixels the previous bounding box is expanded by on every side.
+     * @param fullScanInterval      the number of frames after which the whole frame is scanned regardless, or 0 to
+     *                              only scan the whole frame when the target is lost.
+     * @param minArea               the smallest number of pixels a region needs to be the target.
+     */
+    public RoiTracker(GreenClassifier classifier, int margin, int fullScanInterval, int minArea) {
+        this.classifier = classifier;
+        this.labeller = new BlobLabeller();
+        this.distanceTracker = new DistanceTracker();
+        this.MARGIN = margin;
+        this.FULL_SCAN_INTERVAL = fullScanInterval;
+        this.MIN_AREA = minArea;
+        this.row = new int[0];
+    }
+
+    /**
+     * Finds the target in the next frame of the stream.
+     *
+     * @param frame     the next frame as an RgbFrame.
+     * @return          the target as a PixelBlob in frame coordinates, which is empty if there is no target. The
+     *                  same PixelBlob is reused for the next frame.
+     */
+    public PixelBlob track(RgbFrame frame) {
+
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        this.framesTracked++;
+        this.pixelsInFrames += (long) w * h;
+
+        if (this.classified == null || this.classified.getWidth() != w || this.classified.getHeight() != h) {
+            this.row = new int[w];
+            this.classified = new GreenMask(w, h);
+            this.cleaned = new GreenMask(w, h);
+            this.target = new PixelBlob(w, h);
+            this.cleanedFromRow = 0;
+            this.cleanedToRow = 0;
+            // the last target may lie outside a smaller frame
+            this.hasLastTarget = false;
+            this.motionX = 0;
+            this.motionY = 0;
+        }
+
+        boolean fullScanDue = this.FULL_SCAN_INTERVAL > 0 && this.framesSinceFullScan >= this.FULL_SCAN_INTERVAL;
+
+        if (this.hasLastTarget && !fullScanDue) {
+            // predict where the target has moved to, and allow for it moving as far again in any direction
+            int marginX = this.MARGIN + Math.abs(this.motionX);
+            int marginY = this.MARGIN + Math.abs(this.motionY);
+            int left = Math.max(0, this.lastMinX + this.motionX - marginX);
+            int top = Math.max(0, this.lastMinY + this.motionY - marginY);
+            int right = Math.min(w - 1, this.lastMaxX + this.motionX + marginX);
+            int bottom = Math.min(h - 1, this.lastMaxY + this.motionY + marginY);
+
+            if (left <= right && top <= bottom) {
+                PixelBlob target = scan(frame, left, top, right, bottom);
+                if (target.getCount() > 0 && !touchesInnerEdge(target, left, top, right, bottom, w, h)) {
+                    this.roiHits++;
+                    this.framesSinceFullScan++;
+                    remember(target);
+                    this.distanceTracker.update(target);
+                    return target;
+                }
+            }
+            this.roiMisses++;
+        }
+
+        PixelBlob target = scan(frame, 0, 0, w - 1, h - 1);
+        this.fullScans++;
+        this.framesSinceFullScan = 0;
+        if (target.getCount() > 0) {
+            remember(target);
+        } else {
+            // the DistanceTracker keeps its history through short gaps
+            this.hasLastTarget = false;
+            this.motionX = 0;
+            this.motionY = 0;
+        }
+        this.distanceTracker.update(target);
+        return target;
+    }
+
+    /**
+     * Forgets the previous target and its distance history, so that the next frame is scanned in full.
+     */
+    public void reset() {
+        this.hasLastTarget = false;
+        this.motionX = 0;
+        this.motionY = 0;
+        this.framesSinceFullScan = 0;
+        this.distanceTracker.reset();
+    }
+
+    /**
+     * Records the target found in the latest frame, along with how far its centroid moved since the previous one.
+     *
+     * @param target    the target found in the latest frame.
+     */
+    private void remember(PixelBlob target) {
+        if (this.hasLastTarget) {
+            this.motionX = (int) Math.round(target.getCentroidX() - this.lastCentroidX);
+            this.motionY = (int) Math.round(target.getCentroidY() - this.lastCentroidY);
+        }
+        this.hasLastTarget = true;
+        this.lastMinX = target.getMinX();
+        this.lastMinY = target.getMinY();
+        this.lastMaxX = target.getMaxX();
+        this.lastMaxY = target.getMaxY();
+        this.lastCentroidX = target.getCentroidX();
+        this.lastCentroidY = target.getCentroidY();
+    }
+
+    /**
+     * Classifies and cleans a rectangle of the frame and returns its largest region of green pixels.
+     * <p>
+     * The rectangle is classified into the frame sized mask along with up to four rows below it, which are read when
+     * its bottom rows are cleaned, and only the rows of the rectangle are cleaned. Every other pixel of both masks is
+     * clear, so a pixel of the rectangle is cleaned exactly as in a full scan, with the edges of the frame and not
+     * those of the rectangle left alone.
+     *
+     * @param frame     the frame being tracked.
+     * @param left      the first column of the rectangle.
+     * @param top       the first row of the rectangle.
+     * @param right     the last column of the rectangle.
+     * @param bottom    the last row of the rectangle.
+     * @return          the largest region as a PixelBlob in frame coordinates, empty if none is large enough.
+     */
+    private PixelBlob scan(RgbFrame frame, int left, int top, int right, int bottom) {
+
+        int roiWidth = right - left + 1;
+        int below = Math.min(frame.getHeight() - 1, bottom + 4);
+        this.pixelsScanned += (long) roiWidth * (bottom - top + 1);
+
+        long[] bits = this.classified.getBits();
+        int words = this.classified.getWordsPerRow();
+        Arrays.fill(bits, top * words, (below + 1) * words, 0);
+        for (int y = top; y <= below; y++) {
+            frame.readRow(y, left, roiWidth, this.row);
+            this.classifier.classifyRow(this.row, roiWidth, bits, y * words, left);
+        }
+
+        // forget the rows cleaned for the previous rectangle before cleaning this one
+        Arrays.fill(this.cleaned.getBits(), this.cleanedFromRow * words, this.cleanedToRow * words, 0);
+        this.classified.cleanInto(this.cleaned, top, bottom + 1);
+        this.cleanedFromRow = top;
+        this.cleanedToRow = bottom + 1;
+
+        this.target.clear();
+        return this.labeller.largest(this.cleaned, this.MIN_AREA, this.target);
+    }
+
+    /**
+     * Returns whether the target reaches an edge of the ROI which is not also an edge of the frame, in which case
+     * part of the target may have been cut off.
+     *
+     * @param target    the target found inside the ROI.
+     * @param left      the first column of the ROI.
+     * @param top       the first row of the ROI.
+     * @param right     the last column of the ROI.
+     * @param bottom    the last row of the ROI.
+     * @param width     the width of the frame.
+     * @param height    the height of the frame.
+     * @return          true if the target reaches an inner edge of the ROI.
+     */
+    private static boolean touchesInnerEdge(PixelBlob target, int left, int top, int right, int bottom,
+                                            int width, int height) {
+        return (left > 0 && target.getMinX() <= left)
+                || (top > 0 && target.getMinY() <= top)
+                || (right < width - 1 && target.getMaxX() >= right)
+                || (bottom < height - 1 && target.getMaxY() >= bottom);
+    }
+
+    /**
+     * Returns the DistanceTracker following the target, for its velocity estimates.
+     *
+     * @return  the DistanceTracker of the stream.
+     */
+    public DistanceTracker getDistanceTracker() {
+        return this.distanceTracker;
+    }
+
+    /**
+     * Returns the fraction of ROI scans which found the target without needing a full scan.
+     *
+     * @return  the ROI hit rate from 0 to 1, or 0 if no ROI scans have been made.
+     */
+    public double getRoiHitRate() {
+        long attempts = this.roiHits + this.roiMisses;
+        return attempts == 0 ? 0 : (double) this.roiHits / attempts;
+    }
+
+    /**
+     * Returns the fraction of all pixels in the tracked frames which were classified, including pixels classified
+     * by a failed ROI scan before a full scan.
+     *
+     * @return  the fraction of pixels scanned, which is 1 if every frame was scanned in full once.
+     */
+    public double getScannedFraction() {
+        return this.pixelsInFrames == 0 ? 0 : (double) this.pixelsScanned / this.pixelsInFrames;
+    }
+
+    /**
+     * Returns the number of frames tracked.
+     *
+     * @return  the number of frames tracked.
+     */
+    public long getFramesTracked() {
+        return this.framesTracked;
+    }
+
+    /**
+     * Returns the number of frames in which the target was found inside the ROI.
+     *
+     * @return  the number of ROI hits.
+     */
+    public long getRoiHits() {
+        return this.roiHits;
+    }
+
+    /**
+     * Returns the number of frames in which the ROI scan failed and the frame was scanned in full.
+     *
+     * @return  the number of ROI misses.
+     */
+    public long getRoiMisses() {
+        return this.roiMisses;
+    }
+
+    /**
+     * Returns the number of full frame scans, whether scheduled or after a miss.
+     *
+     * @return  the number of full scans.
+     */
+    public long getFullScans() {
+        return this.fullScans;
+    }
+
+    /**
+     * Tracks the target through 300 synthetic 1920x1080 frames and prints the hit rate and the work saved.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        RoiTracker tracker = new RoiTracker();
+        SyntheticFrameSource source = new SyntheticFrameSource(1920, 1080, 300);
+
+        long start = System.nanoTime();
+        RgbFrame frame;
+        while ((frame = source.nextFrame()) != null) {
+            tracker.track(frame);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("frames: " + tracker.getFramesTracked() + " in " + elapsed / 1000000 + " ms");
+        System.out.println("roi hit rate: " + tracker.getRoiHitRate());
+        System.out.println("full scans: " + tracker.getFullScans());
+        System.out.println("fraction of pixels scanned: " + tracker.getScannedFraction());
+    }
+}
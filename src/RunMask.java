@@ -0,0 +1,724 @@
+import java.util.Arrays;
+
+/**
+ * <h1>RunMask</h1>
+ * RunMask objects hold the green pixels of a frame as horizontal runs, each stored as its row and its first and last
+ * columns, instead of one bit or one int per pixel. A green target is a few hundred runs however many pixels it
+ * covers, so a RunMask of a typical frame takes a few kilobytes where the int[w][h] mask of the original pipeline
+ * takes megabytes, and every operation on it scales with the number of runs, which is the height of the regions and
+ * not their area.
+ * <p>
+ * The runs are kept ordered by row and then by column, and the runs of a row never overlap or touch. An index of the
+ * first run of every row lets the runs of any row be found directly. The mask is cleaned, labelled by a BlobLabeller,
+ * and measured (area, bounding box, centroid, median, and the order statistics used by PixelBlob.getSize()) without
+ * expanding the runs back into pixels, and the results match the same operations on a GreenMask exactly.
+ * <p>
+ * The arrays are kept and grown between frames, so a RunMask should be reused. It is not thread safe.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class RunMask {
+
+    private int width;
+    private int height;
+
+    private int[] runRow;
+    private int[] runStart;
+    private int[] runEnd;
+    private int[] rowFirst;
+    private int runCount;
+    private int lastRow;
+
+    private int[] spareStart;
+    private int[] spareEnd;
+    private int[] spareRow;
+    private int[] scratchStart;
+    private int[] scratchEnd;
+    private long[] rowBits;
+
+    /**
+     * Constructor for the RunMask class. Creates an empty mask of the given dimensions.
+     *
+     * @param width     the width of the mask in pixels.
+     * @param height    the height of the mask in pixels.
+     */
+    public RunMask(int width, int height) {
+        this.runRow = new int[256];
+        this.runStart = new int[256];
+        this.runEnd = new int[256];
+        this.spareRow = new int[256];
+        this.spareStart = new int[256];
+        this.spareEnd = new int[256];
+        this.scratchStart = new int[64];
+        this.scratchEnd = new int[64];
+        this.rowBits = new long[0];
+        reset(width, height);
+    }
+
+    /**
+     * Empties the mask and changes its dimensions, keeping the arrays that have already been allocated.
+     *
+     * @param width     the new width of the mask in pixels.
+     * @param height    the new height of the mask in pixels.
+     */
+    public void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        if (this.rowFirst == null || this.rowFirst.length < height + 1) {
+            this.rowFirst = new int[height + 1];
+        }
+        this.runCount = 0;
+        this.lastRow = -1;
+    }
+
+    /**
+     * Returns the width of the mask.
+     *
+     * @return  the width in pixels.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the mask.
+     *
+     * @return  the height in pixels.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Appends a run of green pixels. Runs must be added in order of row and then column, and a run touching the
+     * previous run of the same row is merged into it.
+     *
+     * @param y         the row of the run.
+     * @param startX    the column of the first pixel in the run (inclusive).
+     * @param endX      the column of the last pixel in the run (inclusive).
+     */
+    public void addRun(int y, int startX, int endX) {
+        if (y < this.lastRow || (y == this.lastRow && startX <= this.runEnd[this.runCount - 1])) {
+            throw new IllegalArgumentException("runs must be added in order: row " + y + " from " + startX);
+        }
+        while (this.lastRow < y) {
+            this.rowFirst[++this.lastRow] = this.runCount;
+        }
+        if (this.runCount > this.rowFirst[y] && startX == this.runEnd[this.runCount - 1] + 1) {
+            this.runEnd[this.runCount - 1] = endX;
+            return;
+        }
+        if (this.runCount == this.runRow.length) {
+            int capacity = this.runCount * 2;
+            this.runRow = copyOf(this.runRow, capacity);
+            this.runStart = copyOf(this.runStart, capacity);
+            this.runEnd = copyOf(this.runEnd, capacity);
+        }
+        this.runRow[this.runCount] = y;
+        this.runStart[this.runCount] = startX;
+        this.runEnd[this.runCount] = endX;
+        this.runCount++;
+    }
+
+    /**
+     * Replaces the contents of the mask with the runs of a GreenMask, taking on its dimensions.
+     *
+     * @param mask  the GreenMask to encode.
+     */
+    public void setFrom(GreenMask mask) {
+        reset(mask.getWidth(), mask.getHeight());
+        int w = mask.getWidth();
+        for (int y = 0; y < mask.getHeight(); y++) {
+            int x = mask.nextSetBit(y, 0);
+            while (x < w) {
+                int end = mask.nextClearBit(y, x);
+                addRun(y, x, end - 1);
+                x = mask.nextSetBit(y, end);
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents of the mask with the green pixels of a frame, classifying one row at a time into a
+     * single reusable row of bits, so that the frame is never held as a full mask.
+     *
+     * @param frame         the frame to classify.
+     * @param classifier    the GreenClassifier which decides which pixels are green.
+     * @param row           a buffer at least as long as the frame is wide, which receives each row of pixels.
+     */
+    public void classify(RgbFrame frame, GreenClassifier classifier, int[] row) {
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        reset(w, h);
+
+        int words = (w + 63) >>> 6;
+        if (this.rowBits.length < words) {
+            this.rowBits = new long[words];
+        }
+        long[] bits = this.rowBits;
+
+        for (int y = 0; y < h; y++) {
+            frame.readRow(y, 0, w, row);
+            for (int i = 0; i < words; i++) {
+                bits[i] = 0;
+            }
+            classifier.classifyRow(row, w, bits, 0, 0);
+
+            // find the runs of set bits a word at a time
+            int x = nextBit(bits, words, 0, true);
+            while (x < w) {
+                int end = Math.min(w, nextBit(bits, words, x, false));
+                addRun(y, x, end - 1);
+                x = nextBit(bits, words, end, true);
+            }
+        }
+    }
+
+    /**
+     * Returns the first column at or after fromX whose bit is set, or clear, in a single row of bits.
+     *
+     * @param bits      the row of bits.
+     * @param words     the number of words in the row.
+     * @param fromX     the column to start from.
+     * @param set       true to find a set bit, false to find a clear bit.
+     * @return          the column found, or words * 64 if there is none.
+     */
+    private static int nextBit(long[] bits, int words, int fromX, boolean set) {
+        int w = fromX >>> 6;
+        if (w >= words) {
+            return words << 6;
+        }
+        long word = (set ? bits[w] : ~bits[w]) & (-1L << fromX);
+        while (word == 0) {
+            if (++w == words) {
+                return words << 6;
+            }
+            word = set ? bits[w] : ~bits[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Writes the runs into a GreenMask of the same dimensions, which should be empty.
+     *
+     * @param mask  the GreenMask to set the green pixels of.
+     */
+    public void writeTo(GreenMask mask) {
+        long[] bits = mask.getBits();
+        int words = mask.getWordsPerRow();
+        for (int r = 0; r < this.runCount; r++) {
+            int row = this.runRow[r] * words;
+            for (int x = this.runStart[r]; x <= this.runEnd[r]; ) {
+                int bit = x & 63;
+                int count = Math.min(64 - bit, this.runEnd[r] - x + 1);
+                long ones = count == 64 ? -1L : ((1L << count) - 1);
+                bits[row + (x >>> 6)] |= ones << bit;
+                x += count;
+            }
+        }
+    }
+
+    /**
+     * Removes stray green pixels in the same way as GreenMask.clean(): a pixel in an interior row is kept only if it
+     * and the (up to) four pixels below it are green, while the first and last rows and columns are left alone.
+     * Each row is cleaned by intersecting its runs with the runs of the rows below, so the work done is
+     * proportional to the number of runs.
+     */
+    public void clean() {
+
+        if (this.width < 3 || this.height < 3 || this.runCount == 0) {
+            return;
+        }
+        closeRows();
+
+        int[] cleanRow = this.spareRow;
+        int[] cleanStart = this.spareStart;
+        int[] cleanEnd = this.spareEnd;
+        int count = 0;
+        int lastColumn = this.width - 1;
+
+        for (int y = 0; y < this.height; y++) {
+            int first = this.rowFirst[y];
+            int end = this.rowFirst[y + 1];
+            if (first == end) {
+                continue;
+            }
+
+            int kept;
+            if (y == 0 || y == this.height - 1) {
+                kept = copyRow(y);
+            } else {
+                kept = copyRow(y);
+                int last = Math.min(y + 4, this.height - 1);
+                for (int below = y + 1; below <= last && kept > 0; below++) {
+                    kept = intersect(kept, below);
+                }
+                kept = restoreEdges(kept, y, lastColumn);
+            }
+
+            if (count + kept > cleanRow.length) {
+                int capacity = Math.max(cleanRow.length * 2, count + kept);
+                cleanRow = copyOf(cleanRow, capacity);
+                cleanStart = copyOf(cleanStart, capacity);
+                cleanEnd = copyOf(cleanEnd, capacity);
+            }
+            for (int i = 0; i < kept; i++) {
+                cleanRow[count] = y;
+                cleanStart[count] = this.scratchStart[i];
+                cleanEnd[count] = this.scratchEnd[i];
+                count++;
+            }
+        }
+
+        // swap the cleaned runs in, keeping the old arrays for the next clean
+        this.spareRow = this.runRow;
+        this.spareStart = this.runStart;
+        this.spareEnd = this.runEnd;
+        this.runRow = cleanRow;
+        this.runStart = cleanStart;
+        this.runEnd = cleanEnd;
+        this.runCount = count;
+        rebuildRowIndex();
+    }
+
+    /**
+     * Copies the runs of a row into the scratch arrays.
+     *
+     * @param y     the row to copy.
+     * @return      the number of runs copied.
+     */
+    private int copyRow(int y) {
+        int first = this.rowFirst[y];
+        int count = this.rowFirst[y + 1] - first;
+        ensureScratch(count + 2);
+        System.arraycopy(this.runStart, first, this.scratchStart, 0, count);
+        System.arraycopy(this.runEnd, first, this.scratchEnd, 0, count);
+        return count;
+    }
+
+    /**
+     * Intersects the runs in the scratch arrays with the runs of another row, leaving the result in the scratch
+     * arrays. As both lists are ordered and no two runs of a list overlap, a single merge-like pass is enough, and
+     * the result never has more runs than the two lists together.
+     *
+     * @param count     the number of runs in the scratch arrays.
+     * @param y         the row to intersect with.
+     * @return          the number of runs left in the scratch arrays.
+     */
+    private int intersect(int count, int y) {
+        int other = this.rowFirst[y];
+        int otherEnd = this.rowFirst[y + 1];
+        ensureScratch(2 * count + (otherEnd - other) + 2);
+
+        // the result is written after the input and moved down afterwards, as it may have more runs than the input
+        int[] starts = this.scratchStart;
+        int[] ends = this.scratchEnd;
+        int out = count;
+        int i = 0;
+        int j = other;
+        while (i < count && j < otherEnd) {
+            int start = Math.max(starts[i], this.runStart[j]);
+            int end = Math.min(ends[i], this.runEnd[j]);
+            if (start <= end) {
+                starts[out] = start;
+                ends[out] = end;
+                out++;
+            }
+            if (ends[i] < this.runEnd[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int kept = out - count;
+        System.arraycopy(starts, count, starts, 0, kept);
+        System.arraycopy(ends, count, ends, 0, kept);
+        return kept;
+    }
+
+    /**
+     * Puts back the pixels of the first and last columns of a row, which the cleaner leaves alone, merging them into
+     * any run they touch.
+     *
+     * @param count         the number of cleaned runs in the scratch arrays.
+     * @param y             the row being cleaned.
+     * @param lastColumn    the index of the last column.
+     * @return              the number of runs in the scratch arrays.
+     */
+    private int restoreEdges(int count, int y, int lastColumn) {
+        int first = this.rowFirst[y];
+        int last = this.rowFirst[y + 1] - 1;
+        int[] starts = this.scratchStart;
+        int[] ends = this.scratchEnd;
+
+        if (this.runStart[first] == 0 && (count == 0 || starts[0] != 0)) {
+            if (count > 0 && starts[0] == 1) {
+                starts[0] = 0;
+            } else {
+                System.arraycopy(starts, 0, starts, 1, count);
+                System.arraycopy(ends, 0, ends, 1, count);
+                starts[0] = 0;
+                ends[0] = 0;
+                count++;
+            }
+        }
+        if (this.runEnd[last] == lastColumn && (count == 0 || ends[count - 1] != lastColumn)) {
+            if (count > 0 && ends[count - 1] == lastColumn - 1) {
+                ends[count - 1] = lastColumn;
+            } else {
+                starts[count] = lastColumn;
+                ends[count] = lastColumn;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void ensureScratch(int capacity) {
+        if (this.scratchStart.length < capacity) {
+            int size = Math.max(capacity, this.scratchStart.length * 2);
+            this.scratchStart = copyOf(this.scratchStart, size);
+            this.scratchEnd = copyOf(this.scratchEnd, size);
+        }
+    }
+
+    /**
+     * Fills in the index of the first run of every row after the last row that has been added.
+     */
+    private void closeRows() {
+        while (this.lastRow < this.height) {
+            this.rowFirst[++this.lastRow] = this.runCount;
+        }
+        this.lastRow = this.height - 1;
+        this.rowFirst[this.height] = this.runCount;
+    }
+
+    /**
+     * Rebuilds the index of the first run of every row from the row of each run.
+     */
+    private void rebuildRowIndex() {
+        int r = 0;
+        for (int y = 0; y <= this.height; y++) {
+            while (r < this.runCount && this.runRow[r] < y) {
+                r++;
+            }
+            this.rowFirst[y] = r;
+        }
+        this.lastRow = this.height - 1;
+    }
+
+    /**
+     * Returns the number of runs in the mask.
+     *
+     * @return  the number of runs.
+     */
+    public int getRunCount() {
+        return this.runCount;
+    }
+
+    /**
+     * Returns the row of a run.
+     *
+     * @param run   the index of the run, from 0 to getRunCount()-1.
+     * @return      the row of the run.
+     */
+    public int getRunRow(int run) {
+        return this.runRow[run];
+    }
+
+    /**
+     * Returns the first column of a run.
+     *
+     * @param run   the index of the run, from 0 to getRunCount()-1.
+     * @return      the column of the first pixel of the run.
+     */
+    public int getRunStart(int run) {
+        return this.runStart[run];
+    }
+
+    /**
+     * Returns the last column of a run.
+     *
+     * @param run   the index of the run, from 0 to getRunCount()-1.
+     * @return      the column of the last pixel of the run.
+     */
+    public int getRunEnd(int run) {
+        return this.runEnd[run];
+    }
+
+    /**
+     * Returns the number of green pixels in the mask.
+     *
+     * @return  the total length of the runs.
+     */
+    public int count() {
+        int total = 0;
+        for (int r = 0; r < this.runCount; r++) {
+            total += this.runEnd[r] - this.runStart[r] + 1;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the smallest column of any green pixel.
+     *
+     * @return  the left edge of the bounding box, or -1 if the mask is empty.
+     */
+    public int getMinX() {
+        if (this.runCount == 0) {
+            return -1;
+        }
+        int min = Integer.MAX_VALUE;
+        for (int r = 0; r < this.runCount; r++) {
+            min = Math.min(min, this.runStart[r]);
+        }
+        return min;
+    }
+
+    /**
+     * Returns the largest column of any green pixel.
+     *
+     * @return  the right edge of the bounding box, or -1 if the mask is empty.
+     */
+    public int getMaxX() {
+        int max = -1;
+        for (int r = 0; r < this.runCount; r++) {
+            max = Math.max(max, this.runEnd[r]);
+        }
+        return max;
+    }
+
+    /**
+     * Returns the smallest row of any green pixel.
+     *
+     * @return  the top edge of the bounding box, or -1 if the mask is empty.
+     */
+    public int getMinY() {
+        return this.runCount == 0 ? -1 : this.runRow[0];
+    }
+
+    /**
+     * Returns the largest row of any green pixel.
+     *
+     * @return  the bottom edge of the bounding box, or -1 if the mask is empty.
+     */
+    public int getMaxY() {
+        return this.runCount == 0 ? -1 : this.runRow[this.runCount - 1];
+    }
+
+    /**
+     * Returns the mean column of the green pixels.
+     *
+     * @return  the x value of the centroid, or -1 if the mask is empty.
+     */
+    public double getCentroidX() {
+        long sum = 0;
+        long total = 0;
+        for (int r = 0; r < this.runCount; r++) {
+            long length = this.runEnd[r] - this.runStart[r] + 1;
+            sum += ((long) this.runStart[r] + this.runEnd[r]) * length / 2;
+            total += length;
+        }
+        return total == 0 ? -1 : (double) sum / total;
+    }
+
+    /**
+     * Returns the mean row of the green pixels.
+     *
+     * @return  the y value of the centroid, or -1 if the mask is empty.
+     */
+    public double getCentroidY() {
+        long sum = 0;
+        long total = 0;
+        for (int r = 0; r < this.runCount; r++) {
+            long length = this.runEnd[r] - this.runStart[r] + 1;
+            sum += this.runRow[r] * length;
+            total += length;
+        }
+        return total == 0 ? -1 : (double) sum / total;
+    }
+
+    /**
+     * Returns the column which would be at the given index if the columns of every green pixel were sorted, as
+     * AxisHistogram.getSorted() does for the x histogram. The column is found by a binary search over the columns,
+     * counting the pixels of every run at or left of each guess.
+     *
+     * @param index     the zero-based index into the sorted columns.
+     * @return          the column at that index, or -1 if there are fewer than index+1 green pixels.
+     */
+    public int getSortedX(int index) {
+        if (index < 0 || index >= count()) {
+            return -1;
+        }
+        int low = getMinX();
+        int high = getMaxX();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long atOrLeft = 0;
+            for (int r = 0; r < this.runCount; r++) {
+                if (this.runStart[r] <= middle) {
+                    atOrLeft += Math.min(this.runEnd[r], middle) - this.runStart[r] + 1;
+                }
+            }
+            if (atOrLeft > index) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the row which would be at the given index if the rows of every green pixel were sorted, as
+     * AxisHistogram.getSorted() does for the y histogram.
+     *
+     * @param index     the zero-based index into the sorted rows.
+     * @return          the row at that index, or -1 if there are fewer than index+1 green pixels.
+     */
+    public int getSortedY(int index) {
+        if (index < 0) {
+            return -1;
+        }
+        long seen = 0;
+        for (int r = 0; r < this.runCount; r++) {
+            seen += this.runEnd[r] - this.runStart[r] + 1;
+            if (seen > index) {
+                return this.runRow[r];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the median column of the green pixels, taken as the element at index count/2 of the sorted columns
+     * like AxisHistogram.getMedian().
+     *
+     * @return  the median column, or -1 if the mask is empty.
+     */
+    public int getMedianX() {
+        return getSortedX(count() / 2);
+    }
+
+    /**
+     * Returns the median row of the green pixels, taken as the element at index count/2 of the sorted rows like
+     * AxisHistogram.getMedian().
+     *
+     * @return  the median row, or -1 if the mask is empty.
+     */
+    public int getMedianY() {
+        return getSortedY(count() / 2);
+    }
+
+    /**
+     * Returns the approximate size of the green area in the same way as PixelBlob.getSize(), from the 10th smallest
+     * and the largest column and row.
+     *
+     * @return  the approximate size of the green area, or 0 if there are no more than 10 green pixels.
+     */
+    public int getSize() {
+        if (count() <= 10) {
+            return 0;
+        }
+        return (getMaxX() - getSortedX(10)) * (getMaxY() - getSortedY(10));
+    }
+
+    /**
+     * Adds every run to a PixelBlob, such as the target returned by ImageTools.
+     *
+     * @param blob  the PixelBlob to add the green pixels to.
+     */
+    public void addTo(PixelBlob blob) {
+        for (int r = 0; r < this.runCount; r++) {
+            blob.addRun(this.runRow[r], this.runStart[r], this.runEnd[r]);
+        }
+    }
+
+    /**
+     * Returns the number of bytes held by the runs and the row index, which is what the mask costs in memory.
+     *
+     * @return  the size of the runs in bytes.
+     */
+    public long getRunBytes() {
+        return 12L * this.runCount + 4L * (this.height + 1);
+    }
+
+    private static int[] copyOf(int[] array, int capacity) {
+        int[] larger = new int[capacity];
+        System.arraycopy(array, 0, larger, 0, Math.min(array.length, capacity));
+        return larger;
+    }
+
+    /**
+     * Classifies synthetic frames of several sizes into a RunMask and into a GreenMask, cleans both, and prints
+     * whether the cleaned masks and their statistics agree, along with the memory each takes compared with the
+     * int[w][h] mask of the original pipeline and the time taken to classify and clean.
+     * <p>
+     * Usage: java RunMask [frames]
+     */
+    public static void main(String[] args) {
+
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int[][] sizes = {{320, 240}, {640, 480}, {1920, 1080}};
+        GreenClassifier classifier = GreenClassifier.getDefault();
+
+        System.out.println(String.format("%-10s %7s %7s %11s %11s %9s %9s %9s", "frame", "agree", "runs",
+                "int[w][h]", "GreenMask", "RunMask", "mask ms", "runs ms"));
+
+        for (int[] size : sizes) {
+            int w = size[0];
+            int h = size[1];
+            RunMask runs = new RunMask(w, h);
+            GreenMask mask = new GreenMask(w, h);
+            GreenMask decoded = new GreenMask(w, h);
+            int[] row = new int[w];
+            int agreed = 0;
+            long runBytes = 0;
+            long runCount = 0;
+            long maskNanos = 0;
+            long runNanos = 0;
+
+            for (int i = 0; i < frames; i++) {
+                RgbFrame frame = new BufferedImageFrame(SyntheticFrameSource.createFrame(w, h, i * 13));
+
+                long start = System.nanoTime();
+                mask.clear();
+                for (int y = 0; y < h; y++) {
+                    frame.readRow(y, 0, w, row);
+                    classifier.classifyRow(row, w, mask.getBits(), y * mask.getWordsPerRow(), 0);
+                }
+                mask.clean();
+                AxisHistogram xHistogram = new AxisHistogram(w);
+                AxisHistogram yHistogram = new AxisHistogram(h);
+                mask.addTo(xHistogram, yHistogram, 0, h);
+                PixelBlob blob = new PixelBlob(xHistogram, yHistogram);
+                long middle = System.nanoTime();
+                runs.classify(frame, classifier, row);
+                runs.clean();
+                int count = runs.count();
+                int medianX = runs.getMedianX();
+                int medianY = runs.getMedianY();
+                int blobSize = runs.getSize();
+                runNanos += System.nanoTime() - middle;
+                maskNanos += middle - start;
+
+                decoded.clear();
+                runs.writeTo(decoded);
+                if (Arrays.equals(decoded.getBits(), mask.getBits()) && count == blob.getCount()
+                        && runs.getMinX() == blob.getMinX() && runs.getMaxX() == blob.getMaxX()
+                        && runs.getMinY() == blob.getMinY() && runs.getMaxY() == blob.getMaxY()
+                        && medianX == xHistogram.getMedian() && medianY == yHistogram.getMedian()
+                        && blobSize == blob.getSize()) {
+                    agreed++;
+                }
+                runBytes += runs.getRunBytes();
+                runCount += runs.getRunCount();
+            }
+
+            System.out.println(String.format("%-10s %4d/%-2d %7d %11d %11d %9d %9.2f %9.2f", w + "x" + h, agreed,
+                    frames, runCount / frames, 4L * w * h, 8L * mask.getWordsPerRow() * h, runBytes / frames,
+                    maskNanos / 1e6 / frames, runNanos / 1e6 / frames));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ * <h1>StreamListener</h1>
+ * StreamListener is implemented by anything which wants to receive the TargetResults of every stream watched by a
+ * TrackingService, along with the name of the stream each result came from.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public interface StreamListener {
+
+    /**
+     * Called with each result of every stream. This is called on one of the service's worker threads, so listeners
+     * which update a Swing UI need to hand the result over to the event dispatch thread.
+     *
+     * @param stream    the name of the stream the frame came from.
+     * @param result    the TargetResult of an analysed frame.
+     */
+    void onResult(String stream, TargetResult result);
+}
@@ -0,0 +1,329 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <h1>SummedAreaTable</h1>
+ * SummedAreaTable objects hold the integral image of a cleaned mask: for every pixel, the number of green pixels
+ * above and to the left of it, inclusive. It is built in a single pass over a GreenMask or a RunMask, after which
+ * the number of green pixels in any rectangle is found from four values of the table, however large the rectangle
+ * is.
+ * <p>
+ * This makes questions about parts of the frame, such as how much of the green lies in each of the nine regions of
+ * a CentreBoundary, cost the same as a few array reads instead of another scan of the mask.
+ * <p>
+ * The table is kept between frames and only replaced when the dimensions change, so a SummedAreaTable should be
+ * reused. It is not thread safe.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class SummedAreaTable {
+
+    /**
+     * The names of the nine regions of a CentreBoundary, in the order used by getZoneCounts(). They are the same
+     * Strings returned by CentreBoundary.getPosition().
+     */
+    public static final String[] ZONES = {
+            "above-left", "above", "above-right",
+            "left", "centre", "right",
+            "below-left", "below", "below-right"
+    };
+
+    private int width;
+    private int height;
+    private int stride;
+    private int[] table;
+    private int[] zoneBounds;
+
+    /**
+     * Constructor for the SummedAreaTable class. The table is allocated by the first call to build().
+     */
+    public SummedAreaTable() {
+        this.table = new int[0];
+        this.zoneBounds = new int[4];
+    }
+
+    /**
+     * Returns the width of the mask the table was built from.
+     *
+     * @return  the width in pixels.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the mask the table was built from.
+     *
+     * @return  the height in pixels.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Builds the table from a GreenMask, replacing whatever it held before.
+     *
+     * @param mask  the GreenMask to sum.
+     */
+    public void build(GreenMask mask) {
+
+        int w = mask.getWidth();
+        int h = mask.getHeight();
+        prepare(w, h);
+
+        long[] bits = mask.getBits();
+        int words = mask.getWordsPerRow();
+        int[] sums = this.table;
+
+        for (int y = 0; y < h; y++) {
+            int above = y * this.stride + 1;
+            int below = above + this.stride;
+            int row = y * words;
+            int rowSum = 0;
+            for (int x = 0; x < w; x++) {
+                rowSum += (int) (bits[row + (x >>> 6)] >>> x) & 1;
+                sums[below + x] = sums[above + x] + rowSum;
+            }
+        }
+    }
+
+    /**
+     * Builds the table from a RunMask, replacing whatever it held before. Between runs the count of a row does not
+     * change, so only the columns inside runs add anything.
+     *
+     * @param mask  the RunMask to sum.
+     */
+    public void build(RunMask mask) {
+
+        int w = mask.getWidth();
+        int h = mask.getHeight();
+        prepare(w, h);
+
+        int[] sums = this.table;
+        int runs = mask.getRunCount();
+        int r = 0;
+
+        for (int y = 0; y < h; y++) {
+            int above = y * this.stride + 1;
+            int below = above + this.stride;
+            int rowSum = 0;
+            int x = 0;
+            while (r < runs && mask.getRunRow(r) == y) {
+                int start = mask.getRunStart(r);
+                int end = mask.getRunEnd(r);
+                for (; x < start; x++) {
+                    sums[below + x] = sums[above + x] + rowSum;
+                }
+                for (; x <= end; x++) {
+                    sums[below + x] = sums[above + x] + ++rowSum;
+                }
+                r++;
+            }
+            for (; x < w; x++) {
+                sums[below + x] = sums[above + x] + rowSum;
+            }
+        }
+    }
+
+    /**
+     * Sets the dimensions of the table, reallocating it only if it is too small. The first row and the first column
+     * are always zero, so that rectangles touching the edges of the frame need no special case.
+     *
+     * @param w     the width of the mask.
+     * @param h     the height of the mask.
+     */
+    private void prepare(int w, int h) {
+        this.width = w;
+        this.height = h;
+        this.stride = w + 1;
+        int size = this.stride * (h + 1);
+        if (this.table.length < size) {
+            this.table = new int[size];
+        } else {
+            for (int i = 0; i < this.stride; i++) {
+                this.table[i] = 0;
+            }
+            for (int y = 1; y <= h; y++) {
+                this.table[y * this.stride] = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of green pixels in a rectangle. The rectangle is clipped to the frame.
+     *
+     * @param left      the first column of the rectangle (inclusive).
+     * @param top       the first row of the rectangle (inclusive).
+     * @param right     the last column of the rectangle (inclusive).
+     * @param bottom    the last row of the rectangle (inclusive).
+     * @return          the number of green pixels in the rectangle, or 0 if it lies outside the frame.
+     */
+    public int count(int left, int top, int right, int bottom) {
+        left = Math.max(left, 0);
+        top = Math.max(top, 0);
+        right = Math.min(right, this.width - 1);
+        bottom = Math.min(bottom, this.height - 1);
+        if (left > right || top > bottom) {
+            return 0;
+        }
+        int upper = top * this.stride;
+        int lower = (bottom + 1) * this.stride;
+        return this.table[lower + right + 1] - this.table[lower + left] - this.table[upper + right + 1]
+                + this.table[upper + left];
+    }
+
+    /**
+     * Returns the number of green pixels in the whole frame.
+     *
+     * @return  the number of green pixels.
+     */
+    public int getTotal() {
+        return count(0, 0, this.width - 1, this.height - 1);
+    }
+
+    /**
+     * Counts the green pixels in each of the nine regions of a CentreBoundary. The regions do not overlap, and each
+     * pixel is counted in the region CentreBoundary.getPosition() gives for its coordinates, so the nine counts add
+     * up to getTotal().
+     *
+     * @param b         the CentreBoundary of the frame.
+     * @param counts    an array of at least nine ints, which receives the counts in the order of ZONES.
+     * @return          the counts array.
+     */
+    public int[] getZoneCounts(CentreBoundary b, int[] counts) {
+        int[] bounds = this.zoneBounds;
+        for (int zone = 0; zone < ZONES.length; zone++) {
+            getZoneBounds(b, zone, bounds);
+            counts[zone] = count(bounds[0], bounds[1], bounds[2], bounds[3]);
+        }
+        return counts;
+    }
+
+    /**
+     * Works out the fraction of each of the nine regions of a CentreBoundary which is green.
+     *
+     * @param b         the CentreBoundary of the frame.
+     * @param coverage  an array of at least nine doubles, which receives the coverage of each region from 0 to 1,
+     *                  in the order of ZONES.
+     * @return          the coverage array.
+     */
+    public double[] getZoneCoverage(CentreBoundary b, double[] coverage) {
+        int[] bounds = this.zoneBounds;
+        for (int zone = 0; zone < ZONES.length; zone++) {
+            getZoneBounds(b, zone, bounds);
+            long area = (long) Math.max(0, bounds[2] - bounds[0] + 1) * Math.max(0, bounds[3] - bounds[1] + 1);
+            coverage[zone] = area == 0 ? 0 : (double) count(bounds[0], bounds[1], bounds[2], bounds[3]) / area;
+        }
+        return coverage;
+    }
+
+    /**
+     * Works out the rectangle covered by one of the nine regions of a CentreBoundary, matching the order of the tests
+     * in CentreBoundary.getPosition(): the top band takes rows up to and including the top of the boundary, and the
+     * middle band the rows after it up to and including the bottom. In the top and bottom bands the left and right
+     * columns of the boundary belong to the corner and middle regions, while in the middle band both belong to the
+     * centre.
+     *
+     * @param b         the CentreBoundary of the frame.
+     * @param zone      the index of the region in ZONES.
+     * @param bounds    an array of four ints which receives the left, top, right and bottom of the region,
+     *                  clipped to the frame. The rectangle is empty if left is greater than right or top is greater
+     *                  than bottom.
+     */
+    private void getZoneBounds(CentreBoundary b, int zone, int[] bounds) {
+
+        int band = zone / 3;
+        int column = zone % 3;
+        int left = band == 1 ? b.getLeft() - 1 : b.getLeft();
+        int right = b.getRight();
+
+        // each region starts after the edge of the one before it and ends at its own edge
+        int firstColumn = column == 0 ? 0 : (column == 1 ? left : right) + 1;
+        int lastColumn = column == 0 ? left : (column == 1 ? right : this.width - 1);
+        int firstRow = band == 0 ? 0 : (band == 1 ? b.getTop() : b.getBottom()) + 1;
+        int lastRow = band == 0 ? b.getTop() : (band == 1 ? b.getBottom() : this.height - 1);
+
+        bounds[0] = Math.max(firstColumn, 0);
+        bounds[1] = Math.max(firstRow, 0);
+        bounds[2] = Math.min(lastColumn, this.width - 1);
+        bounds[3] = Math.min(lastRow, this.height - 1);
+    }
+
+    /**
+     * Builds the table for synthetic frames, checks the nine zone counts against classifying every green pixel with
+     * CentreBoundary.getPosition(), and compares the time taken by the two.
+     * <p>
+     * Usage: java SummedAreaTable [frames]
+     */
+    public static void main(String[] args) {
+
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int[][] sizes = {{320, 240}, {640, 480}, {1920, 1080}};
+        GreenClassifier classifier = GreenClassifier.getDefault();
+        SummedAreaTable table = new SummedAreaTable();
+        int[] counts = new int[9];
+        double[] coverage = new double[9];
+        Map<String, Integer> zoneIndex = new HashMap<>();
+        for (int i = 0; i < ZONES.length; i++) {
+            zoneIndex.put(ZONES[i], i);
+        }
+
+        System.out.println(String.format("%-10s %7s %10s %12s %12s", "frame", "agree", "build ms", "zones us",
+                "scan us"));
+
+        for (int[] size : sizes) {
+            int w = size[0];
+            int h = size[1];
+            ImageTools tools = new ImageTools(ImageTools.Mode.SINGLE_PASS, classifier);
+            RunMask runs = new RunMask(w, h);
+            GreenMask mask = new GreenMask(w, h);
+            int[] row = new int[w];
+            int agreed = 0;
+            long buildNanos = 0;
+            long zoneNanos = 0;
+            long scanNanos = 0;
+
+            for (int i = 0; i < frames; i++) {
+                RgbFrame frame = new BufferedImageFrame(SyntheticFrameSource.createFrame(w, h, i * 17,
+                        0.02 + 0.04 * (i % 8)));
+                CentreBoundary b = tools.getCentreBoundary(frame);
+                runs.classify(frame, classifier, row);
+                runs.clean();
+                mask.clear();
+                runs.writeTo(mask);
+
+                long start = System.nanoTime();
+                table.build(mask);
+                long built = System.nanoTime();
+                table.getZoneCounts(b, counts);
+                table.getZoneCoverage(b, coverage);
+                long queried = System.nanoTime();
+
+                // the same counts found the slow way, one pixel at a time
+                int[] expected = new int[9];
+                for (int y = 0; y < h; y++) {
+                    for (int x = mask.nextSetBit(y, 0); x < w; x = mask.nextSetBit(y, x + 1)) {
+                        expected[zoneIndex.get(b.getPosition(x, y))]++;
+                    }
+                }
+                long scanned = System.nanoTime();
+
+                buildNanos += built - start;
+                zoneNanos += queried - built;
+                scanNanos += scanned - queried;
+
+                boolean same = Arrays.equals(counts, expected);
+                table.build(runs);
+                same &= Arrays.equals(table.getZoneCounts(b, new int[9]), expected);
+                if (same) {
+                    agreed++;
+                }
+            }
+
+            System.out.println(String.format("%-10s %4d/%-2d %10.2f %12.2f %12.1f", w + "x" + h, agreed, frames,
+                    buildNanos / 1e6 / frames, zoneNanos / 1e3 / frames, scanNanos / 1e3 / frames));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * <h1>SyntheticFrameSource</h1>
+ * SyntheticFrameSource objects generate deterministic frames containing a single green square moving around a grey
+ * background, sprinkled with stray green pixels for the cleaning stage to remove. They allow the analysis pipeline
+ * to be run and measured on a machine with no webcam.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class SyntheticFrameSource implements FrameSource {
+
+    private static final int BACKGROUND = 0xff505a64;
+    private static final int TARGET = 0xff28b43c;
+
+    private final int WIDTH;
+    private final int HEIGHT;
+    private final long FRAME_COUNT;
+    private final long FRAME_INTERVAL;
+    private long frameNumber;
+    private long nextFrameTime;
+    private volatile boolean closed;
+
+    /**
+     * Constructor for the SyntheticFrameSource class. Frames are generated as fast as they are requested.
+     *
+     * @param width         the width of each frame in pixels.
+     * @param height        the height of each frame in pixels.
+     * @param frameCount    the number of frames to generate, or -1 to never stop.
+     */
+    public SyntheticFrameSource(int width, int height, long frameCount) {
+        this(width, height, frameCount, 0);
+    }
+
+    /**
+     * Constructor for the SyntheticFrameSource class.
+     *
+     * @param width             the width of each frame in pixels.
+     * @param height            the height of each frame in pixels.
+     * @param frameCount        the number of frames to generate, or -1 to never stop.
+     * @param framesPerSecond   the rate frames are delivered at, like a real camera, or 0 to deliver them as fast
+     *                          as they are requested.
+     */
+    public SyntheticFrameSource(int width, int height, long frameCount, int framesPerSecond) {
+        this.WIDTH = width;
+        this.HEIGHT = height;
+        this.FRAME_COUNT = frameCount;
+        this.FRAME_INTERVAL = framesPerSecond > 0 ? 1000000000L / framesPerSecond : 0;
+        this.frameNumber = 0;
+        this.nextFrameTime = System.nanoTime();
+        this.closed = false;
+    }
+
+    /**
+     * Returns the next generated frame, waiting until it is due if a frame rate was given.
+     *
+     * @return  the next frame, or null once frameCount frames have been generated or the source has been closed.
+     * @throws InterruptedException     if the calling thread is interrupted while waiting for the frame to be due.
+     */
+    @Override
+    public synchronized RgbFrame nextFrame() throws InterruptedException {
+
+        if (this.closed || (this.FRAME_COUNT >= 0 && this.frameNumber >= this.FRAME_COUNT)) {
+            return null;
+        }
+
+        if (this.FRAME_INTERVAL > 0) {
+            long wait = this.nextFrameTime - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            }
+            this.nextFrameTime += this.FRAME_INTERVAL;
+        }
+
+        return new BufferedImageFrame(createFrame(this.WIDTH, this.HEIGHT, this.frameNumber++));
+    }
+
+    /**
+     * Stops generating frames.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+
+    /**
+     * Draws a single frame. The same arguments always produce the same image.
+     * <p>
+     * The target is a square a quarter of the frame height across, following a figure-of-eight path so that it
+     * passes through each of the nine positions. Roughly 1 in 100 background pixels is a stray green pixel.
+     *
+     * @param width         the width of the frame in pixels.
+     * @param height        the height of the frame in pixels.
+     * @param frameNumber   the number of the frame, which determines the position of the target.
+     * @return              the generated frame as a TYPE_INT_RGB BufferedImage.
+     */
+    public static BufferedImage createFrame(int width, int height, long frameNumber) {
+        return createFrame(width, height, frameNumber, Math.max(1, height / 4));
+    }
+
+    /**
+     * Draws a single frame in which the target covers roughly the given fraction of the frame. The same arguments
+     * always produce the same image.
+     *
+     * @param width         the width of the frame in pixels.
+     * @param height        the height of the frame in pixels.
+     * @param frameNumber   the number of the frame, which determines the position of the target.
+     * @param coverage      the fraction of the frame covered by the target, from 0 to 1.
+     * @return              the generated frame as a TYPE_INT_RGB BufferedImage.
+     */
+    public static BufferedImage createFrame(int width, int height, long frameNumber, double coverage) {
+        int side = (int) Math.round(Math.sqrt(coverage * width * height));
+        return createFrame(width, height, frameNumber, Math.max(1, Math.min(side, Math.min(width, height))));
+    }
+
+    /**
+     * Draws a single frame with a target of the given size.
+     *
+     * @param width         the width of the frame in pixels.
+     * @param height        the height of the frame in pixels.
+     * @param frameNumber   the number of the frame, which determines the position of the target.
+     * @param side          the width and height of the target in pixels.
+     * @return              the generated frame as a TYPE_INT_RGB BufferedImage.
+     */
+    private static BufferedImage createFrame(int width, int height, long frameNumber, int side) {
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+        double angle = frameNumber * 0.05;
+        int left = (int) ((width - side) * (0.5 + 0.45 * Math.sin(angle)));
+        int top = (int) ((height - side) * (0.5 + 0.45 * Math.sin(angle * 2)));
+
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            boolean inRows = y >= top && y < top + side;
+            for (int x = 0; x < width; x++) {
+                if (inRows && x >= left && x < left + side) {
+                    data[row + x] = TARGET;
+                } else if (((x * 7919 + y * 104729 + frameNumber * 31) % 100) == 0) {
+                    data[row + x] = TARGET;
+                } else {
+                    data[row + x] = BACKGROUND;
+                }
+            }
+        }
+        return image;
+    }
+}
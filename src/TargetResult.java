@@ -0,0 +1,109 @@
+/**
+ * <h1>TargetResult</h1>
+ * TargetResult objects store the outcome of analysing a single frame from a FrameSource.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class TargetResult {
+
+    private final long FRAME_NUMBER;
+    private final long TIMESTAMP;
+    private final String POSITION;
+    private final int SIZE;
+    private final String DISTANCE;
+    private final long LATENCY;
+
+    /**
+     * Constructor for the TargetResult class. Initialises instance variables only.
+     *
+     * @param frameNumber   the sequence number of the frame, starting from 0.
+     * @param timestamp     the time the frame was captured in milliseconds since the epoch.
+     * @param position      the position of the target as returned by ImageTools.getPositionOfTarget().
+     * @param size          the size of the target as returned by ImageTools.getSizeOfTarget().
+     * @param latency       the time from capture to the end of analysis in nanoseconds.
+     */
+    public TargetResult(long frameNumber, long timestamp, String position, int size, long latency) {
+        this(frameNumber, timestamp, position, size, null, latency);
+    }
+
+    /**
+     * Constructor for the TargetResult class. Initialises instance variables only.
+     *
+     * @param frameNumber   the sequence number of the frame, starting from 0.
+     * @param timestamp     the time the frame was captured in milliseconds since the epoch.
+     * @param position      the position of the target as returned by ImageTools.getPositionOfTarget().
+     * @param size          the size of the target as returned by ImageTools.getSizeOfTarget().
+     * @param distance      the movement of the target as returned by PixelBlob.getDistance().
+     * @param latency       the time from capture to the end of analysis in nanoseconds.
+     */
+    public TargetResult(long frameNumber, long timestamp, String position, int size, String distance,
+                        long latency) {
+        this.FRAME_NUMBER = frameNumber;
+        this.TIMESTAMP = timestamp;
+        this.POSITION = position;
+        this.SIZE = size;
+        this.DISTANCE = distance;
+        this.LATENCY = latency;
+    }
+
+    /**
+     * Returns the sequence number of the frame.
+     *
+     * @return  the sequence number of the frame, starting from 0.
+     */
+    public long getFrameNumber() {
+        return this.FRAME_NUMBER;
+    }
+
+    /**
+     * Returns the time the frame was captured.
+     *
+     * @return  the time the frame was captured in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return this.TIMESTAMP;
+    }
+
+    /**
+     * Returns the position of the target.
+     *
+     * @return  the position of the target as returned by ImageTools.getPositionOfTarget().
+     */
+    public String getPosition() {
+        return this.POSITION;
+    }
+
+    /**
+     * Returns the size of the target.
+     *
+     * @return  the size of the target as returned by ImageTools.getSizeOfTarget().
+     */
+    public int getSize() {
+        return this.SIZE;
+    }
+
+    /**
+     * Returns the movement of the target towards or away from the camera.
+     *
+     * @return  one of same, closer, or farther, or null if it is not known.
+     */
+    public String getDistance() {
+        return this.DISTANCE;
+    }
+
+    /**
+     * Returns the time taken from capturing the frame to finishing its analysis.
+     *
+     * @return  the time from capture to the end of analysis in nanoseconds.
+     */
+    public long getLatency() {
+        return this.LATENCY;
+    }
+
+    @Override
+    public String toString() {
+        return "frame " + this.FRAME_NUMBER + ": " + this.POSITION + ", size " + this.SIZE
+                + (this.DISTANCE != null ? ", " + this.DISTANCE : "");
+    }
+}
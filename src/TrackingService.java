@@ -0,0 +1,665 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <h1>TrackingService</h1>
+ * TrackingService objects watch any number of FrameSources at once from a single JVM, such as several webcams, raw
+ * frame dumps, or synthetic sources, and publish the TargetResults of every stream to per-stream ResultListeners and
+ * service-wide StreamListeners.
+ * <p>
+ * Each stream has its own capture thread, which only waits on its source and keeps the newest captured frame in a
+ * single slot, replacing (and dropping) a frame which has not been analysed yet, so a stream never builds up a
+ * backlog. The frames are analysed by one fixed pool of worker threads shared by every stream, so the CPU used does
+ * not grow with the number of streams.
+ * <p>
+ * Streams with a frame waiting are queued for the workers in the order they became ready. A worker analyses one
+ * frame of a stream and then puts the stream at the back of the queue, so a fast stream cannot starve a slow one,
+ * and no stream is ever analysed by two workers at once. Each stream therefore keeps its own ImageTools and
+ * DistanceTracker without any locking, and sees its frames in order. For the same reason a stream can append its
+ * results straight to its own ResultLog.
+ * <p>
+ * A CPU budget can limit each stream to a fraction of one core. The thread CPU time spent analysing each stream is
+ * measured over one second windows, and once a stream has used its share of a window its frames are dropped until
+ * the next window starts.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class TrackingService {
+
+    private static final long BUDGET_WINDOW = 1000000000L;
+
+    private final int WORKERS;
+    private final double CPU_BUDGET;
+    private final GreenClassifier classifier;
+    private final List<Stream> streams;
+    private final BlockingQueue<Stream> ready;
+    private final List<StreamListener> listeners;
+    private final ThreadMXBean threads;
+
+    private volatile boolean running;
+    private Thread[] workerThreads;
+
+    /**
+     * Constructor for the TrackingService class. Uses the default GreenClassifier and no CPU budget.
+     *
+     * @param workers   the number of worker threads shared by every stream.
+     */
+    public TrackingService(int workers) {
+        this(workers, 0, GreenClassifier.getDefault());
+    }
+
+    /**
+     * Constructor for the TrackingService class. Initialises instance variables only; nothing runs until start()
+     * is called.
+     *
+     * @param workers       the number of worker threads shared by every stream.
+     * @param cpuBudget     the largest fraction of one core each stream may use, such as 0.25, or 0 for no limit.
+     * @param classifier    the GreenClassifier which decides which pixels are green.
+     */
+    public TrackingService(int workers, double cpuBudget, GreenClassifier classifier) {
+        this.WORKERS = Math.max(1, workers);
+        this.CPU_BUDGET = Math.max(0, cpuBudget);
+        this.classifier = classifier;
+        this.streams = new CopyOnWriteArrayList<>();
+        this.ready = new LinkedBlockingQueue<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        this.threads = bean.isCurrentThreadCpuTimeSupported() ? bean : null;
+        if (this.threads != null && !this.threads.isThreadCpuTimeEnabled()) {
+            this.threads.setThreadCpuTimeEnabled(true);
+        }
+    }
+
+    /**
+     * Adds a stream to watch. If the service is running the stream starts straight away, otherwise it starts with
+     * the service.
+     *
+     * @param name      a name for the stream, passed to every StreamListener with its results.
+     * @param source    the FrameSource to capture frames from.
+     * @return          the Stream, which can be given its own ResultListeners and queried for its counts.
+     */
+    public synchronized Stream addStream(String name, FrameSource source) {
+        Stream stream = new Stream(name, source);
+        this.streams.add(stream);
+        if (this.running) {
+            startCapture(stream);
+        }
+        return stream;
+    }
+
+    /**
+     * Returns every stream added to the service.
+     *
+     * @return  an unmodifiable List of the streams, in the order they were added.
+     */
+    public List<Stream> getStreams() {
+        return Collections.unmodifiableList(this.streams);
+    }
+
+    /**
+     * Registers a StreamListener to receive the results of every stream.
+     *
+     * @param listener  the StreamListener to add.
+     */
+    public void addListener(StreamListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Stops a StreamListener from receiving results.
+     *
+     * @param listener  the StreamListener to remove.
+     */
+    public void removeListener(StreamListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Starts the worker threads and the capture thread of every stream. The service runs until stop() is called.
+     */
+    public synchronized void start() {
+
+        if (this.running) {
+            return;
+        }
+        this.running = true;
+
+        this.workerThreads = new Thread[this.WORKERS];
+        for (int i = 0; i < this.WORKERS; i++) {
+            this.workerThreads[i] = new Thread(this::work, "tracking-" + i);
+            this.workerThreads[i].setDaemon(true);
+            this.workerThreads[i].start();
+        }
+        for (Stream stream : this.streams) {
+            startCapture(stream);
+        }
+    }
+
+    /**
+     * Stops capturing and analysing frames, closes every source, and waits for the threads to finish. Frames not yet
+     * analysed are discarded.
+     *
+     * @throws InterruptedException     if the calling thread is interrupted while waiting.
+     */
+    public void stop() throws InterruptedException {
+
+        Thread[] workers;
+        List<Thread> captures = new ArrayList<>();
+        synchronized (this) {
+            if (!this.running) {
+                return;
+            }
+            this.running = false;
+            // wake any thread in awaitCompletion(), which returns once the service is stopped
+            notifyAll();
+            workers = this.workerThreads;
+            for (Stream stream : this.streams) {
+                stream.source.close();
+                if (stream.captureThread != null) {
+                    stream.captureThread.interrupt();
+                    captures.add(stream.captureThread);
+                }
+            }
+        }
+
+        for (Thread thread : captures) {
+            thread.join();
+        }
+        for (Thread thread : workers) {
+            thread.interrupt();
+            thread.join();
+        }
+        this.ready.clear();
+    }
+
+    /**
+     * Waits until every stream has run out of frames and its last frame has been analysed, or until stop() is
+     * called.
+     *
+     * @param timeout   the maximum time to wait.
+     * @param unit      the unit of the timeout argument.
+     * @return          true if every stream finished, false if the timeout elapsed first.
+     * @throws InterruptedException     if the calling thread is interrupted while waiting.
+     */
+    public synchronized boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (this.running && !allFinished()) {
+            long wait = deadline - System.nanoTime();
+            if (wait <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, wait);
+        }
+        return true;
+    }
+
+    private boolean allFinished() {
+        for (Stream stream : this.streams) {
+            if (!stream.finished) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of frames analysed across every stream.
+     *
+     * @return  the number of frames analysed.
+     */
+    public long getFramesProcessed() {
+        long total = 0;
+        for (Stream stream : this.streams) {
+            total += stream.getFramesProcessed();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of frames dropped across every stream, whether replaced by a newer frame or over budget.
+     *
+     * @return  the number of frames dropped.
+     */
+    public long getFramesDropped() {
+        long total = 0;
+        for (Stream stream : this.streams) {
+            total += stream.getFramesDropped() + stream.getFramesThrottled();
+        }
+        return total;
+    }
+
+    private void startCapture(Stream stream) {
+        stream.captureThread = new Thread(() -> capture(stream), "capture-" + stream.NAME);
+        stream.captureThread.setDaemon(true);
+        stream.captureThread.start();
+    }
+
+    /**
+     * Body of the capture thread of a stream. Reads frames from the source into the stream's frame slot, dropping
+     * any frame still waiting there, and queues the stream for the workers.
+     *
+     * @param stream    the stream to capture.
+     */
+    private void capture(Stream stream) {
+        PipelineMetrics metrics = PipelineMetrics.getDefault();
+        long frameNumber = 0;
+        try {
+            while (this.running) {
+                long start = System.nanoTime();
+                RgbFrame frame = stream.source.nextFrame();
+                if (frame == null) {
+                    break;
+                }
+                metrics.recordLatency(PipelineMetrics.Stage.CAPTURE, System.nanoTime() - start);
+                stream.framesCaptured.incrementAndGet();
+
+                CapturedFrame captured = new CapturedFrame(frame, frameNumber++, System.currentTimeMillis(),
+                        System.nanoTime());
+                if (stream.latest.getAndSet(captured) != null) {
+                    stream.framesDropped.incrementAndGet();
+                    metrics.recordDroppedFrame();
+                }
+                schedule(stream);
+            }
+        } catch (InterruptedException e) {
+            // stop() was called
+        } finally {
+            stream.sourceFinished = true;
+            schedule(stream);
+        }
+    }
+
+    /**
+     * Queues a stream for the workers, unless it is already queued or being analysed.
+     *
+     * @param stream    the stream with a frame waiting or a finished source.
+     */
+    private void schedule(Stream stream) {
+        if (stream.scheduled.compareAndSet(false, true)) {
+            this.ready.add(stream);
+        }
+    }
+
+    /**
+     * Body of each worker thread. Takes the next ready stream, analyses its newest frame, and puts it back at the end
+     * of the queue if another frame arrived in the meantime.
+     */
+    private void work() {
+        try {
+            while (this.running) {
+                Stream stream = this.ready.poll(50, TimeUnit.MILLISECONDS);
+                if (stream == null) {
+                    continue;
+                }
+
+                // the source is checked before the slot, so a frame captured just before the end is not missed
+                boolean ended = stream.sourceFinished;
+                CapturedFrame captured = stream.latest.getAndSet(null);
+                if (captured == null && ended) {
+                    // a finished stream stays marked as scheduled, so it is never queued again
+                    synchronized (this) {
+                        stream.finished = true;
+                        notifyAll();
+                    }
+                    continue;
+                }
+
+                try {
+                    if (captured != null) {
+                        analyse(stream, captured);
+                    }
+                } catch (RuntimeException e) {
+                    // one bad frame or listener must not take the worker or the stream down with it
+                    System.err.println("could not analyse frame " + captured.number + " of " + stream.NAME + ": "
+                            + e);
+                } finally {
+                    stream.scheduled.set(false);
+                    if (stream.latest.get() != null || stream.sourceFinished) {
+                        schedule(stream);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop() was called
+        }
+    }
+
+    /**
+     * Analyses a frame with the stream's own ImageTools and DistanceTracker and publishes the result, or drops the
+     * frame if the stream has used up its CPU budget for the current window.
+     *
+     * @param stream    the stream the frame belongs to.
+     * @param captured  the frame to analyse.
+     */
+    private void analyse(Stream stream, CapturedFrame captured) {
+
+        long now = System.nanoTime();
+        if (this.CPU_BUDGET > 0) {
+            if (now - stream.windowStart >= BUDGET_WINDOW) {
+                stream.windowStart = now;
+                stream.windowUsed = 0;
+            }
+            if (stream.windowUsed >= this.CPU_BUDGET * BUDGET_WINDOW) {
+                stream.framesThrottled.incrementAndGet();
+                PipelineMetrics.getDefault().recordDroppedFrame();
+                return;
+            }
+        }
+
+        long cpu = cpuTime();
+        if (stream.imageTools == null) {
+            stream.imageTools = new ImageTools(ImageTools.Mode.SINGLE_PASS, this.classifier);
+        }
+        ImageTools imageTools = stream.imageTools;
+        imageTools.setFrame(captured.frame);
+        String position = imageTools.getPositionOfTarget();
+        int size = imageTools.getSizeOfTarget();
+        String distance = stream.distanceTracker.update(imageTools.getTarget());
+
+        long used = cpuTime() - cpu;
+        stream.windowUsed += used;
+        stream.cpuNanos.addAndGet(used);
+        stream.framesProcessed.incrementAndGet();
+
+        TargetResult result = new TargetResult(captured.number, captured.timestamp, position, size, distance,
+                System.nanoTime() - captured.nanoTime);
+        for (ResultListener listener : stream.listeners) {
+            listener.onResult(result);
+        }
+        for (StreamListener listener : this.listeners) {
+            listener.onResult(stream.NAME, result);
+        }
+
+        ResultLog log = stream.resultLog;
+        if (log != null) {
+            try {
+                log.append(result, imageTools.getTarget());
+            } catch (IOException e) {
+                System.err.println("could not log frame " + captured.number + " of " + stream.NAME + ": "
+                        + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the CPU time of the calling thread, or the wall clock time if the JVM cannot measure thread CPU time.
+     *
+     * @return  a time in nanoseconds, only meaningful when compared with another call on the same thread.
+     */
+    private long cpuTime() {
+        return this.threads != null ? this.threads.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Runs the service over a number of streams, each replaying a loop of pre-rendered frames at a fixed rate so
+     * that generating frames costs next to nothing, first with 1 worker and then with more, and prints the frames
+     * analysed per second and how evenly they were shared between the streams. It then repeats the largest run with
+     * a CPU budget to show streams being held to it. No camera is needed.
+     * <p>
+     * Usage: java TrackingService [streams] [seconds] [framesPerSecond]
+     */
+    public static void main(String[] args) throws InterruptedException {
+
+        int streamCount = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int framesPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        RgbFrame[] frames = new RgbFrame[30];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new BufferedImageFrame(SyntheticFrameSource.createFrame(320, 240, i * 4));
+        }
+
+        System.out.println(streamCount + " streams of 320x240 at " + framesPerSecond + " fps each, " + cores + " cores");
+        System.out.println(String.format("%8s %8s %12s %10s %12s %12s %10s", "workers", "budget", "frames/s", "speedup",
+                "min/stream", "max/stream", "dropped"));
+
+        // double the workers up to the number of cores, and at least to 2
+        int most = Math.max(2, cores);
+        double baseline = 0;
+        for (int workers = 1; workers <= most; workers = workers == most ? most + 1 : Math.min(workers * 2, most)) {
+            double rate = run(streamCount, workers, 0, seconds, framesPerSecond, frames, baseline);
+            if (baseline == 0) {
+                baseline = rate;
+            }
+        }
+        run(streamCount, most, 0.05, seconds, framesPerSecond, frames, baseline);
+    }
+
+    /**
+     * Runs one configuration of the demo in main() and prints its line of the table.
+     *
+     * @return  the number of frames analysed per second.
+     */
+    private static double run(int streamCount, int workers, double budget, int seconds, int framesPerSecond,
+                              RgbFrame[] frames, double baseline)
+            throws InterruptedException {
+
+        TrackingService service = new TrackingService(workers, budget, GreenClassifier.getDefault());
+        for (int i = 0; i < streamCount; i++) {
+            service.addStream("replay-" + i, new ReplaySource(frames, i, framesPerSecond));
+        }
+
+        service.start();
+        Thread.sleep(500);
+        long[] before = new long[streamCount];
+        for (int i = 0; i < streamCount; i++) {
+            before[i] = service.getStreams().get(i).getFramesProcessed();
+        }
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        long elapsed = System.nanoTime() - start;
+
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < streamCount; i++) {
+            long processed = service.getStreams().get(i).getFramesProcessed() - before[i];
+            total += processed;
+            min = Math.min(min, processed);
+            max = Math.max(max, processed);
+        }
+        service.stop();
+
+        double rate = total * 1e9 / elapsed;
+        System.out.println(String.format("%8d %8s %12.0f %9.2fx %12d %12d %10d", workers,
+                budget > 0 ? String.valueOf(budget) : "-", rate, baseline > 0 ? rate / baseline : 1, min, max,
+                service.getFramesDropped()));
+        return rate;
+    }
+
+    /**
+     * A stream watched by a TrackingService, holding its source, its newest unanalysed frame, the tracker state
+     * which carries over from frame to frame, and its counts.
+     */
+    public static class Stream {
+
+        private final String NAME;
+        private final FrameSource source;
+        private final List<ResultListener> listeners;
+        private final AtomicReference<CapturedFrame> latest;
+        private final AtomicBoolean scheduled;
+        private final DistanceTracker distanceTracker;
+        private final AtomicLong framesCaptured;
+        private final AtomicLong framesDropped;
+        private final AtomicLong framesThrottled;
+        private final AtomicLong framesProcessed;
+        private final AtomicLong cpuNanos;
+        private volatile ResultLog resultLog;
+
+        // only used by the one worker analysing the stream at a time, handed between workers through the queue
+        private ImageTools imageTools;
+        private long windowStart;
+        private long windowUsed;
+
+        private Thread captureThread;
+        private volatile boolean sourceFinished;
+        private volatile boolean finished;
+
+        Stream(String name, FrameSource source) {
+            this.NAME = name;
+            this.source = source;
+            this.listeners = new CopyOnWriteArrayList<>();
+            this.latest = new AtomicReference<>();
+            this.scheduled = new AtomicBoolean();
+            this.distanceTracker = new DistanceTracker();
+            this.framesCaptured = new AtomicLong();
+            this.framesDropped = new AtomicLong();
+            this.framesThrottled = new AtomicLong();
+            this.framesProcessed = new AtomicLong();
+            this.cpuNanos = new AtomicLong();
+            this.windowStart = System.nanoTime();
+        }
+
+        /**
+         * Returns the name of the stream.
+         *
+         * @return  the name given to addStream().
+         */
+        public String getName() {
+            return this.NAME;
+        }
+
+        /**
+         * Registers a ResultListener to receive the results of this stream only.
+         *
+         * @param listener  the ResultListener to add.
+         */
+        public void addListener(ResultListener listener) {
+            this.listeners.add(listener);
+        }
+
+        /**
+         * Stops a ResultListener from receiving the results of this stream.
+         *
+         * @param listener  the ResultListener to remove.
+         */
+        public void removeListener(ResultListener listener) {
+            this.listeners.remove(listener);
+        }
+
+        /**
+         * Sets a ResultLog to append the result and target of every frame of this stream to, in frame order. The
+         * log is not closed by the service, so it should be closed after stop().
+         *
+         * @param resultLog     the ResultLog to append to, or null to stop logging.
+         */
+        public void setResultLog(ResultLog resultLog) {
+            this.resultLog = resultLog;
+        }
+
+        /**
+         * Returns the number of frames read from the source.
+         *
+         * @return  the number of frames read from the source.
+         */
+        public long getFramesCaptured() {
+            return this.framesCaptured.get();
+        }
+
+        /**
+         * Returns the number of frames replaced by a newer frame before a worker reached them.
+         *
+         * @return  the number of frames dropped.
+         */
+        public long getFramesDropped() {
+            return this.framesDropped.get();
+        }
+
+        /**
+         * Returns the number of frames dropped because the stream had used up its CPU budget.
+         *
+         * @return  the number of frames dropped over budget.
+         */
+        public long getFramesThrottled() {
+            return this.framesThrottled.get();
+        }
+
+        /**
+         * Returns the number of frames which have been analysed.
+         *
+         * @return  the number of frames analysed.
+         */
+        public long getFramesProcessed() {
+            return this.framesProcessed.get();
+        }
+
+        /**
+         * Returns the CPU time spent analysing the frames of this stream.
+         *
+         * @return  the CPU time in nanoseconds.
+         */
+        public long getCpuNanos() {
+            return this.cpuNanos.get();
+        }
+    }
+
+    /**
+     * A frame waiting in the slot of a stream, with the details needed to build its TargetResult.
+     */
+    private static class CapturedFrame {
+
+        private final RgbFrame frame;
+        private final long number;
+        private final long timestamp;
+        private final long nanoTime;
+
+        CapturedFrame(RgbFrame frame, long number, long timestamp, long nanoTime) {
+            this.frame = frame;
+            this.number = number;
+            this.timestamp = timestamp;
+            this.nanoTime = nanoTime;
+        }
+    }
+
+    /**
+     * A FrameSource for the demo in main() which replays a loop of frames at a fixed rate, starting at a different
+     * frame for each stream.
+     */
+    private static class ReplaySource implements FrameSource {
+
+        private final RgbFrame[] frames;
+        private final long FRAME_INTERVAL;
+        private long frameNumber;
+        private long nextFrameTime;
+        private volatile boolean closed;
+
+        ReplaySource(RgbFrame[] frames, int offset, int framesPerSecond) {
+            this.frames = frames;
+            this.FRAME_INTERVAL = 1000000000L / framesPerSecond;
+            this.frameNumber = offset;
+            this.nextFrameTime = System.nanoTime();
+        }
+
+        @Override
+        public RgbFrame nextFrame() throws InterruptedException {
+            if (this.closed) {
+                return null;
+            }
+            long wait = this.nextFrameTime - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+            }
+            this.nextFrameTime += this.FRAME_INTERVAL;
+            return this.frames[(int) (this.frameNumber++ % this.frames.length)];
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+import com.github.sarxos.webcam.Webcam;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * <h1>WebcamFrameSource</h1>
+ * WebcamFrameSource objects deliver frames captured from a webcam.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class WebcamFrameSource implements FrameSource {
+
+    private static final long RETRY_DELAY = 20;
+
+    private final Webcam webcam;
+    private volatile boolean closed;
+
+    /**
+     * Constructor for the WebcamFrameSource class. The webcam is opened on the first call to nextFrame() if it is
+     * not already open.
+     *
+     * @param webcam    the Webcam to capture frames from.
+     */
+    public WebcamFrameSource(Webcam webcam) {
+        this.webcam = webcam;
+        this.closed = false;
+    }
+
+    /**
+     * Returns the next image captured by the webcam, blocking until the device delivers it. A failed read is tried
+     * again after a short pause, so a webcam which briefly cannot be read does not end the stream.
+     *
+     * @return  the next frame, or null once the source has been closed.
+     * @throws InterruptedException     if the thread is interrupted while waiting to read the webcam again.
+     */
+    @Override
+    public RgbFrame nextFrame() throws InterruptedException {
+
+        while (!this.closed) {
+            if (!this.webcam.isOpen()) {
+                this.webcam.open();
+            }
+            BufferedImage image = this.webcam.getImage();
+            if (image != null) {
+                return new BufferedImageFrame(image);
+            }
+            Thread.sleep(RETRY_DELAY);
+        }
+        return null;
+    }
+
+    /**
+     * Stops delivering frames. The webcam itself is left open, as it may be shared with a WebcamPanel.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+}
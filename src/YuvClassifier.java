@@ -0,0 +1,216 @@
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+/**
+ * <h1>YuvClassifier</h1>
+ * YuvClassifier objects decide whether YUV pixels are green without converting them to RGB, so that frames which
+ * arrive as I420 or NV12 can be classified straight from their planes.
+ * <p>
+ * Every one of the 2^24 YUV colours is converted to RGB with the same BT.601 equations as MappedFrame.readRow(), and
+ * looked up in a GreenClassifier, once when the YuvClassifier is created. The answers are stored as single bits in a
+ * 2MB table ordered by U, then V, then Y, so the four pixels which share a chroma sample are looked up in the same
+ * 32 bytes. A second table of 8KB holds one bit per U and V pair, set if any Y value of that pair is green. Being a
+ * region of the Cb/Cr plane, it rejects most background pixels from the first level cache without touching the larger
+ * table. The results are identical to converting each pixel to RGB and classifying it with the GreenClassifier.
+ * <p>
+ * A YuvClassifier holds no state once built, so one can be shared between threads.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public class YuvClassifier {
+
+    private final GreenClassifier classifier;
+    private final long[] table;
+    private final long[] chromaTable;
+
+    /**
+     * Constructor for the YuvClassifier class. Builds the lookup tables from the given GreenClassifier, which takes
+     * a few hundred milliseconds, so classifiers should be created once and reused.
+     *
+     * @param classifier    the GreenClassifier whose answers are to be reproduced for YUV pixels.
+     */
+    public YuvClassifier(GreenClassifier classifier) {
+        this.classifier = classifier;
+        this.table = new long[1 << 18];
+        this.chromaTable = new long[1 << 10];
+
+        // each U value fills its own 1024 words of the table and 4 words of the chroma table
+        IntStream.range(0, 256).parallel().forEach(u -> {
+            for (int v = 0; v < 256; v++) {
+                int chroma = (u << 8) | v;
+                for (int y = 0; y < 256; y++) {
+                    if (classifier.isGreen(MappedFrame.toRgb(y, u, v))) {
+                        int index = (chroma << 8) | y;
+                        this.table[index >>> 6] |= 1L << index;
+                        this.chromaTable[chroma >>> 6] |= 1L << chroma;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns whether the given YUV colour is green.
+     *
+     * @param y     the luma value.
+     * @param u     the blue difference chroma value.
+     * @param v     the red difference chroma value.
+     * @return      a boolean value indicating whether the colour is green or not.
+     */
+    public boolean isGreen(int y, int u, int v) {
+        int index = (u << 16) | (v << 8) | y;
+        return (this.table[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Classifies a run of pixels of a row of a YuvFrame, reading them straight from its planes, and sets the bits of
+     * the green ones in a bit-packed row, such as a row of a GreenMask. Bits are OR-ed in a whole word at a time.
+     *
+     * @param frame     the frame to classify.
+     * @param y         the row of the frame.
+     * @param x         the column of the first pixel to classify.
+     * @param length    the number of pixels to classify.
+     * @param bits      the array holding the bit-packed row.
+     * @param offset    the index of the first word of the row within bits.
+     * @param startX    the column of the first pixel within the bit-packed row.
+     */
+    public void classifyRow(YuvFrame frame, int y, int x, int length, long[] bits, int offset, int startX) {
+
+        if (length <= 0) {
+            return;
+        }
+
+        ByteBuffer data = frame.getYuvBuffer();
+        int luma = frame.getLumaOffset(y);
+        int uRow = frame.getUOffset(y);
+        int vRow = frame.getVOffset(y);
+        int step = frame.getChromaStep();
+
+        long[] table = this.table;
+        long[] chromaTable = this.chromaTable;
+        int current = startX >>> 6;
+        long word = 0;
+
+        for (int i = 0; i < length; i++) {
+            int bit = startX + i;
+            if ((bit >>> 6) != current) {
+                bits[offset + current] |= word;
+                current = bit >>> 6;
+                word = 0;
+            }
+            int column = x + i;
+            int sample = (column >>> 1) * step;
+            int chroma = (data.get(uRow + sample) & 0xff) << 8 | (data.get(vRow + sample) & 0xff);
+            if ((chromaTable[chroma >>> 6] & (1L << chroma)) != 0) {
+                int index = (chroma << 8) | (data.get(luma + column) & 0xff);
+                word |= ((table[index >>> 6] >>> index) & 1L) << bit;
+            }
+        }
+        bits[offset + current] |= word;
+    }
+
+    /**
+     * Returns the GreenClassifier whose answers this classifier reproduces.
+     *
+     * @return  the GreenClassifier the tables were built from.
+     */
+    public GreenClassifier getClassifier() {
+        return this.classifier;
+    }
+
+    /**
+     * Returns a shared classifier built from GreenClassifier.getDefault(). It is built the first time it is
+     * requested.
+     *
+     * @return  the default YuvClassifier.
+     */
+    public static YuvClassifier getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Lazily builds the default classifier the first time it is requested.
+     */
+    private static class DefaultHolder {
+        private static final YuvClassifier INSTANCE = new YuvClassifier(GreenClassifier.getDefault());
+    }
+
+    /**
+     * Writes synthetic frames as I420 and NV12, then classifies every row of each one both from its planes and by
+     * converting it to RGB with readRow(). Prints how many rows differ between the two, which should be none, and
+     * the time taken by each.
+     * <p>
+     * Usage: java YuvClassifier [width] [height] [frames]
+     */
+    public static void main(String[] args) {
+
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 1280;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 720;
+        int frames = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        long start = System.nanoTime();
+        YuvClassifier yuv = getDefault();
+        System.out.println("tables built in " + (System.nanoTime() - start) / 1000000 + " ms");
+        GreenClassifier rgb = yuv.getClassifier();
+
+        for (RawFrameSource.Format format : new RawFrameSource.Format[]{RawFrameSource.Format.I420,
+                RawFrameSource.Format.NV12}) {
+
+            int frameBytes = (int) format.frameBytes(width, height);
+            ByteBuffer buffer = ByteBuffer.allocate(frameBytes * frames);
+            YuvFrame[] yuvFrames = new YuvFrame[frames];
+            for (int i = 0; i < frames; i++) {
+                RawFrameSource.writeFrame(new BufferedImageFrame(SyntheticFrameSource.createFrame(width, height, i)),
+                        format, buffer);
+                yuvFrames[i] = new MappedYuvFrame(buffer, i * frameBytes, width, height, format, i);
+            }
+
+            GreenMask direct = new GreenMask(width, height);
+            GreenMask converted = new GreenMask(width, height);
+            int words = direct.getWordsPerRow();
+            int[] row = new int[width];
+            long directTime = 0;
+            long convertedTime = 0;
+            long rowsDiffering = 0;
+
+            for (int pass = 0; pass < 3; pass++) {
+                directTime = 0;
+                convertedTime = 0;
+                rowsDiffering = 0;
+                for (YuvFrame frame : yuvFrames) {
+                    direct.clear();
+                    converted.clear();
+
+                    long time = System.nanoTime();
+                    for (int y = 0; y < height; y++) {
+                        yuv.classifyRow(frame, y, 0, width, direct.getBits(), y * words, 0);
+                    }
+                    directTime += System.nanoTime() - time;
+
+                    time = System.nanoTime();
+                    for (int y = 0; y < height; y++) {
+                        frame.readRow(y, 0, width, row);
+                        rgb.classifyRow(row, width, converted.getBits(), y * words, 0);
+                    }
+                    convertedTime += System.nanoTime() - time;
+
+                    long[] a = direct.getBits();
+                    long[] b = converted.getBits();
+                    for (int y = 0; y < height; y++) {
+                        for (int i = y * words; i < (y + 1) * words; i++) {
+                            if (a[i] != b[i]) {
+                                rowsDiffering++;
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+
+            double pixels = (double) width * height * frames;
+            System.out.println(String.format("%-5s %dx%d: %d rows differ, direct %.2f ns/pixel, converted %.2f "
+                    + "ns/pixel", format, width, height, rowsDiffering, directTime / pixels, convertedTime / pixels));
+        }
+    }
+}
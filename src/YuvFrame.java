@@ -0,0 +1,54 @@
+import java.nio.ByteBuffer;
+
+/**
+ * <h1>YuvFrame</h1>
+ * YuvFrame is implemented by frames which hold their pixels as planar (I420) or semi-planar (NV12) YUV with 2x2
+ * subsampled chroma, and can hand over the planes themselves so that a YuvClassifier can classify the pixels without
+ * converting them to RGB first. readRow() still returns RGB for everything else.
+ * <p>
+ * The U and V samples for column x of row y are at getUOffset(y) + (x / 2) * getChromaStep() and getVOffset(y) +
+ * (x / 2) * getChromaStep() in the buffer, and the Y sample is at getLumaOffset(y) + x.
+ *
+ * @author disposedtrolley
+ * @since 18/10/2026
+ */
+public interface YuvFrame extends RgbFrame {
+
+    /**
+     * Returns the buffer holding all three planes. Only absolute reads should be made from it.
+     *
+     * @return  the buffer holding the frame.
+     */
+    ByteBuffer getYuvBuffer();
+
+    /**
+     * Returns the index in the buffer of the first Y sample of a row.
+     *
+     * @param y     the row of the frame.
+     * @return      the index of the Y sample of column 0.
+     */
+    int getLumaOffset(int y);
+
+    /**
+     * Returns the index in the buffer of the first U sample used by a row.
+     *
+     * @param y     the row of the frame.
+     * @return      the index of the U sample of column 0.
+     */
+    int getUOffset(int y);
+
+    /**
+     * Returns the index in the buffer of the first V sample used by a row.
+     *
+     * @param y     the row of the frame.
+     * @return      the index of the V sample of column 0.
+     */
+    int getVOffset(int y);
+
+    /**
+     * Returns the distance in bytes between neighbouring U samples, and between neighbouring V samples.
+     *
+     * @return  1 for planar chroma, 2 for interleaved chroma.
+     */
+    int getChromaStep();
+}